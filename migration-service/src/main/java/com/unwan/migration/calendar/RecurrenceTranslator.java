@@ -0,0 +1,275 @@
+package com.unwan.migration.calendar;
+
+import com.microsoft.graph.models.PatternedRecurrence;
+import com.microsoft.graph.models.RecurrencePattern;
+import com.microsoft.graph.models.RecurrencePatternType;
+import com.microsoft.graph.models.RecurrenceRange;
+import com.microsoft.graph.models.RecurrenceRangeType;
+import com.microsoft.graph.models.WeekIndex;
+import com.unwan.migration.time.DateTimeConverter;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Translates an Outlook series pattern into the RFC 5545 lines Google keeps in an event's
+ * {@code recurrence} field.
+ * <p>
+ * Graph describes a series as a pattern (daily, weekly, absolute or relative monthly and
+ * yearly) plus a range (end date, count or open-ended). Both map onto one RRULE. Graph does
+ * not list the occurrences that were deleted from a series, so {@link #expand} walks the
+ * pattern the same way Outlook does; every expected date Graph has no instance for becomes
+ * an EXDATE.
+ */
+public final class RecurrenceTranslator {
+
+    private RecurrenceTranslator() {
+    }
+
+    public static boolean isSupported(PatternedRecurrence recurrence) {
+        return recurrence != null && recurrence.pattern != null && recurrence.pattern.type != null
+                && recurrence.range != null && recurrence.range.startDate != null
+                && recurrence.pattern.type != RecurrencePatternType.UNEXPECTED_VALUE;
+    }
+
+    // RRULE line for the series; zone is the one the series is expanded in
+    public static String toRRule(PatternedRecurrence recurrence, ZoneId zone) {
+        RecurrencePattern pattern = recurrence.pattern;
+        RecurrenceRange range = recurrence.range;
+        StringBuilder rule = new StringBuilder("RRULE:FREQ=");
+
+        switch (pattern.type) {
+            case DAILY:
+                rule.append("DAILY");
+                break;
+            case WEEKLY:
+                rule.append("WEEKLY");
+                break;
+            case ABSOLUTE_MONTHLY:
+            case RELATIVE_MONTHLY:
+                rule.append("MONTHLY");
+                break;
+            default:
+                rule.append("YEARLY");
+                break;
+        }
+        rule.append(";INTERVAL=").append(interval(pattern));
+
+        switch (pattern.type) {
+            case WEEKLY:
+                rule.append(";BYDAY=").append(byDay(pattern.daysOfWeek));
+                rule.append(";WKST=").append(dayCode(firstDayOfWeek(pattern)));
+                break;
+            case ABSOLUTE_MONTHLY:
+                rule.append(";BYMONTHDAY=").append(pattern.dayOfMonth);
+                break;
+            case RELATIVE_MONTHLY:
+                rule.append(";BYDAY=").append(byDay(pattern.daysOfWeek)).append(";BYSETPOS=").append(setPosition(pattern.index));
+                break;
+            case ABSOLUTE_YEARLY:
+                rule.append(";BYMONTH=").append(pattern.month).append(";BYMONTHDAY=").append(pattern.dayOfMonth);
+                break;
+            case RELATIVE_YEARLY:
+                rule.append(";BYMONTH=").append(pattern.month)
+                        .append(";BYDAY=").append(byDay(pattern.daysOfWeek)).append(";BYSETPOS=").append(setPosition(pattern.index));
+                break;
+            default:
+                break;
+        }
+
+        if (range.type == RecurrenceRangeType.END_DATE && range.endDate != null) {
+            // The end date is inclusive and local to the series; UNTIL has to be UTC when DTSTART has a zone
+            LocalDate endDate = LocalDate.parse(range.endDate.toString());
+            rule.append(";UNTIL=").append(utc(endDate, LocalTime.of(23, 59, 59), zone));
+        } else if (range.type == RecurrenceRangeType.NUMBERED && range.numberOfOccurrences != null) {
+            rule.append(";COUNT=").append(range.numberOfOccurrences);
+        }
+        return rule.toString();
+    }
+
+    // EXDATE line for occurrences starting at startTime on each of the dates, or null when there are none
+    public static String toExDate(Collection<LocalDate> dates, LocalTime startTime, ZoneId zone) {
+        if (dates.isEmpty()) {
+            return null;
+        }
+        return "EXDATE:" + dates.stream()
+                .sorted()
+                .map(date -> utc(date, startTime, zone))
+                .collect(Collectors.joining(","));
+    }
+
+    // Dates the series has an occurrence on, up to horizon and at most max of them
+    public static List<LocalDate> expand(PatternedRecurrence recurrence, LocalDate horizon, int max) {
+        RecurrencePattern pattern = recurrence.pattern;
+        RecurrenceRange range = recurrence.range;
+        LocalDate start = LocalDate.parse(range.startDate.toString());
+        LocalDate end = horizon;
+        if (range.type == RecurrenceRangeType.END_DATE && range.endDate != null) {
+            LocalDate endDate = LocalDate.parse(range.endDate.toString());
+            end = endDate.isBefore(horizon) ? endDate : horizon;
+        }
+        int limit = max;
+        if (range.type == RecurrenceRangeType.NUMBERED && range.numberOfOccurrences != null) {
+            limit = Math.min(max, range.numberOfOccurrences);
+        }
+
+        List<LocalDate> dates = new ArrayList<>();
+        int interval = interval(pattern);
+        for (int period = 0; dates.size() < limit; period++) {
+            LocalDate periodStart = periodStart(pattern, start, period * interval);
+            if (periodStart.isAfter(end)) {
+                break;
+            }
+            for (LocalDate date : periodDates(pattern, start, period * interval)) {
+                if (date.isBefore(start)) {
+                    continue;
+                }
+                if (date.isAfter(end) || dates.size() >= limit) {
+                    return dates;
+                }
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    private static LocalDate periodStart(RecurrencePattern pattern, LocalDate start, int offset) {
+        switch (pattern.type) {
+            case DAILY:
+                return start.plusDays(offset);
+            case WEEKLY:
+                return start.with(TemporalAdjusters.previousOrSame(firstDayOfWeek(pattern))).plusWeeks(offset);
+            case ABSOLUTE_MONTHLY:
+            case RELATIVE_MONTHLY:
+                return YearMonth.from(start).plusMonths(offset).atDay(1);
+            default:
+                return LocalDate.of(start.getYear() + offset, 1, 1);
+        }
+    }
+
+    // Candidate dates of one period, in order
+    private static List<LocalDate> periodDates(RecurrencePattern pattern, LocalDate start, int offset) {
+        List<LocalDate> dates = new ArrayList<>();
+        switch (pattern.type) {
+            case DAILY:
+                dates.add(start.plusDays(offset));
+                break;
+            case WEEKLY: {
+                LocalDate weekStart = periodStart(pattern, start, offset);
+                for (int day = 0; day < 7; day++) {
+                    LocalDate date = weekStart.plusDays(day);
+                    if (days(pattern.daysOfWeek).contains(date.getDayOfWeek())) {
+                        dates.add(date);
+                    }
+                }
+                break;
+            }
+            case ABSOLUTE_MONTHLY:
+                addDayOfMonth(dates, YearMonth.from(start).plusMonths(offset), pattern.dayOfMonth);
+                break;
+            case RELATIVE_MONTHLY:
+                addRelativeDay(dates, YearMonth.from(start).plusMonths(offset), pattern);
+                break;
+            case ABSOLUTE_YEARLY:
+                if (pattern.month != null) {
+                    addDayOfMonth(dates, YearMonth.of(start.getYear() + offset, pattern.month), pattern.dayOfMonth);
+                }
+                break;
+            case RELATIVE_YEARLY:
+                if (pattern.month != null) {
+                    addRelativeDay(dates, YearMonth.of(start.getYear() + offset, pattern.month), pattern);
+                }
+                break;
+            default:
+                break;
+        }
+        return dates;
+    }
+
+    // Months too short for the day have no occurrence, as in RFC 5545
+    private static void addDayOfMonth(List<LocalDate> dates, YearMonth month, Integer dayOfMonth) {
+        if (dayOfMonth != null && dayOfMonth >= 1 && dayOfMonth <= month.lengthOfMonth()) {
+            dates.add(month.atDay(dayOfMonth));
+        }
+    }
+
+    // "Second Tuesday", "last weekday": the indexed match among the month's matching days
+    private static void addRelativeDay(List<LocalDate> dates, YearMonth month, RecurrencePattern pattern) {
+        List<DayOfWeek> days = days(pattern.daysOfWeek);
+        List<LocalDate> matches = new ArrayList<>();
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            if (days.contains(month.atDay(day).getDayOfWeek())) {
+                matches.add(month.atDay(day));
+            }
+        }
+        int position = setPosition(pattern.index);
+        int index = position > 0 ? position - 1 : matches.size() + position;
+        if (index >= 0 && index < matches.size()) {
+            dates.add(matches.get(index));
+        }
+    }
+
+    private static int interval(RecurrencePattern pattern) {
+        return pattern.interval != null && pattern.interval > 0 ? pattern.interval : 1;
+    }
+
+    private static int setPosition(WeekIndex index) {
+        if (index == null) {
+            return 1;
+        }
+        switch (index) {
+            case SECOND:
+                return 2;
+            case THIRD:
+                return 3;
+            case FOURTH:
+                return 4;
+            case LAST:
+                return -1;
+            default:
+                return 1;
+        }
+    }
+
+    private static DayOfWeek firstDayOfWeek(RecurrencePattern pattern) {
+        List<DayOfWeek> first = days(pattern.firstDayOfWeek != null ? List.of(pattern.firstDayOfWeek) : null);
+        return first.isEmpty() ? DayOfWeek.SUNDAY : first.get(0);
+    }
+
+    private static List<DayOfWeek> days(List<com.microsoft.graph.models.DayOfWeek> graphDays) {
+        List<DayOfWeek> days = new ArrayList<>();
+        if (graphDays != null) {
+            for (com.microsoft.graph.models.DayOfWeek day : graphDays) {
+                if (day != null && day != com.microsoft.graph.models.DayOfWeek.UNEXPECTED_VALUE) {
+                    days.add(DayOfWeek.valueOf(day.name()));
+                }
+            }
+        }
+        return days;
+    }
+
+    private static String byDay(List<com.microsoft.graph.models.DayOfWeek> graphDays) {
+        return days(graphDays).stream()
+                .sorted(Comparator.naturalOrder())
+                .map(RecurrenceTranslator::dayCode)
+                .collect(Collectors.joining(","));
+    }
+
+    private static String dayCode(DayOfWeek day) {
+        return day.name().substring(0, 2);
+    }
+
+    private static String utc(LocalDate date, LocalTime time, ZoneId zone) {
+        return date.atTime(time).atZone(zone).withZoneSameInstant(ZoneOffset.UTC).format(DateTimeConverter.UTC_BASIC);
+    }
+}
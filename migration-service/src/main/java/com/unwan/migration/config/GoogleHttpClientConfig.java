@@ -0,0 +1,70 @@
+package com.unwan.migration.config;
+
+import com.unwan.migration.http.HttpHostMetrics;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled OkHttp client for every call to Google APIs. Connections are kept alive and
+ * negotiated to HTTP/2 where Google offers it, so parallel uploads multiplex over a few
+ * sockets; responses are requested and decoded as gzip transparently.
+ */
+@Configuration
+public class GoogleHttpClientConfig {
+
+    @Value("${migration.google-http.max-idle-connections:16}")
+    private int maxIdleConnections;
+
+    @Value("${migration.google-http.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${migration.google-http.max-requests-per-host:32}")
+    private int maxRequestsPerHost;
+
+    @Value("${migration.google-http.connect-timeout-seconds:10}")
+    private long connectTimeoutSeconds;
+
+    @Value("${migration.google-http.read-timeout-seconds:120}")
+    private long readTimeoutSeconds;
+
+    @Bean
+    public HttpHostMetrics googleHttpMetrics() {
+        return new HttpHostMetrics();
+    }
+
+    @Bean
+    public OkHttpClient googleOkHttpClient(HttpHostMetrics googleHttpMetrics) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(64, maxRequestsPerHost * 2));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        // OkHttp adds Accept-Encoding: gzip and unzips the body itself when no encoding is set by the caller
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .readTimeout(Duration.ofSeconds(readTimeoutSeconds))
+                .writeTimeout(Duration.ofSeconds(readTimeoutSeconds))
+                .retryOnConnectionFailure(true)
+                .eventListenerFactory(googleHttpMetrics)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate googleRestTemplate(@Qualifier("googleOkHttpClient") OkHttpClient googleOkHttpClient) {
+        return new RestTemplate(new OkHttp3ClientHttpRequestFactory(googleOkHttpClient));
+    }
+}
@@ -2,12 +2,15 @@ package com.unwan.migration.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
 
+    // Internal calls (status-service); Google traffic uses googleRestTemplate
     @Bean
+    @Primary
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
@@ -1,11 +1,19 @@
 package com.unwan.migration.controller;
 
+import com.unwan.migration.drive.ContentCache;
+import com.unwan.migration.drive.DriveSpool;
+import com.unwan.migration.graph.GraphClientFactory;
+import com.unwan.migration.http.HttpHostMetrics;
 import com.unwan.migration.model.MigrationResponse;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
 import com.unwan.migration.service.RealMailMigrationService;
 import com.unwan.migration.service.RealContactMigrationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/debug")
 public class DebugController {
@@ -16,6 +24,51 @@ public class DebugController {
     @Autowired
     private RealContactMigrationService contactService;
 
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    @Autowired
+    private HttpHostMetrics googleHttpMetrics;
+
+    @Autowired
+    private DriveSpool driveSpool;
+
+    @Autowired
+    private ContentCache contentCache;
+
+    // Current rate, concurrency window and wait times of every (user, API) limiter
+    @GetMapping("/rate-limits")
+    public List<Map<String, Object>> rateLimits() {
+        return rateLimiters.snapshot();
+    }
+
+    // Shared Graph connection pool: open/idle connections, dispatcher load, cached per-token clients
+    @GetMapping("/graph-pool")
+    public Map<String, Object> graphPool() {
+        return graphClients.poolStats();
+    }
+
+    // Per Google host: calls, new vs reused connections, HTTP/2 share, latency
+    @GetMapping("/google-http")
+    public List<Map<String, Object>> googleHttp() {
+        return googleHttpMetrics.snapshot();
+    }
+
+    // Drive spool fill level and how many uploads found their file already downloaded
+    @GetMapping("/drive-spool")
+    public Map<String, Object> driveSpool() {
+        return driveSpool.stats();
+    }
+
+    // Shared content cache: budget, fill level, and uploads served from disk instead of OneDrive
+    @GetMapping("/content-cache")
+    public Map<String, Object> contentCache() {
+        return contentCache.stats();
+    }
+
     @GetMapping("/test-mail")
     public MigrationResponse testMailMigration(@RequestParam String outlookToken, @RequestParam String gmailToken) {
         try {
@@ -189,19 +189,7 @@ public class MigrationController {
         System.out.println("First Time "+"\n"+request);
         System.out.println("Auth Header from AXIOS"+authHeader);
         try {
-            String token = authHeader.replace("Bearer ", "");
-            String authUrl = "http://auth-service:8081/api/auth/validate-token";
-            String validationRequest = String.format("{\"token\":\"%s\"}", token);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(validationRequest, headers);
-            ResponseEntity<TokenValidationResponse> validationResponse = restTemplate.postForEntity(
-                    authUrl, entity, TokenValidationResponse.class);
-            if (validationResponse.getBody() != null && validationResponse.getBody().isValid()) {
-                String userId = validationResponse.getBody().getUserId();
-                String email = validationResponse.getBody().getEmail();
-                request.setUserId(userId);
-                request.setEmail(email);
+            if (authenticate(request, authHeader)) {
                 System.out.println("Second Time "+"\n"+request);
                 MigrationResponse response = migrationService.startMigration(request);
                 return ResponseEntity.status(200).body(response);
@@ -213,6 +201,39 @@ public class MigrationController {
         }
     }
 
+    // Restarts an interrupted job from its checkpoint; the body carries fresh Outlook/Google tokens
+    @PostMapping("/resume-checkpoint/{jobId}")
+    public ResponseEntity<?> resumeFromCheckpoint(@PathVariable String jobId, @RequestBody MigrationRequest request,
+                                                  @RequestHeader("Authorization") String authHeader) {
+        try {
+            if (!authenticate(request, authHeader)) {
+                return ResponseEntity.status(401).body(new MigrationResponse("failed", "Invalid token", jobId));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.status(401).body(new MigrationResponse("failed", "Authentication failed", jobId));
+        }
+        MigrationResponse response = migrationService.resumeFromCheckpoint(jobId, request);
+        return ResponseEntity.ok(response);
+    }
+
+    // Validates the app token with auth-service and binds the caller's identity to the request
+    private boolean authenticate(MigrationRequest request, String authHeader) {
+        String token = authHeader.replace("Bearer ", "");
+        String authUrl = "http://auth-service:8081/api/auth/validate-token";
+        String validationRequest = String.format("{\"token\":\"%s\"}", token);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> entity = new HttpEntity<>(validationRequest, headers);
+        ResponseEntity<TokenValidationResponse> validationResponse = restTemplate.postForEntity(
+                authUrl, entity, TokenValidationResponse.class);
+        if (validationResponse.getBody() == null || !validationResponse.getBody().isValid()) {
+            return false;
+        }
+        request.setUserId(validationResponse.getBody().getUserId());
+        request.setEmail(validationResponse.getBody().getEmail());
+        return true;
+    }
+
     @GetMapping("/status/{jobId}")
     public ResponseEntity<MigrationResponse> getStatus(@PathVariable String jobId) {
         MigrationResponse response = migrationService.getStatus(jobId);
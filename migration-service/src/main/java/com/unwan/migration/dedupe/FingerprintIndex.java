@@ -0,0 +1,197 @@
+package com.unwan.migration.dedupe;
+
+import com.unwan.migration.model.CalendarEvent;
+import com.unwan.migration.model.DriveFile;
+import com.unwan.migration.model.EmailMessage;
+import com.unwan.migration.model.MigrationFingerprint;
+import com.unwan.migration.model.UserContact;
+import com.unwan.migration.repository.MigrationFingerprintRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user record of every item already written to Google, so re-running a migration
+ * skips what is there instead of duplicating it.
+ * <p>
+ * Fingerprints live in {@code migration_fingerprints}. A Bloom filter per (user, workload)
+ * is loaded once per run and grows with the items the run adds; most items are new, and for
+ * those the check never leaves memory. Only a Bloom hit goes to MongoDB to rule out a false
+ * positive. When a filter cannot be loaded, every check for that user and workload goes to
+ * MongoDB until the job ends.
+ */
+@Service
+public class FingerprintIndex {
+
+    public static final String MAIL = "mail";
+    public static final String CONTACTS = "contacts";
+    public static final String CALENDAR = "calendar";
+    public static final String DRIVE = "drive";
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_CAPACITY = 100_000;
+
+    @Autowired
+    private MigrationFingerprintRepository fingerprintRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Completed once the filter is loaded; a placeholder while the first caller loads it
+    private final Map<String, CompletableFuture<ScalableBloomFilter>> filters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void ensureIndexes() {
+        try {
+            mongoTemplate.indexOps(MigrationFingerprint.class)
+                    .ensureIndex(new Index().on("userId", Sort.Direction.ASC).on("workload", Sort.Direction.ASC));
+        } catch (Exception e) {
+            System.err.println("⚠️ Could not create fingerprint index: " + e.getMessage());
+        }
+    }
+
+    public boolean isMigrated(String userId, String workload, String key) {
+        if (key == null) {
+            return false;
+        }
+        ScalableBloomFilter filter = filterFor(userId, workload);
+        if (filter != null && !filter.mightContain(key)) {
+            return false;
+        }
+        return fingerprintRepository.existsById(MigrationFingerprint.idFor(userId, workload, key));
+    }
+
+    public void markMigrated(String userId, String workload, String jobId, List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        ScalableBloomFilter filter = filterFor(userId, workload);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MigrationFingerprint.class);
+        Date now = new Date();
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            Update update = new Update()
+                    .setOnInsert("userId", userId)
+                    .setOnInsert("workload", workload)
+                    .setOnInsert("key", key)
+                    .setOnInsert("jobId", jobId)
+                    .setOnInsert("migratedAt", now);
+            bulk.upsert(Query.query(Criteria.where("_id").is(MigrationFingerprint.idFor(userId, workload, key))), update);
+            if (filter != null) {
+                filter.put(key);
+            }
+        }
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            // The items are in Google either way; a lost fingerprint only risks a duplicate on the next run
+            System.err.println("⚠️ Failed to store " + keys.size() + " fingerprints for " + userId + ": " + e.getMessage());
+        }
+    }
+
+    // Drops a user's filters once their job ends; the next run reloads them from MongoDB
+    public void release(String userId) {
+        filters.keySet().removeIf(key -> key.startsWith(userId + "|"));
+    }
+
+    // Loaded outside the map's lock, so a long stream from MongoDB never holds up other users' filters.
+    // Null when the load failed: the caller then asks MongoDB directly.
+    private ScalableBloomFilter filterFor(String userId, String workload) {
+        String filterKey = userId + "|" + workload;
+        CompletableFuture<ScalableBloomFilter> filter = filters.get(filterKey);
+        if (filter == null) {
+            CompletableFuture<ScalableBloomFilter> loading = new CompletableFuture<>();
+            filter = filters.putIfAbsent(filterKey, loading);
+            if (filter == null) {
+                filter = loading;
+                try {
+                    loading.complete(loadFilter(userId, workload));
+                } catch (RuntimeException e) {
+                    // Kept failed until release: a filter loaded later could miss keys stored meanwhile
+                    System.err.println("⚠️ Could not load " + workload + " fingerprints for " + userId
+                            + ", checking MongoDB for every item: " + e.getMessage());
+                    loading.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return filter.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    private ScalableBloomFilter loadFilter(String userId, String workload) {
+        long existing = fingerprintRepository.countByUserIdAndWorkload(userId, workload);
+        ScalableBloomFilter filter = new ScalableBloomFilter(Math.max(MIN_CAPACITY, existing * 2), FALSE_POSITIVE_RATE);
+
+        Query query = Query.query(Criteria.where("userId").is(userId).and("workload").is(workload));
+        query.fields().include("key");
+        try (CloseableIterator<MigrationFingerprint> fingerprints = mongoTemplate.stream(query, MigrationFingerprint.class)) {
+            fingerprints.forEachRemaining(fingerprint -> filter.put(fingerprint.getKey()));
+        }
+
+        System.out.println("🧮 Loaded " + existing + " " + workload + " fingerprints for " + userId);
+        return filter;
+    }
+
+    // RFC 5322 Message-ID survives every copy of a mail; content hash only when Graph has none
+    public static String mailKey(EmailMessage email) {
+        if (email.getInternetMessageId() != null && !email.getInternetMessageId().isBlank()) {
+            return email.getInternetMessageId().trim();
+        }
+        return "hash:" + sha256(email.getFrom() + "|" + email.getSubject() + "|" + email.getReceivedDateTime());
+    }
+
+    public static String contactKey(UserContact contact) {
+        String name = contact.getName() != null ? contact.getName().trim().toLowerCase() : "";
+        String email = contact.getEmail() != null ? contact.getEmail().trim().toLowerCase() : "";
+        String phone = contact.getPhone() != null ? contact.getPhone().replaceAll("[^0-9+]", "") : "";
+        return "hash:" + sha256(name + "|" + email + "|" + phone);
+    }
+
+    public static String eventKey(CalendarEvent event) {
+        if (event.getICalUId() != null && !event.getICalUId().isBlank()) {
+            return event.getICalUId();
+        }
+        return "hash:" + sha256(event.getTitle() + "|" + event.getStartTime() + "|" + event.getEndTime());
+    }
+
+    // A OneDrive item counts as migrated in the version that was uploaded; a later edit migrates it again
+    public static String driveKey(DriveFile file) {
+        return file.getId() + "@" + (file.getModifiedTime() != null ? file.getModifiedTime() : file.getSize());
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.unwan.migration.dedupe;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bloom filter that keeps its false-positive rate however many keys go in.
+ * <p>
+ * Keys are added to the newest {@link BloomFilter}. Once it holds its capacity, a new one
+ * twice as large and with half the false-positive rate takes over, and lookups check them
+ * all. The rates form a series that adds up to the configured one, so a workload that
+ * outgrows its first estimate costs more memory instead of more MongoDB lookups.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final List<BloomFilter> filters = new CopyOnWriteArrayList<>();
+    private volatile BloomFilter current;
+    private volatile double currentRate;
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        // The first filter takes half the budget, each later one half of the previous
+        this.currentRate = falsePositiveRate * (1 - TIGHTENING);
+        this.current = new BloomFilter(initialCapacity, currentRate);
+        filters.add(current);
+    }
+
+    public void put(String key) {
+        BloomFilter filter = current;
+        if (filter.isFull()) {
+            filter = grow(filter);
+        }
+        filter.put(key);
+    }
+
+    public boolean mightContain(String key) {
+        for (BloomFilter filter : filters) {
+            if (filter.mightContain(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getFilterCount() {
+        return filters.size();
+    }
+
+    public long getBitCount() {
+        long bits = 0;
+        for (BloomFilter filter : filters) {
+            bits += filter.getBitCount();
+        }
+        return bits;
+    }
+
+    private synchronized BloomFilter grow(BloomFilter full) {
+        if (current != full) {
+            // Another writer already added the next filter
+            return current;
+        }
+        currentRate *= TIGHTENING;
+        BloomFilter next = new BloomFilter(full.getCapacity() * GROWTH, currentRate);
+        filters.add(next);
+        current = next;
+        return next;
+    }
+}
@@ -0,0 +1,258 @@
+package com.unwan.migration.drive;
+
+import com.unwan.migration.model.DriveFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local copies of OneDrive content keyed by the hash Graph reports for it, shared by every
+ * user's migration.
+ * <p>
+ * In a tenant-wide rollout the same shared document is migrated once per user; the first
+ * migration keeps a verified copy here and every later one uploads from disk instead of
+ * downloading it from Microsoft again. Copies outlive restarts, since a rollout spans many
+ * jobs. The cache stays under its byte budget by evicting the least recently used copies
+ * no upload is reading.
+ */
+@Component
+public class ContentCache {
+
+    private static final String SUFFIX = ".blob";
+
+    @Value("${migration.drive.content-cache-dir:${java.io.tmpdir}/drive-content-cache}")
+    private String cacheDir;
+
+    @Value("${migration.drive.content-cache-mb:8192}")
+    private long budgetMb;
+
+    private static final class Blob {
+        private final String key;
+        private final Path path;
+        private final long size;
+        // False while the copy is still being written
+        private boolean ready;
+        private int readers;
+
+        private Blob(String key, Path path, long size, boolean ready) {
+            this.key = key;
+            this.path = path;
+            this.size = size;
+            this.ready = ready;
+        }
+    }
+
+    // Access-ordered, so iteration starts at the least recently used copy
+    private final LinkedHashMap<String, Blob> blobs = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long stored;
+    private long evictions;
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        Path dir = Paths.get(cacheDir);
+        try {
+            Files.createDirectories(dir);
+            // Copies a previous process was still writing
+            try (DirectoryStream<Path> partials = Files.newDirectoryStream(dir, "*.part")) {
+                for (Path partial : partials) {
+                    Files.deleteIfExists(partial);
+                }
+            }
+            // Oldest first, so the copies used most recently before the restart are evicted last
+            List<Path> existing = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                files.forEach(existing::add);
+            }
+            existing.sort(Comparator.comparingLong(ContentCache::lastModified));
+            synchronized (this) {
+                for (Path path : existing) {
+                    String name = path.getFileName().toString();
+                    Blob blob = new Blob(name.substring(0, name.length() - SUFFIX.length()), path, Files.size(path), true);
+                    blobs.put(blob.key, blob);
+                    usedBytes += blob.size;
+                }
+                evictFor(0);
+            }
+            System.out.println("🗄️ Content cache: " + blobs.size() + " files, " + usedBytes / (1024 * 1024) + " MB in " + dir);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not open content cache " + dir + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return budgetMb > 0;
+    }
+
+    public synchronized boolean contains(DriveFile file) {
+        String key = keyFor(file);
+        Blob blob = key != null ? blobs.get(key) : null;
+        return blob != null && blob.ready;
+    }
+
+    // Cached copy of this content, pinned against eviction until release; null means download it
+    public synchronized Path acquire(DriveFile file) {
+        String key = keyFor(file);
+        if (!isEnabled() || key == null) {
+            return null;
+        }
+        Blob blob = blobs.get(key);
+        if (blob == null || !blob.ready) {
+            misses++;
+            return null;
+        }
+        hits++;
+        blob.readers++;
+        return blob.path;
+    }
+
+    public synchronized void release(DriveFile file) {
+        String key = keyFor(file);
+        Blob blob = key != null ? blobs.get(key) : null;
+        if (blob != null && blob.readers > 0) {
+            blob.readers--;
+        }
+    }
+
+    // Keeps a copy of a downloaded file. Unverified copies are hash-checked first, so a
+    // truncated or corrupted download can never be handed to another user.
+    public void store(DriveFile file, Path source, boolean verified) {
+        String key = keyFor(file);
+        if (!isEnabled() || key == null || file.getSize() <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (blobs.containsKey(key) || !evictFor(file.getSize())) {
+                return;
+            }
+            // Counted right away so concurrent stores cannot overshoot the budget
+            blobs.put(key, new Blob(key, Paths.get(cacheDir).resolve(key + SUFFIX), file.getSize(), false));
+            usedBytes += file.getSize();
+        }
+
+        Path target = Paths.get(cacheDir).resolve(key + SUFFIX);
+        Path partial = Paths.get(cacheDir).resolve(key + ".part");
+        try {
+            if (!verified) {
+                RangedDownloader.verify(file, source);
+            }
+            // A hard link costs no copy; the source may be deleted right after
+            try {
+                Files.deleteIfExists(partial);
+                Files.createLink(partial, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                Blob blob = blobs.get(key);
+                if (blob != null) {
+                    blob.ready = true;
+                }
+                stored++;
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Not caching " + file.getName() + ": " + e.getMessage());
+            synchronized (this) {
+                Blob blob = blobs.remove(key);
+                if (blob != null) {
+                    usedBytes -= blob.size;
+                }
+            }
+            deleteQuietly(partial);
+            deleteQuietly(target);
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long budget = budgetMb * 1024L * 1024L;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dir", cacheDir);
+        stats.put("budgetBytes", budget);
+        stats.put("usedBytes", usedBytes);
+        stats.put("files", blobs.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        stats.put("stored", stored);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    // Frees room for size more bytes; false when pinned copies leave too little
+    private boolean evictFor(long size) {
+        long budget = budgetMb * 1024L * 1024L;
+        if (size > budget) {
+            return false;
+        }
+        Iterator<Blob> lru = blobs.values().iterator();
+        while (usedBytes + size > budget && lru.hasNext()) {
+            Blob candidate = lru.next();
+            if (candidate.ready && candidate.readers == 0) {
+                lru.remove();
+                usedBytes -= candidate.size;
+                evictions++;
+                deleteQuietly(candidate.path);
+            }
+        }
+        return usedBytes + size <= budget;
+    }
+
+    // quickXorHash is reported on every OneDrive; sha1Hash only on personal ones. The size guards against collisions.
+    private static String keyFor(DriveFile file) {
+        if (file.getQuickXorHash() != null) {
+            try {
+                return "qx-" + toHex(Base64.getDecoder().decode(file.getQuickXorHash())) + "-" + file.getSize();
+            } catch (IllegalArgumentException e) {
+                // Not valid base64; try the SHA-1 instead
+            }
+        }
+        if (file.getSha1Hash() != null && file.getSha1Hash().matches("[0-9a-fA-F]+")) {
+            return "sha1-" + file.getSha1Hash().toLowerCase() + "-" + file.getSize();
+        }
+        return null;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not delete cached file " + path + ": " + e.getMessage());
+        }
+    }
+}
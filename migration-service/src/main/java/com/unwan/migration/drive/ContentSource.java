@@ -0,0 +1,25 @@
+package com.unwan.migration.drive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where an upload reads a file's bytes from: the live OneDrive download or a local copy.
+ * Uploads may re-open it at the offset Google has committed after a failure.
+ */
+@FunctionalInterface
+public interface ContentSource {
+
+    InputStream open(long offset) throws IOException;
+
+    static ContentSource ofFile(Path path) {
+        return offset -> {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return Channels.newInputStream(channel.position(offset));
+        };
+    }
+}
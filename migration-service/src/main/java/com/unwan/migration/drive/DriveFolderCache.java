@@ -0,0 +1,123 @@
+package com.unwan.migration.drive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * OneDrive folder ID → Google Drive folder ID for one migration run.
+ * <p>
+ * Every folder is created (or found) exactly once even when several crawler threads ask
+ * for it at the same time; the others wait for the first one's result. Files look their
+ * target parent up here instead of calling Google again.
+ */
+public class DriveFolderCache {
+
+    // Google's alias for My Drive, where the OneDrive root's children land
+    public static final String GOOGLE_ROOT = "root";
+
+    private final Map<String, CompletableFuture<String>> folders = new ConcurrentHashMap<>();
+
+    public String resolve(String sourceFolderId, Callable<String> create) throws Exception {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = folders.putIfAbsent(sourceFolderId, created);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            String googleId = create.call();
+            if (googleId == null) {
+                throw new IllegalStateException("Google folder for " + sourceFolderId + " was not created");
+            }
+            created.complete(googleId);
+            return googleId;
+        } catch (Exception e) {
+            // Let a later attempt try again instead of caching the failure
+            folders.remove(sourceFolderId, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // resolve() for several folders at once: create gets only the folders nobody else is resolving
+    // and returns one pending Google ID per folder, so they can all go out in a single batch
+    public List<String> resolveAll(List<String> sourceFolderIds,
+                                   Function<List<String>, List<CompletableFuture<String>>> create) throws Exception {
+        List<CompletableFuture<String>> results = new ArrayList<>(sourceFolderIds.size());
+        List<String> claimedIds = new ArrayList<>();
+        List<CompletableFuture<String>> claimed = new ArrayList<>();
+        for (String sourceFolderId : sourceFolderIds) {
+            CompletableFuture<String> created = new CompletableFuture<>();
+            CompletableFuture<String> existing = folders.putIfAbsent(sourceFolderId, created);
+            results.add(existing != null ? existing : created);
+            if (existing == null) {
+                claimedIds.add(sourceFolderId);
+                claimed.add(created);
+            }
+        }
+
+        if (!claimedIds.isEmpty()) {
+            List<CompletableFuture<String>> googleIds;
+            try {
+                googleIds = create.apply(claimedIds);
+            } catch (RuntimeException e) {
+                for (int i = 0; i < claimedIds.size(); i++) {
+                    fail(claimedIds.get(i), claimed.get(i), e);
+                }
+                throw e;
+            }
+            for (int i = 0; i < claimedIds.size(); i++) {
+                String sourceFolderId = claimedIds.get(i);
+                CompletableFuture<String> created = claimed.get(i);
+                googleIds.get(i).whenComplete((googleId, error) -> {
+                    if (error != null || googleId == null) {
+                        fail(sourceFolderId, created, error != null ? error
+                                : new IllegalStateException("Google folder for " + sourceFolderId + " was not created"));
+                    } else {
+                        created.complete(googleId);
+                    }
+                });
+            }
+        }
+
+        List<String> googleIds = new ArrayList<>(results.size());
+        for (CompletableFuture<String> result : results) {
+            googleIds.add(await(result));
+        }
+        return googleIds;
+    }
+
+    // Google ID of a folder already resolved in this run, null if unknown
+    public String find(String sourceFolderId) {
+        CompletableFuture<String> future = folders.get(sourceFolderId);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    public void put(String sourceFolderId, String googleId) {
+        folders.put(sourceFolderId, CompletableFuture.completedFuture(googleId));
+    }
+
+    public int size() {
+        return folders.size();
+    }
+
+    private void fail(String sourceFolderId, CompletableFuture<String> created, Throwable error) {
+        // Let a later attempt try again instead of caching the failure
+        folders.remove(sourceFolderId, created);
+        created.completeExceptionally(error);
+    }
+
+    private static String await(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+}
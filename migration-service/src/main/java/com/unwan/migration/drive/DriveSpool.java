@@ -0,0 +1,218 @@
+package com.unwan.migration.drive;
+
+import com.unwan.migration.model.DriveFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded on-disk buffer between OneDrive downloads and Google uploads.
+ * <p>
+ * Downloaders fill it ahead of the upload stage, so a slow Google side no longer paces
+ * OneDrive and the other way round. The spool never grows past its quota: room for a new
+ * file is made by evicting the least recently used copies nobody is uploading, and when
+ * that is not enough the file is simply not spooled and its upload streams from OneDrive.
+ * An upload that finds its copy here counts as a hit, one that does not as a miss.
+ */
+@Component
+public class DriveSpool {
+
+    private static final String SUFFIX = ".spool";
+
+    @Value("${migration.drive.spool-dir:${java.io.tmpdir}/drive-spool}")
+    private String spoolDir;
+
+    @Value("${migration.drive.spool-quota-mb:4096}")
+    private long quotaMb;
+
+    public static class Entry {
+        private final String key;
+        private final Path path;
+        private final long size;
+        private boolean complete;
+        private int readers;
+
+        Entry(String key, Path path, long size) {
+            this.key = key;
+            this.path = path;
+            this.size = size;
+        }
+
+        public Path getPath() { return path; }
+        public long getSize() { return size; }
+    }
+
+    // Access-ordered, so iteration starts at the least recently used copy
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    @PostConstruct
+    void start() {
+        Path dir = Paths.get(spoolDir);
+        try {
+            Files.createDirectories(dir);
+            // Copies left by a previous process are not tracked by this one
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                for (Path path : stale) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not prepare drive spool " + dir + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return quotaMb > 0;
+    }
+
+    // Room for a file about to be downloaded, or null when it is spooled already or does not fit
+    public synchronized Entry reserve(DriveFile file) {
+        long size = file.getSize();
+        long quota = quotaBytes();
+        String key = keyFor(file);
+        if (!isEnabled() || size <= 0 || size > quota || entries.containsKey(key)) {
+            return null;
+        }
+
+        Iterator<Entry> lru = entries.values().iterator();
+        while (usedBytes + size > quota && lru.hasNext()) {
+            Entry candidate = lru.next();
+            if (candidate.complete && candidate.readers == 0) {
+                lru.remove();
+                usedBytes -= candidate.size;
+                evictions++;
+                deleteQuietly(candidate.path);
+            }
+        }
+        if (usedBytes + size > quota) {
+            rejected++;
+            return null;
+        }
+
+        Entry entry = new Entry(key, Paths.get(spoolDir).resolve(UUID.randomUUID() + SUFFIX), size);
+        entries.put(key, entry);
+        usedBytes += size;
+        return entry;
+    }
+
+    // Room for a copy the caller downloads and then uploads itself: pinned as if acquired, so
+    // release(entry, uploaded) ends it like any other reader. Null means stream the file instead.
+    public synchronized Entry reserveForUpload(DriveFile file) {
+        Entry entry = reserve(file);
+        if (entry != null) {
+            entry.readers++;
+        }
+        return entry;
+    }
+
+    // Writes the whole stream into a reserved entry through a FileChannel
+    public void fill(Entry entry, InputStream in) throws IOException {
+        byte[] buffer = new byte[StreamingRequestBody.BUFFER_SIZE];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(entry.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk);
+                }
+            }
+        }
+        if (written != entry.size) {
+            throw new IOException("Spooled " + written + " of " + entry.size + " bytes");
+        }
+    }
+
+    public synchronized void complete(Entry entry) {
+        entry.complete = true;
+    }
+
+    // Drops a copy whose download failed
+    public synchronized void abandon(Entry entry) {
+        remove(entry);
+    }
+
+    // Spooled copy of this file, pinned against eviction until release; null means stream it instead
+    public synchronized Entry acquire(DriveFile file) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(keyFor(file));
+        if (entry == null || !entry.complete) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.readers++;
+        return entry;
+    }
+
+    // An uploaded copy is deleted at once; after a failed upload it stays for a retry until evicted
+    public synchronized void release(Entry entry, boolean uploaded) {
+        entry.readers--;
+        if (uploaded && entry.readers == 0) {
+            remove(entry);
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long quota = quotaBytes();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dir", spoolDir);
+        stats.put("quotaBytes", quota);
+        stats.put("usedBytes", usedBytes);
+        stats.put("occupancy", quota > 0 ? (double) usedBytes / quota : 0.0);
+        stats.put("entries", entries.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        stats.put("evictions", evictions);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private void remove(Entry entry) {
+        if (entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            usedBytes -= entry.size;
+        }
+        deleteQuietly(entry.path);
+    }
+
+    private long quotaBytes() {
+        return quotaMb * 1024L * 1024L;
+    }
+
+    // The same item in a newer version is a different copy
+    private static String keyFor(DriveFile file) {
+        return file.getId() + "@" + file.getModifiedTime();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not delete spooled file " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.unwan.migration.drive;
+
+import com.unwan.migration.model.DriveFile;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Files an earlier run already put into Google Drive, keyed by the OneDrive item they came from.
+ * <p>
+ * Built once per run from a single listing of the {@code appProperties} every upload carries.
+ * A OneDrive file is already there when an entry has its item ID and size, and either the same
+ * modified time or the same content hash; it is then skipped without being downloaded at all.
+ */
+public class DriveTargetIndex {
+
+    public static class Entry {
+        private final String googleId;
+        private final long size;
+        private final String modifiedTime;
+        private final String quickXorHash;
+        private final String sha1Hash;
+
+        public Entry(String googleId, long size, String modifiedTime, String quickXorHash, String sha1Hash) {
+            this.googleId = googleId;
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+            this.quickXorHash = quickXorHash;
+            this.sha1Hash = sha1Hash;
+        }
+
+        public String getGoogleId() { return googleId; }
+
+        // Same size, and the same modified time or content hash
+        public boolean matches(DriveFile file) {
+            if (size != file.getSize()) {
+                return false;
+            }
+            return sameValue(modifiedTime, file.getModifiedTime())
+                    || sameValue(quickXorHash, file.getQuickXorHash())
+                    || (sha1Hash != null && sha1Hash.equalsIgnoreCase(file.getSha1Hash()));
+        }
+
+        private static boolean sameValue(String stored, String current) {
+            return stored != null && !stored.isEmpty() && Objects.equals(stored, current);
+        }
+    }
+
+    private final Map<String, Entry> bySourceItemId = new ConcurrentHashMap<>();
+
+    // The first copy found wins; duplicates of the same item are left for the user to clean up
+    public void add(String sourceItemId, Entry entry) {
+        if (sourceItemId != null && !sourceItemId.isEmpty()) {
+            bySourceItemId.putIfAbsent(sourceItemId, entry);
+        }
+    }
+
+    // Google copy of this exact version of a OneDrive file, null when it still has to be migrated
+    public Entry find(DriveFile file) {
+        Entry entry = bySourceItemId.get(file.getId());
+        return entry != null && entry.matches(file) ? entry : null;
+    }
+
+    public boolean contains(DriveFile file) {
+        return find(file) != null;
+    }
+
+    public int size() {
+        return bySourceItemId.size();
+    }
+}
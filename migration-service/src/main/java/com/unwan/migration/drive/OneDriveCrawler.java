@@ -0,0 +1,193 @@
+package com.unwan.migration.drive;
+
+import com.microsoft.graph.models.DriveItem;
+import com.microsoft.graph.requests.DriveItemCollectionPage;
+import com.microsoft.graph.requests.GraphServiceClient;
+import com.unwan.migration.graph.GraphClientFactory;
+import com.unwan.migration.model.DriveFile;
+import okhttp3.Request;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks the whole OneDrive tree on a work-stealing pool: every folder is its own task,
+ * its child folders are forked as soon as their page arrives, and idle workers steal
+ * them. Files are handed out while the crawl is still running, so uploads overlap it.
+ * <p>
+ * The sub-folders found on a page are passed to the {@link FolderHandler} together, before
+ * any of their children are listed, so the handler can create them in one batch and a
+ * Google folder always exists before anything is put into it.
+ */
+@Component
+public class OneDriveCrawler {
+
+    public static final String ITEM_FIELDS = "id,name,file,folder,size,createdDateTime,lastModifiedDateTime,parentReference";
+    private static final int PAGE_SIZE = 200;
+
+    @FunctionalInterface
+    public interface FolderHandler {
+        // Sibling folders sharing one Google parent; returns the Google folder ID of each, in order
+        List<String> onFolders(List<DriveFile> folders, String googleParentId) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface FileHandler {
+        void onFile(DriveFile file) throws Exception;
+    }
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    @Value("${migration.drive.crawl-parallelism:4}")
+    private int crawlParallelism;
+
+    // Crawls from the OneDrive root; files of the root folder go to rootGoogleId
+    public void crawl(String accessToken, String rootGoogleId, FolderHandler folders, FileHandler files) throws Exception {
+        GraphServiceClient<Request> client = graphClients.forToken(accessToken);
+        Crawl crawl = new Crawl(client, folders, files);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, crawlParallelism));
+        try {
+            pool.invoke(new FolderTask(crawl, null, "", rootGoogleId));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (crawl.failure.get() != null) {
+            throw crawl.failure.get();
+        }
+        System.out.println("✅ OneDrive crawl finished: " + crawl.folderCount.get() + " folders, " + crawl.fileCount.get() + " files");
+    }
+
+    public static DriveFile toDriveFile(DriveItem item, String parentPath) {
+        DriveFile file = new DriveFile();
+        file.setId(item.id != null ? item.id : UUID.randomUUID().toString());
+        file.setName(item.name != null ? item.name : "Unknown File");
+        file.setPath(parentPath + "/" + file.getName());
+
+        if (item.file != null) {
+            file.setType("file");
+            if (item.name != null && item.name.contains(".")) {
+                file.setFileExtension(item.name.substring(item.name.lastIndexOf(".") + 1));
+            }
+            if (item.file.hashes != null) {
+                file.setQuickXorHash(item.file.hashes.quickXorHash);
+                file.setSha1Hash(item.file.hashes.sha1Hash);
+            }
+        } else if (item.folder != null) {
+            file.setType("folder");
+        } else {
+            file.setType("unknown");
+        }
+        file.setSize(item.size != null ? item.size : 0);
+
+        // Item ID is what the Graph content download needs
+        file.setDownloadUrl(item.id);
+        file.setAdditionalData("Source: OneDrive | ItemID: " + item.id);
+        file.setCreatedTime(item.createdDateTime != null ? item.createdDateTime.toString() : new Date().toString());
+        if (item.lastModifiedDateTime != null) {
+            file.setModifiedTime(item.lastModifiedDateTime.toString());
+        }
+        return file;
+    }
+
+    // State shared by every task of one crawl
+    private static final class Crawl {
+        private final GraphServiceClient<Request> client;
+        private final FolderHandler folders;
+        private final FileHandler files;
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final AtomicInteger folderCount = new AtomicInteger();
+        private final AtomicInteger fileCount = new AtomicInteger();
+
+        private Crawl(GraphServiceClient<Request> client, FolderHandler folders, FileHandler files) {
+            this.client = client;
+            this.folders = folders;
+            this.files = files;
+        }
+    }
+
+    private static final class FolderTask extends RecursiveAction {
+        private final Crawl crawl;
+        private final String folderId;
+        private final String path;
+        private final String googleFolderId;
+
+        private FolderTask(Crawl crawl, String folderId, String path, String googleFolderId) {
+            this.crawl = crawl;
+            this.folderId = folderId;
+            this.path = path;
+            this.googleFolderId = googleFolderId;
+        }
+
+        @Override
+        protected void compute() {
+            List<FolderTask> children = new ArrayList<>();
+            try {
+                DriveItemCollectionPage page = firstPage();
+                while (page != null && crawl.failure.get() == null) {
+                    List<DriveFile> folders = new ArrayList<>();
+                    for (DriveItem item : page.getCurrentPage()) {
+                        if (crawl.failure.get() != null) {
+                            break;
+                        }
+                        DriveFile entry = toDriveFile(item, path);
+                        entry.setGoogleParentId(googleFolderId);
+
+                        if (item.folder != null) {
+                            folders.add(entry);
+                        } else if (item.file != null) {
+                            crawl.fileCount.incrementAndGet();
+                            crawl.files.onFile(entry);
+                        }
+                    }
+
+                    if (!folders.isEmpty() && crawl.failure.get() == null) {
+                        List<String> childGoogleIds = crawl.folders.onFolders(folders, googleFolderId);
+                        for (int i = 0; i < folders.size(); i++) {
+                            crawl.folderCount.incrementAndGet();
+                            FolderTask child = new FolderTask(crawl, folders.get(i).getId(), folders.get(i).getPath(),
+                                    childGoogleIds.get(i));
+                            child.fork();
+                            children.add(child);
+                        }
+                    }
+                    page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+                }
+            } catch (Exception e) {
+                if (crawl.failure.compareAndSet(null, e)) {
+                    System.err.println("❌ OneDrive crawl failed at '" + (path.isEmpty() ? "/" : path) + "': " + e.getMessage());
+                }
+            }
+
+            for (FolderTask child : children) {
+                child.join();
+            }
+        }
+
+        private DriveItemCollectionPage firstPage() {
+            if (folderId == null) {
+                return crawl.client.me().drive().root().children()
+                        .buildRequest()
+                        .select(ITEM_FIELDS)
+                        .top(PAGE_SIZE)
+                        .get();
+            }
+            return crawl.client.me().drive().items(folderId).children()
+                    .buildRequest()
+                    .select(ITEM_FIELDS)
+                    .top(PAGE_SIZE)
+                    .get();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.unwan.migration.drive;
+
+import java.util.Base64;
+
+/**
+ * OneDrive's quickXorHash: a 160-bit XOR of the content in which every byte is shifted
+ * 11 bits further than the previous one, with the length XORed into the last 8 bytes.
+ * Graph reports it (base64) for every file, including on OneDrive for Business where no
+ * SHA-1 is available.
+ */
+public class QuickXorHash {
+
+    private static final int WIDTH_IN_BITS = 160;
+    private static final int SHIFT = 11;
+    private static final int BITS_IN_LAST_CELL = WIDTH_IN_BITS % 64;
+
+    private final long[] data = new long[(WIDTH_IN_BITS - 1) / 64 + 1];
+    private long lengthSoFar;
+    private int shiftSoFar;
+
+    public void update(byte[] array, int offset, int length) {
+        int currentShift = shiftSoFar;
+        int vectorArrayIndex = currentShift / 64;
+        int vectorOffset = currentShift % 64;
+        int iterations = Math.min(length, WIDTH_IN_BITS);
+
+        for (int i = 0; i < iterations; i++) {
+            boolean isLastCell = vectorArrayIndex == data.length - 1;
+            int bitsInVectorCell = isLastCell ? BITS_IN_LAST_CELL : 64;
+
+            if (vectorOffset <= bitsInVectorCell - 8) {
+                for (int j = offset + i; j < offset + length; j += WIDTH_IN_BITS) {
+                    data[vectorArrayIndex] ^= (long) (array[j] & 0xff) << vectorOffset;
+                }
+            } else {
+                // The byte straddles two cells: low bits into this one, the rest wrap into the next
+                int index1 = vectorArrayIndex;
+                int index2 = isLastCell ? 0 : vectorArrayIndex + 1;
+                int low = bitsInVectorCell - vectorOffset;
+
+                int xoredByte = 0;
+                for (int j = offset + i; j < offset + length; j += WIDTH_IN_BITS) {
+                    xoredByte ^= array[j] & 0xff;
+                }
+                data[index1] ^= (long) xoredByte << vectorOffset;
+                data[index2] ^= (long) xoredByte >>> low;
+            }
+
+            vectorOffset += SHIFT;
+            while (vectorOffset >= bitsInVectorCell) {
+                vectorArrayIndex = isLastCell ? 0 : vectorArrayIndex + 1;
+                vectorOffset -= bitsInVectorCell;
+            }
+        }
+
+        shiftSoFar = (int) ((shiftSoFar + (long) SHIFT * (length % WIDTH_IN_BITS)) % WIDTH_IN_BITS);
+        lengthSoFar += length;
+    }
+
+    public byte[] digest() {
+        byte[] hash = new byte[(WIDTH_IN_BITS - 1) / 8 + 1];
+        for (int i = 0; i < data.length; i++) {
+            int bytes = Math.min(8, hash.length - i * 8);
+            for (int b = 0; b < bytes; b++) {
+                hash[i * 8 + b] = (byte) (data[i] >>> (8 * b));
+            }
+        }
+        // Length goes, little-endian, into the last 8 bytes
+        for (int b = 0; b < 8; b++) {
+            hash[hash.length - 8 + b] ^= (byte) (lengthSoFar >>> (8 * b));
+        }
+        return hash;
+    }
+
+    public String digestBase64() {
+        return Base64.getEncoder().encodeToString(digest());
+    }
+}
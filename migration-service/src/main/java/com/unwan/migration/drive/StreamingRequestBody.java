@@ -0,0 +1,123 @@
+package com.unwan.migration.drive;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * OkHttp request body that copies an {@link InputStream} to the socket through one fixed
+ * buffer, so an upload fed by a download never holds more than {@link #BUFFER_SIZE} bytes
+ * of the file. The stream can only be read once, hence {@link #isOneShot()}.
+ */
+public class StreamingRequestBody extends RequestBody {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MediaType contentType;
+    private final long contentLength;
+    private final byte[] prefix;
+    private final InputStream content;
+    private final byte[] suffix;
+    // Content is written base64url-encoded without padding
+    private final boolean base64Url;
+
+    private StreamingRequestBody(String contentType, long contentLength, byte[] prefix, InputStream content, byte[] suffix,
+                                 boolean base64Url) {
+        this.contentType = MediaType.parse(contentType);
+        this.contentLength = contentLength;
+        this.prefix = prefix;
+        this.content = content;
+        this.suffix = suffix;
+        this.base64Url = base64Url;
+    }
+
+    // length is the number of bytes the stream will deliver, -1 if unknown (sent chunked)
+    public static StreamingRequestBody of(String contentType, long length, InputStream content) {
+        return new StreamingRequestBody(contentType, length, new byte[0], content, new byte[0], false);
+    }
+
+    // JSON whose one string field carries the stream base64url-encoded, e.g. Gmail's {"raw":"..."}; sent chunked
+    public static StreamingRequestBody base64UrlJson(String jsonPrefix, InputStream content, String jsonSuffix) {
+        return new StreamingRequestBody("application/json; charset=UTF-8", -1, jsonPrefix.getBytes(StandardCharsets.UTF_8),
+                content, jsonSuffix.getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    // multipart/related body for Drive's uploadType=multipart: JSON metadata part, then the media part
+    public static StreamingRequestBody multipart(String boundary, String metadataJson, String mediaType,
+                                                 long length, InputStream content) {
+        String head = "--" + boundary + "\r\n"
+                + "Content-Type: application/json; charset=UTF-8\r\n\r\n"
+                + metadataJson + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: " + mediaType + "\r\n\r\n";
+        byte[] prefix = head.getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = ("\r\n--" + boundary + "--").getBytes(StandardCharsets.UTF_8);
+        long total = length >= 0 ? prefix.length + length + suffix.length : -1;
+        return new StreamingRequestBody("multipart/related; boundary=" + boundary, total, prefix, content, suffix, false);
+    }
+
+    // In-memory slice of a buffer, e.g. one resumable upload chunk; repeatable, unlike the streaming bodies
+    public static RequestBody bytes(String contentType, byte[] buffer, int length) {
+        return RequestBody.create(MediaType.parse(contentType), buffer, 0, length);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(prefix);
+        if (base64Url) {
+            // Closing the encoder writes the last base64 quantum but must leave the sink open for the suffix
+            try (OutputStream encoder = Base64.getUrlEncoder().withoutPadding().wrap(new NonClosingOutputStream(sink.outputStream()))) {
+                copy(encoder);
+            }
+        } else {
+            copy(sink.outputStream());
+        }
+        sink.write(suffix);
+    }
+
+    private void copy(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.unwan.migration.graph;
+
+import com.microsoft.graph.httpcore.AuthenticationHandler;
+import com.microsoft.graph.httpcore.HttpClients;
+import com.microsoft.graph.requests.GraphServiceClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out {@link GraphServiceClient}s that all run on one OkHttp connection pool and
+ * dispatcher, so connections and TLS sessions to graph.microsoft.com are reused across
+ * folders, pages and jobs instead of being opened per call.
+ * <p>
+ * Each access token gets its own lightweight client (only the authentication interceptor
+ * differs); those are kept in a small LRU so repeated calls with the same token reuse it.
+ */
+@Component
+public class GraphClientFactory {
+
+    @Value("${migration.graph.max-idle-connections:32}")
+    private int maxIdleConnections;
+
+    @Value("${migration.graph.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${migration.graph.max-requests-per-host:32}")
+    private int maxRequestsPerHost;
+
+    @Value("${migration.graph.max-cached-clients:256}")
+    private int maxCachedClients;
+
+    private ConnectionPool connectionPool;
+    private Dispatcher dispatcher;
+    private OkHttpClient sharedHttpClient;
+
+    // Token supplier registry: access token -> client whose auth provider hands out that token
+    private Map<String, GraphServiceClient<Request>> clients;
+
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientHits = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        connectionPool = new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS);
+        dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(64, maxRequestsPerHost));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        // Default Graph middleware (retry, redirect, telemetry) on the shared pool
+        sharedHttpClient = HttpClients.custom()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .build();
+
+        clients = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GraphServiceClient<Request>> eldest) {
+                return size() > maxCachedClients;
+            }
+        };
+    }
+
+    public GraphServiceClient<Request> forToken(String accessToken) {
+        synchronized (clients) {
+            GraphServiceClient<Request> client = clients.get(accessToken);
+            if (client != null) {
+                clientHits.incrementAndGet();
+                return client;
+            }
+            client = buildClient(accessToken);
+            clients.put(accessToken, client);
+            clientsCreated.incrementAndGet();
+            return client;
+        }
+    }
+
+    private GraphServiceClient<Request> buildClient(String accessToken) {
+        // newBuilder() shares the pool and dispatcher; only the auth interceptor is added
+        OkHttpClient httpClient = sharedHttpClient.newBuilder()
+                .addInterceptor(new AuthenticationHandler(url -> CompletableFuture.completedFuture(accessToken)))
+                .build();
+        return GraphServiceClient.builder()
+                .httpClient(httpClient)
+                .buildClient();
+    }
+
+    // Raw HTTP on the shared pool (downloads, ranged reads); callers set their own Authorization header
+    public OkHttpClient httpClient() {
+        return sharedHttpClient;
+    }
+
+    public Map<String, Object> poolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connectionPool.connectionCount());
+        stats.put("idleConnections", connectionPool.idleConnectionCount());
+        stats.put("runningCalls", dispatcher.runningCallsCount());
+        stats.put("queuedCalls", dispatcher.queuedCallsCount());
+        synchronized (clients) {
+            stats.put("cachedClients", clients.size());
+        }
+        stats.put("clientsCreated", clientsCreated.get());
+        stats.put("clientHits", clientHits.get());
+        return stats;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+    }
+}
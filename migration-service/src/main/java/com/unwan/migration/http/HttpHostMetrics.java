@@ -0,0 +1,117 @@
+package com.unwan.migration.http;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host counters fed by OkHttp call events: how many calls ran, how many of them had
+ * to open a new connection (the rest reused a pooled one), which protocol was negotiated,
+ * and call latency. Exposed through the debug controller.
+ */
+public class HttpHostMetrics implements EventListener.Factory {
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener(hosts.computeIfAbsent(call.request().url().host(), HostStats::new));
+    }
+
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for (HostStats stats : hosts.values()) {
+            metrics.add(stats.snapshot());
+        }
+        return metrics;
+    }
+
+    private static class CallListener extends EventListener {
+        private final HostStats stats;
+        private long startNanos;
+
+        CallListener(HostStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+            stats.calls.incrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            stats.connectionsOpened.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            stats.connectionsAcquired.incrementAndGet();
+            if (connection.protocol() == Protocol.HTTP_2) {
+                stats.http2.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            stats.recordLatency(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            stats.failures.incrementAndGet();
+            stats.recordLatency(System.nanoTime() - startNanos);
+        }
+    }
+
+    private static class HostStats {
+        private final String host;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong connectionsOpened = new AtomicLong();
+        private final AtomicLong connectionsAcquired = new AtomicLong();
+        private final AtomicLong http2 = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        HostStats(String host) {
+            this.host = host;
+        }
+
+        void recordLatency(long nanos) {
+            completed.incrementAndGet();
+            totalLatencyNanos.addAndGet(nanos);
+            maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long done = completed.get();
+            long acquired = connectionsAcquired.get();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("host", host);
+            snapshot.put("calls", calls.get());
+            snapshot.put("failures", failures.get());
+            snapshot.put("connectionsOpened", connectionsOpened.get());
+            // Acquisitions that found a pooled (or multiplexed HTTP/2) connection
+            snapshot.put("connectionsReused", Math.max(0, acquired - connectionsOpened.get()));
+            snapshot.put("http2Calls", http2.get());
+            snapshot.put("avgLatencyMillis", done > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / done) : 0);
+            snapshot.put("maxLatencyMillis", TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+            return snapshot;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.unwan.migration.model;
 
 import lombok.Data;
 
+import java.util.List;
+
 
 public class CalendarEvent {
     private String id;
@@ -68,6 +70,56 @@ public class CalendarEvent {
     }
 
     private String attendees;
+    private String iCalUId;
+
+    public String getICalUId() {
+        return iCalUId;
+    }
+
+    public void setICalUId(String iCalUId) {
+        this.iCalUId = iCalUId;
+    }
+
+    // IANA zone a recurring series is expanded in
+    private String timeZone;
+    // RRULE/EXDATE lines of a series master
+    private List<String> recurrence;
+    // Start of the occurrence an exception replaces, in UTC
+    private String originalStartTime;
+    // Occurrences of a series master that were changed in Outlook
+    private List<CalendarEvent> exceptions;
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public List<String> getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(List<String> recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public String getOriginalStartTime() {
+        return originalStartTime;
+    }
+
+    public void setOriginalStartTime(String originalStartTime) {
+        this.originalStartTime = originalStartTime;
+    }
+
+    public List<CalendarEvent> getExceptions() {
+        return exceptions;
+    }
+
+    public void setExceptions(List<CalendarEvent> exceptions) {
+        this.exceptions = exceptions;
+    }
 
     // Constructors
     public CalendarEvent() {}
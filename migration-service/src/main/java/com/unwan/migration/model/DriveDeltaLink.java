@@ -0,0 +1,21 @@
+package com.unwan.migration.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Graph deltaLink where the next Drive pass of a user picks up; the id is the userId
+@Data
+@Document(collection = "drive_delta_links")
+public class DriveDeltaLink {
+    @Id
+    private String id;
+
+    private String deltaLink;
+
+    // Job that last brought Google Drive up to date with this link
+    private String jobId;
+    private Date updatedAt;
+}
@@ -73,11 +73,60 @@ public class DriveFile {
         this.fileExtension = fileExtension;
     }
 
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public void setModifiedTime(String modifiedTime) {
+        this.modifiedTime = modifiedTime;
+    }
+
+    public String getGoogleParentId() {
+        return googleParentId;
+    }
+
+    public void setGoogleParentId(String googleParentId) {
+        this.googleParentId = googleParentId;
+    }
+
+    public String getQuickXorHash() {
+        return quickXorHash;
+    }
+
+    public void setQuickXorHash(String quickXorHash) {
+        this.quickXorHash = quickXorHash;
+    }
+
+    public String getSha1Hash() {
+        return sha1Hash;
+    }
+
+    public void setSha1Hash(String sha1Hash) {
+        this.sha1Hash = sha1Hash;
+    }
+
     private String downloadUrl;
     private String createdTime;
     private String additionalData;
     private String fileExtension;
 
+    // OneDrive path ("/Documents/Reports/q3.xlsx"), last change, and the Google folder it goes into
+    private String path;
+    private String modifiedTime;
+    private String googleParentId;
+
+    // Content hashes Graph reports for the file (quickXorHash always, sha1Hash on personal OneDrive)
+    private String quickXorHash;
+    private String sha1Hash;
+
     // Constructors
     public DriveFile() {}
 
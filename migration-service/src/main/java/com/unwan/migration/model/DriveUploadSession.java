@@ -0,0 +1,29 @@
+package com.unwan.migration.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Google resumable upload session of one OneDrive item; the id is "<userId>:<itemId>"
+@Data
+@Document(collection = "drive_upload_sessions")
+public class DriveUploadSession {
+    @Id
+    private String id;
+
+    private String userId;
+    private String itemId;
+    private String jobId;
+    private String sessionUri;
+
+    // Bytes Google acknowledged so far, updated after every chunk
+    private long committedBytes;
+    private Date createdAt;
+    private Date updatedAt;
+
+    public static String idFor(String userId, String itemId) {
+        return userId + ":" + itemId;
+    }
+}
@@ -15,6 +15,7 @@ public class EmailMessage {
     private String folder;
     private boolean read;
     private boolean hasAttachments;
+    private String internetMessageId;
 
     // Constructors
     public EmailMessage() {}
@@ -98,4 +99,12 @@ public class EmailMessage {
     public void setHasAttachments(boolean hasAttachments) {
         this.hasAttachments = hasAttachments;
     }
-}
\ No newline at end of file
+
+    public String getInternetMessageId() {
+        return internetMessageId;
+    }
+
+    public void setInternetMessageId(String internetMessageId) {
+        this.internetMessageId = internetMessageId;
+    }
+}
@@ -0,0 +1,46 @@
+package com.unwan.migration.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+// One entry of the bulk progress call to status-service. Item counts are only applied when withItems is set;
+// progressFromItems tells status-service to derive progress from them instead of using the reported value
+@Setter
+@Getter
+public class JobProgressUpdate {
+    private String jobId;
+    private String status;
+    private int progress;
+    private String message;
+    private boolean withItems;
+    private boolean progressFromItems;
+    private int totalItems;
+    private int processedItems;
+    private int skippedItems;
+
+    public static JobProgressUpdate status(String jobId, String status, int progress, String message) {
+        JobProgressUpdate update = new JobProgressUpdate();
+        update.jobId = jobId;
+        update.status = status;
+        update.progress = progress;
+        update.message = message;
+        return update;
+    }
+
+    public static JobProgressUpdate items(String jobId, String status, int progress, String message,
+                                          int totalItems, int processedItems, int skippedItems) {
+        JobProgressUpdate update = status(jobId, status, progress, message);
+        update.withItems = true;
+        update.progressFromItems = true;
+        update.totalItems = totalItems;
+        update.processedItems = processedItems;
+        update.skippedItems = skippedItems;
+        return update;
+    }
+
+    @JsonIgnore
+    public boolean isTerminal() {
+        return "completed".equals(status) || "failed".equals(status) || "cancelled".equals(status);
+    }
+}
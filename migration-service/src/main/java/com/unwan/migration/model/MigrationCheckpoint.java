@@ -0,0 +1,39 @@
+package com.unwan.migration.model;
+
+import com.unwan.migration.pipeline.SourceCursor;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Last committed position of one workload of a job; the id is "<jobId>:<workload>"
+@Data
+@Document(collection = "migration_checkpoints")
+public class MigrationCheckpoint {
+    @Id
+    private String id;
+
+    private String jobId;
+    private String userId;
+    private String migrationType;
+    private String workload;
+
+    // Source cursor: next page to read, and the last item known to be in Google
+    private String folderId;
+    private String pageLink;
+    private boolean folderDone;
+    private String lastItemId;
+    private long committedItems;
+
+    private boolean completed;
+    private Date updatedAt;
+
+    public static String idFor(String jobId, String workload) {
+        return jobId + ":" + workload;
+    }
+
+    public SourceCursor toCursor() {
+        return new SourceCursor(folderId, pageLink, folderDone, lastItemId);
+    }
+}
@@ -0,0 +1,25 @@
+package com.unwan.migration.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// One item already written to Google for a user; the id is "<userId>:<workload>:<key>"
+@Data
+@Document(collection = "migration_fingerprints")
+public class MigrationFingerprint {
+    @Id
+    private String id;
+
+    private String userId;
+    private String workload;
+    private String key;     // internetMessageId, iCalUID or content hash
+    private String jobId;
+    private Date migratedAt;
+
+    public static String idFor(String userId, String workload, String key) {
+        return userId + ":" + workload + ":" + key;
+    }
+}
@@ -17,6 +17,8 @@ public class MigrationRequest {
     private String gmailAccessToken;
     private String folder;
     private String userToken;
+    // Drive only: "full" walks the whole OneDrive even when a delta link from an earlier pass exists
+    private String driveMode;
 
     public MigrationRequest() {}
 
@@ -33,7 +35,7 @@ public class MigrationRequest {
     public String toString(){
         return "MigrationRequest Data "+"email=" + email + ", userId=" + userId + ", migrationType=" + migrationType
                 + ", outlookAccessToken=" + outlookAccessToken + ", gmailAccessToken=" + gmailAccessToken
-                + ", folder=" + folder + ", userToken=" + userToken;
+                + ", folder=" + folder + ", userToken=" + userToken + ", driveMode=" + driveMode;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.unwan.migration.model;
+
+public class OutlookFolder {
+    private String id;
+    private String displayName;
+    private int totalItemCount;
+
+    // Constructors
+    public OutlookFolder() {}
+
+    public OutlookFolder(String id, String displayName, int totalItemCount) {
+        this.id = id;
+        this.displayName = displayName;
+        this.totalItemCount = totalItemCount;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getDisplayName() { return displayName; }
+    public void setDisplayName(String displayName) { this.displayName = displayName; }
+
+    public int getTotalItemCount() { return totalItemCount; }
+    public void setTotalItemCount(int totalItemCount) { this.totalItemCount = totalItemCount; }
+
+    @Override
+    public String toString() {
+        return "OutlookFolder " + displayName + " (" + id + ", " + totalItemCount + " items)";
+    }
+}
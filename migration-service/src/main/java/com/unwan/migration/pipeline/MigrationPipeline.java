@@ -0,0 +1,540 @@
+package com.unwan.migration.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Staged fetch → transform → upload engine shared by every workload.
+ * <p>
+ * Stages are connected by bounded queues: the next source page is fetched while the
+ * current batch is still uploading, and a slow upload stage blocks fetching once the
+ * queues are full instead of piling pages up in memory. Transform and upload stages
+ * each run on their own number of worker threads.
+ * <p>
+ * Pages may carry a {@link SourceCursor}. Pages are committed strictly in source order:
+ * the checkpoint listener only sees a page's cursor once that page and every page before
+ * it are fully uploaded, even though workers finish batches out of order. A page with an
+ * item that failed to transform or upload is never committed, and neither is anything
+ * after it, so a resumed job reads those items again instead of skipping past them.
+ * <p>
+ * Optionally some upload workers form a lane for large items: chunks holding one go to
+ * those workers only, so a long transfer never sits in front of small ones. Large-lane
+ * workers take small chunks while no large one is waiting, so no worker idles.
+ */
+public class MigrationPipeline<I, O> {
+
+    @FunctionalInterface
+    public interface Source<T> {
+        void produce(PageSink<T> sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface PageSink<T> {
+        // Blocks while the pipeline is full; the cursor is where the source resumes after this page
+        void emit(List<T> page, SourceCursor cursor) throws InterruptedException;
+
+        default void emit(List<T> page) throws InterruptedException {
+            emit(page, null);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Transformer<I, O> {
+        // Returning null drops the item and counts it as skipped
+        O transform(I item) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Uploader<O> {
+        // Returns how many items of the batch were written to the target
+        int upload(List<O> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(PipelineStats stats);
+    }
+
+    @FunctionalInterface
+    public interface CheckpointListener {
+        // Called in source order, one call at a time; committedItems counts the items of all committed pages.
+        // Commits that pile up while a call runs are merged into the newest one.
+        void onCommit(SourceCursor cursor, long committedItems);
+    }
+
+    private final String name;
+    private final Source<I> source;
+    private final Transformer<I, O> transformer;
+    private final Uploader<O> uploader;
+    private final int transformParallelism;
+    private final int uploadParallelism;
+    private final int batchSize;
+    private final BlockingQueue<Chunk<I>> transformQueue;
+    private final BlockingQueue<Chunk<O>> uploadQueue;
+    // Only set when a large-item lane is configured
+    private final BlockingQueue<Chunk<O>> largeQueue;
+    private final Predicate<O> isLarge;
+    private final int largeSlots;
+    private final BooleanSupplier cancelled;
+    private final Runnable pauseHook;
+    private final ProgressListener progressListener;
+    private final CheckpointListener checkpointListener;
+    private final PipelineStats stats = new PipelineStats();
+    private final PageTracker pageTracker = new PageTracker();
+
+    private MigrationPipeline(Builder<I, O> builder) {
+        this.name = builder.name;
+        this.source = builder.source;
+        this.transformer = builder.transformer;
+        this.uploader = builder.uploader;
+        this.transformParallelism = builder.transformParallelism;
+        this.uploadParallelism = builder.uploadParallelism;
+        this.batchSize = builder.batchSize;
+        this.transformQueue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.uploadQueue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.isLarge = builder.isLarge;
+        this.largeSlots = builder.isLarge != null ? Math.min(builder.largeSlots, uploadParallelism - 1) : 0;
+        this.largeQueue = largeSlots > 0 ? new ArrayBlockingQueue<>(builder.queueCapacity) : null;
+        this.cancelled = builder.cancelled;
+        this.pauseHook = builder.pauseHook;
+        this.progressListener = builder.progressListener;
+        this.checkpointListener = builder.checkpointListener;
+    }
+
+    public static <I, O> Builder<I, O> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    // Runs all stages to completion (or cancellation) and returns the final counters
+    public PipelineStats run() throws InterruptedException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(1 + transformParallelism + uploadParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger transformersLeft = new AtomicInteger(transformParallelism);
+        executor.submit(this::runFetch);
+        for (int i = 0; i < transformParallelism; i++) {
+            executor.submit(() -> runTransform(transformersLeft));
+        }
+        for (int i = 0; i < largeSlots; i++) {
+            executor.submit(this::runLargeUpload);
+        }
+        for (int i = largeSlots; i < uploadParallelism; i++) {
+            executor.submit(this::runUpload);
+        }
+        executor.shutdown();
+
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("⏳ Pipeline " + name + " still running: " + stats);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+
+        System.out.println("🏁 Pipeline " + name + " finished: " + stats);
+        return stats;
+    }
+
+    private void runFetch() {
+        try {
+            source.produce((page, cursor) -> {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Pipeline " + name + " cancelled");
+                }
+                pauseHook.run();
+
+                // Registered before any chunk is queued, so the page cannot commit early
+                int chunks = (page.size() + batchSize - 1) / batchSize;
+                long pageId = pageTracker.open(chunks, page.size(), cursor);
+
+                stats.addFetched(page.size());
+                for (int i = 0; i < page.size(); i += batchSize) {
+                    List<I> slice = new ArrayList<>(page.subList(i, Math.min(i + batchSize, page.size())));
+                    transformQueue.put(new Chunk<>(slice, pageId, true));
+                }
+            });
+        } catch (CancellationException e) {
+            System.out.println("🛑 Pipeline " + name + " source stopped: cancelled");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("❌ Pipeline " + name + " source failed: " + e.getMessage());
+            stats.setSourceError(e);
+        } finally {
+            for (int i = 0; i < transformParallelism; i++) {
+                putQuietly(transformQueue, Chunk.poison());
+            }
+        }
+    }
+
+    private void runTransform(AtomicInteger transformersLeft) {
+        try {
+            while (true) {
+                Chunk<I> chunk = transformQueue.take();
+                if (chunk.isPoison()) {
+                    break;
+                }
+                if (cancelled.getAsBoolean()) {
+                    continue;
+                }
+                pauseHook.run();
+
+                List<O> out = new ArrayList<>(chunk.items.size());
+                int skipped = 0;
+                for (I item : chunk.items) {
+                    try {
+                        O result = transformer.transform(item);
+                        if (result != null) {
+                            out.add(result);
+                        } else {
+                            stats.addSkipped(1);
+                            skipped++;
+                        }
+                    } catch (Exception e) {
+                        System.err.println("❌ Pipeline " + name + " transform failed: " + e.getMessage());
+                        stats.addFailed(1);
+                    }
+                }
+                stats.addTransformed(out.size());
+                boolean large = largeQueue != null && out.stream().anyMatch(isLarge);
+                boolean clean = chunk.clean && out.size() + skipped == chunk.items.size();
+                (large ? largeQueue : uploadQueue).put(new Chunk<>(out, chunk.pageId, clean));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The last transformer to finish releases the upload workers
+            if (transformersLeft.decrementAndGet() == 0) {
+                for (int i = largeSlots; i < uploadParallelism; i++) {
+                    putQuietly(uploadQueue, Chunk.poison());
+                }
+                for (int i = 0; i < largeSlots; i++) {
+                    putQuietly(largeQueue, Chunk.poison());
+                }
+            }
+        }
+    }
+
+    private void runUpload() {
+        try {
+            while (true) {
+                Chunk<O> chunk = uploadQueue.take();
+                if (chunk.isPoison()) {
+                    break;
+                }
+                uploadChunk(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Large chunks first; small ones in between, until the small lane has been closed
+    private void runLargeUpload() {
+        boolean smallLaneOpen = true;
+        try {
+            while (true) {
+                Chunk<O> chunk = largeQueue.poll();
+                if (chunk == null && smallLaneOpen) {
+                    chunk = uploadQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (chunk != null && chunk.isPoison()) {
+                        // That pill belongs to a small-lane worker
+                        putQuietly(uploadQueue, chunk);
+                        smallLaneOpen = false;
+                        chunk = null;
+                    }
+                    if (chunk == null) {
+                        continue;
+                    }
+                } else if (chunk == null) {
+                    chunk = largeQueue.take();
+                }
+                if (chunk.isPoison()) {
+                    break;
+                }
+                uploadChunk(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void uploadChunk(Chunk<O> chunk) {
+        if (cancelled.getAsBoolean()) {
+            return;
+        }
+        if (chunk.items.isEmpty()) {
+            pageTracker.chunkDone(chunk.pageId, chunk.clean);
+            return;
+        }
+        pauseHook.run();
+
+        boolean uploaded = false;
+        try {
+            int written = uploader.upload(chunk.items);
+            stats.addUploaded(written);
+            stats.addFailed(chunk.items.size() - written);
+            uploaded = written == chunk.items.size();
+        } catch (Exception e) {
+            System.err.println("❌ Pipeline " + name + " upload failed: " + e.getMessage());
+            stats.addFailed(chunk.items.size());
+        }
+        pageTracker.chunkDone(chunk.pageId, chunk.clean && uploaded);
+
+        try {
+            progressListener.onProgress(stats);
+        } catch (Exception e) {
+            System.err.println("⚠️ Pipeline " + name + " progress listener failed: " + e.getMessage());
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<Chunk<T>> queue, Chunk<T> chunk) {
+        try {
+            // Poison pills must be delivered or downstream workers never exit
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            // Shutting down: every worker is being interrupted anyway
+            queue.offer(chunk);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Commits pages in the order the source emitted them
+    private final class PageTracker {
+        private final TreeMap<Long, PendingPage> pending = new TreeMap<>();
+        private long nextPageId;
+        private long committedItems;
+        private long commitSequence;
+
+        // The listener runs outside the tracker's monitor, so a slow checkpoint write never stalls
+        // the source or the upload workers; whoever holds the delivery lock hands on the newest commit
+        private final AtomicReference<Commit> undelivered = new AtomicReference<>();
+        private final ReentrantLock delivery = new ReentrantLock();
+        private long deliveredSequence = -1;
+
+        long open(int chunks, int items, SourceCursor cursor) {
+            long pageId;
+            Commit commit;
+            synchronized (this) {
+                pageId = nextPageId++;
+                pending.put(pageId, new PendingPage(chunks, items, cursor));
+                commit = commitCompleted();
+            }
+            deliver(commit);
+            return pageId;
+        }
+
+        // A chunk that lost items holds its page back, and with it every later page
+        void chunkDone(long pageId, boolean clean) {
+            Commit commit;
+            synchronized (this) {
+                PendingPage page = pending.get(pageId);
+                if (page != null) {
+                    page.remainingChunks--;
+                    if (!clean && !page.failed) {
+                        page.failed = true;
+                        System.err.println("⏸️ Pipeline " + name + " keeps its checkpoint before page " + pageId + ": items failed");
+                    }
+                }
+                commit = commitCompleted();
+            }
+            deliver(commit);
+        }
+
+        // Pops the finished pages at the head; null when none was committed
+        private Commit commitCompleted() {
+            SourceCursor committed = null;
+            while (!pending.isEmpty() && pending.firstEntry().getValue().remainingChunks <= 0
+                    && !pending.firstEntry().getValue().failed) {
+                PendingPage page = pending.pollFirstEntry().getValue();
+                committedItems += page.items;
+                if (page.cursor != null) {
+                    committed = page.cursor;
+                }
+            }
+            return committed == null ? null : new Commit(commitSequence++, committed, committedItems);
+        }
+
+        private void deliver(Commit commit) {
+            if (commit == null) {
+                return;
+            }
+            undelivered.accumulateAndGet(commit, (current, next) -> current == null || next.sequence > current.sequence ? next : current);
+            // A commit queued while another thread held the lock is picked up by that thread's next round
+            do {
+                if (!delivery.tryLock()) {
+                    return;
+                }
+                try {
+                    Commit next = undelivered.getAndSet(null);
+                    // Older than what the listener already has: its caller was overtaken on the way here
+                    if (next != null && next.sequence > deliveredSequence) {
+                        deliveredSequence = next.sequence;
+                        try {
+                            checkpointListener.onCommit(next.cursor, next.committedItems);
+                        } catch (Exception e) {
+                            System.err.println("⚠️ Pipeline " + name + " checkpoint listener failed: " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    delivery.unlock();
+                }
+            } while (undelivered.get() != null);
+        }
+    }
+
+    private static final class Commit {
+        private final long sequence;
+        private final SourceCursor cursor;
+        private final long committedItems;
+
+        private Commit(long sequence, SourceCursor cursor, long committedItems) {
+            this.sequence = sequence;
+            this.cursor = cursor;
+            this.committedItems = committedItems;
+        }
+    }
+
+    private static final class PendingPage {
+        private final int items;
+        private final SourceCursor cursor;
+        private int remainingChunks;
+        private boolean failed;
+
+        private PendingPage(int chunks, int items, SourceCursor cursor) {
+            this.remainingChunks = chunks;
+            this.items = items;
+            this.cursor = cursor;
+        }
+    }
+
+    private static final class Chunk<T> {
+        private static final Chunk<?> POISON = new Chunk<>(null, -1, true);
+
+        private final List<T> items;
+        private final long pageId;
+        // False once any item of the chunk failed on its way here
+        private final boolean clean;
+
+        private Chunk(List<T> items, long pageId, boolean clean) {
+            this.items = items;
+            this.pageId = pageId;
+            this.clean = clean;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Chunk<T> poison() {
+            return (Chunk<T>) POISON;
+        }
+
+        boolean isPoison() {
+            return this == POISON;
+        }
+    }
+
+    public static class Builder<I, O> {
+        private final String name;
+        private Source<I> source;
+        private Transformer<I, O> transformer;
+        private Uploader<O> uploader;
+        private int transformParallelism = 1;
+        private int uploadParallelism = 1;
+        private int batchSize = 50;
+        private int queueCapacity = 4;
+        private Predicate<O> isLarge;
+        private int largeSlots;
+        private BooleanSupplier cancelled = () -> false;
+        private Runnable pauseHook = () -> {};
+        private ProgressListener progressListener = stats -> {};
+        private CheckpointListener checkpointListener = (cursor, committedItems) -> {};
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder<I, O> source(Source<I> source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder<I, O> transform(Transformer<I, O> transformer, int parallelism) {
+            this.transformer = transformer;
+            this.transformParallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        public Builder<I, O> upload(Uploader<O> uploader, int batchSize, int parallelism) {
+            this.uploader = uploader;
+            this.batchSize = Math.max(1, batchSize);
+            this.uploadParallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        // Reserves largeSlots of the upload workers for chunks holding an item isLarge accepts;
+        // at least one worker always stays on the small lane
+        public Builder<I, O> largeItemLane(Predicate<O> isLarge, int largeSlots) {
+            this.isLarge = isLarge;
+            this.largeSlots = Math.max(0, largeSlots);
+            return this;
+        }
+
+        // Chunks buffered between two stages before the upstream stage blocks
+        public Builder<I, O> queueCapacity(int queueCapacity) {
+            this.queueCapacity = Math.max(1, queueCapacity);
+            return this;
+        }
+
+        public Builder<I, O> cancelWhen(BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+            return this;
+        }
+
+        public Builder<I, O> pauseWith(Runnable pauseHook) {
+            this.pauseHook = pauseHook;
+            return this;
+        }
+
+        public Builder<I, O> onProgress(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public Builder<I, O> onCheckpoint(CheckpointListener checkpointListener) {
+            this.checkpointListener = checkpointListener;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public MigrationPipeline<I, O> build() {
+            if (source == null || uploader == null) {
+                throw new IllegalStateException("Pipeline " + name + " needs a source and an uploader");
+            }
+            if (transformer == null) {
+                // No transform stage configured: items pass through unchanged
+                transformer = item -> (O) item;
+            }
+            return new MigrationPipeline<>(this);
+        }
+    }
+}
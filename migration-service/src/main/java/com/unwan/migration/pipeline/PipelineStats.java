@@ -0,0 +1,40 @@
+package com.unwan.migration.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of a {@link MigrationPipeline} run, safe to read from any stage.
+ */
+public class PipelineStats {
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong transformed = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile Exception sourceError;
+
+    void addFetched(long count) { fetched.addAndGet(count); }
+    void addTransformed(long count) { transformed.addAndGet(count); }
+    void addUploaded(long count) { uploaded.addAndGet(count); }
+    void addFailed(long count) { failed.addAndGet(count); }
+    void addSkipped(long count) { skipped.addAndGet(count); }
+    void setSourceError(Exception sourceError) { this.sourceError = sourceError; }
+
+    public long getFetched() { return fetched.get(); }
+    public long getTransformed() { return transformed.get(); }
+    public long getUploaded() { return uploaded.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getSkipped() { return skipped.get(); }
+    public Exception getSourceError() { return sourceError; }
+
+    // Items that reached a final state: written, failed or skipped
+    public long getProcessed() {
+        return getUploaded() + getFailed() + getSkipped();
+    }
+
+    @Override
+    public String toString() {
+        return "PipelineStats fetched=" + getFetched() + ", transformed=" + getTransformed()
+                + ", uploaded=" + getUploaded() + ", failed=" + getFailed() + ", skipped=" + getSkipped();
+    }
+}
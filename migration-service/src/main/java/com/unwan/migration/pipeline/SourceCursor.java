@@ -0,0 +1,41 @@
+package com.unwan.migration.pipeline;
+
+/**
+ * Where a source stood right after emitting a page. Once every item of that page has
+ * been uploaded the pipeline hands the cursor to its checkpoint listener, so a restarted
+ * job can continue from the next page instead of from the beginning.
+ */
+public class SourceCursor {
+    private final String folderId;
+    private final String pageLink;
+    private final boolean folderDone;
+    private final String lastItemId;
+
+    public SourceCursor(String folderId, String pageLink, boolean folderDone, String lastItemId) {
+        this.folderId = folderId;
+        this.pageLink = pageLink;
+        this.folderDone = folderDone;
+        this.lastItemId = lastItemId;
+    }
+
+    // Position inside a paged Graph collection; a null nextLink means the folder is exhausted
+    public static SourceCursor page(String folderId, String nextLink, String lastItemId) {
+        return new SourceCursor(folderId, nextLink, nextLink == null, lastItemId);
+    }
+
+    // A parallel crawl has no resumable position, so Drive pages only count committed items
+    public static SourceCursor driveItem(String itemId) {
+        return new SourceCursor(null, null, false, itemId);
+    }
+
+    public String getFolderId() { return folderId; }
+    public String getPageLink() { return pageLink; }
+    public boolean isFolderDone() { return folderDone; }
+    public String getLastItemId() { return lastItemId; }
+
+    @Override
+    public String toString() {
+        return "SourceCursor{folderId='" + folderId + "', pageLink='" + pageLink + "', folderDone=" + folderDone
+                + ", lastItemId='" + lastItemId + "'}";
+    }
+}
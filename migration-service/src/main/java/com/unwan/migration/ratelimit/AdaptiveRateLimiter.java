@@ -0,0 +1,219 @@
+package com.unwan.migration.ratelimit;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Token bucket plus AIMD concurrency window for one (user, API) pair.
+ * <p>
+ * Every success nudges the rate and the concurrency window up; a 429/503 (or a
+ * rateLimitExceeded 403) halves both and blocks all callers until {@code Retry-After}
+ * has passed. The limiter therefore settles just under the real quota ceiling.
+ */
+public class AdaptiveRateLimiter {
+
+    private static final long DEFAULT_THROTTLE_PAUSE_MILLIS = 1000;
+    private static final long ERROR_PAUSE_MILLIS = 500;
+    private static final double MIN_RATE = 0.2;
+
+    private final String userId;
+    private final ApiQuota api;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private int concurrencyLimit;
+    private int inFlight;
+    private int successesSinceIncrease;
+    private long blockedUntilNanos;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public AdaptiveRateLimiter(String userId, ApiQuota api) {
+        this.userId = userId;
+        this.api = api;
+        this.rate = api.getInitialRate();
+        this.tokens = 1;
+        this.lastRefillNanos = System.nanoTime();
+        this.concurrencyLimit = Math.max(1, api.getMaxConcurrency() / 2);
+    }
+
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    // Takes {@code cost} tokens (a batch of N calls costs N) plus one concurrency slot
+    public void acquire(int cost) throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                if (now < blockedUntilNanos) {
+                    changed.awaitNanos(blockedUntilNanos - now);
+                } else if (inFlight >= concurrencyLimit) {
+                    changed.await();
+                } else if (tokens <= 0) {
+                    changed.awaitNanos((long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1)));
+                } else {
+                    // Tokens may go negative: a large batch is paid for by the callers after it
+                    tokens -= cost;
+                    inFlight++;
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long waited = System.nanoTime() - start;
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    // Releases the slot taken by acquire and adapts to the outcome of the call
+    public void release(int status, long retryAfterMillis) {
+        lock.lock();
+        try {
+            inFlight = Math.max(0, inFlight - 1);
+            long now = System.nanoTime();
+
+            if (isThrottle(status)) {
+                throttles.incrementAndGet();
+                rate = Math.max(MIN_RATE, rate / 2);
+                concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+                tokens = Math.min(tokens, 0);
+                successesSinceIncrease = 0;
+                long pause = retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_THROTTLE_PAUSE_MILLIS;
+                blockedUntilNanos = Math.max(blockedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(pause));
+            } else if (status == 0 || status >= 500) {
+                errors.incrementAndGet();
+                rate = Math.max(MIN_RATE, rate * 0.75);
+                blockedUntilNanos = Math.max(blockedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(ERROR_PAUSE_MILLIS));
+            } else if (status < 400) {
+                // Additive increase: about +1 call/s per second of successful traffic
+                rate = Math.min(api.getMaxRate(), rate + 1.0 / Math.max(rate, 1.0));
+                if (++successesSinceIncrease >= concurrencyLimit) {
+                    concurrencyLimit = Math.min(api.getMaxConcurrency(), concurrencyLimit + 1);
+                    successesSinceIncrease = 0;
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a RestTemplate call under the limiter. Throttled, 5xx and transport failures
+     * are retried up to {@code maxAttempts}; the last failure is rethrown.
+     */
+    public <T> ResponseEntity<T> call(Supplier<ResponseEntity<T>> request, int maxAttempts) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            acquire();
+            try {
+                ResponseEntity<T> response = request.get();
+                release(response.getStatusCodeValue(), 0);
+                return response;
+            } catch (HttpStatusCodeException e) {
+                int status = e.getRawStatusCode();
+                String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst("Retry-After") : null;
+                if (status == 403 && e.getResponseBodyAsString().contains("ateLimitExceeded")) {
+                    status = 429;
+                }
+                release(status, parseRetryAfterMillis(retryAfter));
+                if (attempt >= maxAttempts || !isRetryable(status)) {
+                    throw e;
+                }
+            } catch (ResourceAccessException e) {
+                release(0, 0);
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                release(400, 0);
+                throw e;
+            }
+            System.out.println("🔁 " + api + " call for " + userId + " failed, retry " + attempt + "/" + (maxAttempts - 1));
+        }
+    }
+
+    public static boolean isThrottle(int status) {
+        return status == 429 || status == 503;
+    }
+
+    public static boolean isRetryable(int status) {
+        return status == 0 || status == 429 || status >= 500;
+    }
+
+    public static long parseRetryAfterMillis(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000L;
+        } catch (NumberFormatException e) {
+            // HTTP-date form is rare for Google APIs; fall back to the default pause
+            return 0;
+        }
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        // Bucket holds at most one second of burst
+        tokens = Math.min(Math.max(1, rate), tokens + elapsedSeconds * rate);
+        lastRefillNanos = now;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            metrics.put("userId", userId);
+            metrics.put("api", api.name());
+            metrics.put("currentRate", Math.round(rate * 100) / 100.0);
+            metrics.put("concurrencyLimit", concurrencyLimit);
+            metrics.put("inFlight", inFlight);
+            metrics.put("blocked", System.nanoTime() < blockedUntilNanos);
+        } finally {
+            lock.unlock();
+        }
+        long count = acquisitions.get();
+        metrics.put("acquisitions", count);
+        metrics.put("throttles", throttles.get());
+        metrics.put("errors", errors.get());
+        metrics.put("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()));
+        metrics.put("avgWaitMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count) : 0);
+        metrics.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return metrics;
+    }
+
+    public double getCurrentRate() {
+        lock.lock();
+        try {
+            return rate;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
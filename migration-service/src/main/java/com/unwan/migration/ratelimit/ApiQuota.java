@@ -0,0 +1,29 @@
+package com.unwan.migration.ratelimit;
+
+/**
+ * APIs we throttle per user, with the rate each limiter starts from.
+ * The starting rate is only a first guess; the limiters adapt from there.
+ */
+public enum ApiQuota {
+    // messages.import costs 25 of the 250 quota units per user per second
+    GMAIL(10, 50, 8),
+    // People API: ~90 write requests per user per minute, mutations sent sequentially
+    PEOPLE(1.5, 5, 1),
+    CALENDAR(5, 50, 8),
+    DRIVE(5, 100, 8),
+    GRAPH(10, 100, 8);
+
+    private final double initialRate;
+    private final double maxRate;
+    private final int maxConcurrency;
+
+    ApiQuota(double initialRate, double maxRate, int maxConcurrency) {
+        this.initialRate = initialRate;
+        this.maxRate = maxRate;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public double getInitialRate() { return initialRate; }
+    public double getMaxRate() { return maxRate; }
+    public int getMaxConcurrency() { return maxConcurrency; }
+}
@@ -0,0 +1,45 @@
+package com.unwan.migration.ratelimit;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link AdaptiveRateLimiter} per (user, API). Google quotas are enforced per user,
+ * so parallel jobs for the same mailbox share a limiter while different users never
+ * slow each other down.
+ */
+@Component
+public class RateLimiterRegistry {
+
+    // Used by the preview/debug endpoints that have no user id at hand
+    public static final String ANONYMOUS = "anonymous";
+
+    private final Map<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    public AdaptiveRateLimiter get(String userId, ApiQuota api) {
+        String user = userKey(userId);
+        return limiters.computeIfAbsent(user + "|" + api.name(), key -> new AdaptiveRateLimiter(user, api));
+    }
+
+    // Drops a user's limiters once their job ends; the next job starts again from the initial rate
+    public void release(String userId) {
+        String prefix = userKey(userId) + "|";
+        limiters.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        for (AdaptiveRateLimiter limiter : limiters.values()) {
+            metrics.add(limiter.snapshot());
+        }
+        return metrics;
+    }
+
+    private static String userKey(String userId) {
+        return userId != null && !userId.isBlank() ? userId : ANONYMOUS;
+    }
+}
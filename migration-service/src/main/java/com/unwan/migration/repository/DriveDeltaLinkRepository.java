@@ -0,0 +1,7 @@
+package com.unwan.migration.repository;
+
+import com.unwan.migration.model.DriveDeltaLink;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface DriveDeltaLinkRepository extends MongoRepository<DriveDeltaLink, String> {
+}
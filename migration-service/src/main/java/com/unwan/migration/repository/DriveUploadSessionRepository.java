@@ -0,0 +1,7 @@
+package com.unwan.migration.repository;
+
+import com.unwan.migration.model.DriveUploadSession;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface DriveUploadSessionRepository extends MongoRepository<DriveUploadSession, String> {
+}
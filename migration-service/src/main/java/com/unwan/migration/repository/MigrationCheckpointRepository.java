@@ -0,0 +1,10 @@
+package com.unwan.migration.repository;
+
+import com.unwan.migration.model.MigrationCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface MigrationCheckpointRepository extends MongoRepository<MigrationCheckpoint, String> {
+    List<MigrationCheckpoint> findByJobId(String jobId);
+}
@@ -0,0 +1,8 @@
+package com.unwan.migration.repository;
+
+import com.unwan.migration.model.MigrationFingerprint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface MigrationFingerprintRepository extends MongoRepository<MigrationFingerprint, String> {
+    long countByUserIdAndWorkload(String userId, String workload);
+}
@@ -0,0 +1,101 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.MigrationCheckpoint;
+import com.unwan.migration.model.MigrationRequest;
+import com.unwan.migration.pipeline.SourceCursor;
+import com.unwan.migration.repository.MigrationCheckpointRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists per-workload cursors in {@code migration_checkpoints} and points
+ * {@code migration_jobs.resumeToken} at the active one.
+ * <p>
+ * All writes are partial upserts, so commits coming from different pipeline workers
+ * never overwrite each other.
+ */
+@Service
+public class CheckpointService {
+
+    private static final String JOBS_COLLECTION = "migration_jobs";
+
+    @Autowired
+    private MigrationCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Last resumeToken written per running job, to avoid rewriting it on every page
+    private final Map<String, String> resumeTokens = new ConcurrentHashMap<>();
+
+    public Optional<MigrationCheckpoint> find(String jobId, String workload) {
+        try {
+            return checkpointRepository.findById(MigrationCheckpoint.idFor(jobId, workload));
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to load checkpoint for " + jobId + "/" + workload + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public List<MigrationCheckpoint> findByJob(String jobId) {
+        return checkpointRepository.findByJobId(jobId);
+    }
+
+    public void commit(MigrationRequest request, String jobId, String workload, SourceCursor cursor, long committedItems) {
+        Update update = baseUpdate(request, jobId, workload)
+                .set("folderId", cursor.getFolderId())
+                .set("pageLink", cursor.getPageLink())
+                .set("folderDone", cursor.isFolderDone())
+                .set("lastItemId", cursor.getLastItemId())
+                .set("committedItems", committedItems);
+        upsert(jobId, workload, update);
+    }
+
+    public void complete(MigrationRequest request, String jobId, String workload, long committedItems) {
+        Update update = baseUpdate(request, jobId, workload)
+                .set("completed", true)
+                .set("committedItems", committedItems);
+        upsert(jobId, workload, update);
+        // The next workload of the job writes its own token anyway
+        resumeTokens.remove(jobId, MigrationCheckpoint.idFor(jobId, workload));
+    }
+
+    // Forgets a job that has stopped running, whatever its outcome
+    public void release(String jobId) {
+        resumeTokens.remove(jobId);
+    }
+
+    private Update baseUpdate(MigrationRequest request, String jobId, String workload) {
+        return new Update()
+                .setOnInsert("jobId", jobId)
+                .setOnInsert("workload", workload)
+                .set("userId", request.getUserId())
+                .set("migrationType", request.getMigrationType())
+                .set("updatedAt", new Date());
+    }
+
+    private void upsert(String jobId, String workload, Update update) {
+        String id = MigrationCheckpoint.idFor(jobId, workload);
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(id)), update, MigrationCheckpoint.class);
+
+            if (!id.equals(resumeTokens.put(jobId, id))) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("jobId").is(jobId)),
+                        Update.update("resumeToken", id), JOBS_COLLECTION);
+            }
+        } catch (Exception e) {
+            // A missed checkpoint only costs re-reading a page after a restart
+            System.err.println("⚠️ Failed to save checkpoint " + id + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.DriveDeltaLink;
+import com.unwan.migration.repository.DriveDeltaLinkRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+/**
+ * Keeps one Graph deltaLink per user in {@code drive_delta_links}. A link is only saved once
+ * a pass has applied everything before it, so a failed pass is simply repeated from the old one.
+ */
+@Service
+public class DriveDeltaService {
+
+    @Autowired
+    private DriveDeltaLinkRepository deltaLinkRepository;
+
+    public String find(String userId) {
+        try {
+            return deltaLinkRepository.findById(userId).map(DriveDeltaLink::getDeltaLink).orElse(null);
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to load delta link for " + userId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void save(String userId, String jobId, String deltaLink) {
+        DriveDeltaLink link = new DriveDeltaLink();
+        link.setId(userId);
+        link.setDeltaLink(deltaLink);
+        link.setJobId(jobId);
+        link.setUpdatedAt(new Date());
+        try {
+            deltaLinkRepository.save(link);
+        } catch (Exception e) {
+            // The next pass then runs as a full pass again, which is slower but complete
+            System.err.println("⚠️ Failed to save delta link for " + userId + ": " + e.getMessage());
+        }
+    }
+
+    public void clear(String userId) {
+        try {
+            deltaLinkRepository.deleteById(userId);
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to clear delta link for " + userId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects metadata-only Drive calls (folder creates, renames, moves, trashes) from every
+ * thread of one migration run and sends them as {@code multipart/mixed} batches of up to
+ * {@link GoogleBatchClient#MAX_BATCH_SIZE} calls.
+ * <p>
+ * There is no background thread: whoever submits while no batch is in flight waits
+ * {@code lingerMillis} for other threads to add theirs, then sends batches until the queue
+ * is empty. Everybody else just waits for their own call's result.
+ */
+public class DriveMetadataBatcher {
+
+    public static final String DRIVE_BATCH_URL = "https://www.googleapis.com/batch/drive/v3";
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final GoogleBatchClient batchClient;
+    private final String accessToken;
+    private final AdaptiveRateLimiter limiter;
+    private final long lingerMillis;
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    public DriveMetadataBatcher(GoogleBatchClient batchClient, String accessToken, AdaptiveRateLimiter limiter,
+                                long lingerMillis) {
+        this.batchClient = batchClient;
+        this.accessToken = accessToken;
+        this.limiter = limiter;
+        this.lingerMillis = lingerMillis;
+    }
+
+    // Results come back in the order of parts; a part that still failed after its retries completes normally with its status
+    public List<CompletableFuture<GoogleBatchClient.BatchResult>> submitAll(List<GoogleBatchClient.BatchPart> parts) {
+        List<CompletableFuture<GoogleBatchClient.BatchResult>> results = new ArrayList<>(parts.size());
+        for (GoogleBatchClient.BatchPart part : parts) {
+            Pending pending = new Pending(part);
+            queue.add(pending);
+            results.add(pending.result);
+        }
+        drain();
+        return results;
+    }
+
+    public GoogleBatchClient.BatchResult call(GoogleBatchClient.BatchPart part) {
+        return submitAll(List.of(part)).get(0).join();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+            try {
+                linger();
+                while (!queue.isEmpty()) {
+                    sendBatch();
+                }
+            } finally {
+                sending.set(false);
+            }
+            // Loop again for calls queued after the last batch left but before the flag was cleared
+        }
+    }
+
+    private void sendBatch() {
+        List<Pending> batch = new ArrayList<>(GoogleBatchClient.MAX_BATCH_SIZE);
+        Pending next;
+        while (batch.size() < GoogleBatchClient.MAX_BATCH_SIZE && (next = queue.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<GoogleBatchClient.BatchPart> parts = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            parts.add(pending.part);
+        }
+        try {
+            List<GoogleBatchClient.BatchResult> results =
+                    batchClient.executeWithRetry(DRIVE_BATCH_URL, accessToken, parts, MAX_ATTEMPTS, limiter);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+            System.out.println("📦 Drive metadata batch: " + batch.size() + " calls");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    private void linger() {
+        if (lingerMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(lingerMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Pending {
+        private final GoogleBatchClient.BatchPart part;
+        private final CompletableFuture<GoogleBatchClient.BatchResult> result = new CompletableFuture<>();
+
+        private Pending(GoogleBatchClient.BatchPart part) {
+            this.part = part;
+        }
+    }
+}
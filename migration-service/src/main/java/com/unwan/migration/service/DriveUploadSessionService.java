@@ -0,0 +1,79 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.DriveUploadSession;
+import com.unwan.migration.repository.DriveUploadSessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+/**
+ * Keeps Google resumable upload session URIs in {@code drive_upload_sessions}, one per
+ * (user, OneDrive item). Any worker that later migrates the same item for the same user,
+ * in this job or a restarted one, asks Google for the committed range and continues
+ * the upload instead of sending the file again.
+ */
+@Service
+public class DriveUploadSessionService {
+
+    @Autowired
+    private DriveUploadSessionRepository sessionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    public RealDriveMigrationService.UploadSessionStore forUser(String userId, String jobId) {
+        return new RealDriveMigrationService.UploadSessionStore() {
+            @Override
+            public String find(String itemId) {
+                try {
+                    return sessionRepository.findById(DriveUploadSession.idFor(userId, itemId))
+                            .map(DriveUploadSession::getSessionUri)
+                            .orElse(null);
+                } catch (Exception e) {
+                    System.err.println("⚠️ Failed to load upload session for " + itemId + ": " + e.getMessage());
+                    return null;
+                }
+            }
+
+            @Override
+            public void save(String itemId, String sessionUri) {
+                String id = DriveUploadSession.idFor(userId, itemId);
+                try {
+                    if (sessionUri == null) {
+                        sessionRepository.deleteById(id);
+                        return;
+                    }
+                    Date now = new Date();
+                    Update update = new Update()
+                            .setOnInsert("userId", userId)
+                            .setOnInsert("itemId", itemId)
+                            .setOnInsert("createdAt", now)
+                            .set("jobId", jobId)
+                            .set("sessionUri", sessionUri)
+                            .set("committedBytes", 0L)
+                            .set("updatedAt", now);
+                    mongoTemplate.upsert(Query.query(Criteria.where("_id").is(id)), update, DriveUploadSession.class);
+                } catch (Exception e) {
+                    // Only costs restarting this file from zero after a crash
+                    System.err.println("⚠️ Failed to save upload session for " + itemId + ": " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void progress(String itemId, long committedBytes) {
+                try {
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(DriveUploadSession.idFor(userId, itemId))),
+                            new Update().set("committedBytes", committedBytes).set("updatedAt", new Date()),
+                            DriveUploadSession.class);
+                } catch (Exception e) {
+                    System.err.println("⚠️ Failed to record upload progress for " + itemId + ": " + e.getMessage());
+                }
+            }
+        };
+    }
+}
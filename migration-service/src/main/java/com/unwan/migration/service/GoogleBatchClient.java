@@ -0,0 +1,298 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Sends Google API calls through the {@code multipart/mixed} batch endpoints
+ * (Gmail, Calendar, Drive). Each part's response is mapped back to its request index,
+ * and {@link #executeWithRetry} resends only the parts that failed with a retryable status.
+ */
+@Component
+public class GoogleBatchClient {
+
+    // Google rejects batches with more than 100 calls
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private static final String CRLF = "\r\n";
+
+    @Autowired
+    @Qualifier("googleRestTemplate")
+    private RestTemplate restTemplate;
+
+    public List<BatchResult> execute(String batchUrl, String accessToken, List<BatchPart> parts) {
+        if (parts.isEmpty()) {
+            return List.of();
+        }
+        if (parts.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch of " + parts.size() + " exceeds " + MAX_BATCH_SIZE + " calls");
+        }
+
+        String boundary = "batch_" + UUID.randomUUID().toString().replace("-", "");
+        byte[] body = buildBatchBody(parts, boundary);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("multipart/mixed; boundary=" + boundary));
+        headers.setBearerAuth(accessToken);
+
+        try {
+            ResponseEntity<byte[]> response = restTemplate.exchange(
+                    batchUrl, HttpMethod.POST, new HttpEntity<>(body, headers), byte[].class);
+
+            MediaType contentType = response.getHeaders().getContentType();
+            String responseBoundary = contentType != null ? contentType.getParameter("boundary") : null;
+            if (responseBoundary == null || response.getBody() == null) {
+                return failAll(parts.size(), response.getStatusCodeValue(), "Batch response without multipart body", null);
+            }
+
+            String responseBody = new String(response.getBody(), StandardCharsets.UTF_8);
+            return parseBatchResponse(responseBody, stripQuotes(responseBoundary), parts.size());
+
+        } catch (HttpStatusCodeException e) {
+            // Whole batch rejected (auth, quota, ...): every part gets the outer status
+            System.err.println("❌ Google batch request failed: " + e.getRawStatusCode() + " - " + e.getStatusText());
+            String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst("Retry-After") : null;
+            return failAll(parts.size(), e.getRawStatusCode(), e.getResponseBodyAsString(), retryAfter);
+        } catch (Exception e) {
+            System.err.println("❌ Google batch request failed: " + e.getMessage());
+            return failAll(parts.size(), 0, e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Resends only the failed, retryable parts; the returned list is aligned with {@code parts}.
+     * Every attempt takes one limiter token per part, and a throttled part slows the limiter
+     * down, so retries wait for {@code Retry-After} instead of a fixed backoff.
+     */
+    public List<BatchResult> executeWithRetry(String batchUrl, String accessToken, List<BatchPart> parts,
+                                              int maxAttempts, AdaptiveRateLimiter limiter) throws InterruptedException {
+        List<BatchResult> results = new ArrayList<>(Collections.nCopies(parts.size(), (BatchResult) null));
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            pending.add(i);
+        }
+
+        for (int attempt = 1; attempt <= maxAttempts && !pending.isEmpty(); attempt++) {
+            List<BatchPart> toSend = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                toSend.add(parts.get(index));
+            }
+
+            limiter.acquire(toSend.size());
+            List<BatchResult> attemptResults = execute(batchUrl, accessToken, toSend);
+            releaseForBatch(limiter, attemptResults);
+
+            List<Integer> stillPending = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                int index = pending.get(i);
+                BatchResult result = attemptResults.get(i);
+                results.set(index, result);
+                if (!result.isSuccess() && result.isRetryable()) {
+                    stillPending.add(index);
+                }
+            }
+
+            if (!stillPending.isEmpty()) {
+                System.out.println("🔁 Batch attempt " + attempt + ": " + stillPending.size() + "/" + parts.size() + " parts to retry");
+            }
+            pending = stillPending;
+        }
+
+        return results;
+    }
+
+    // One batch is one limiter slot: report the worst outcome among its parts
+    private void releaseForBatch(AdaptiveRateLimiter limiter, List<BatchResult> results) {
+        int status = 200;
+        long retryAfterMillis = 0;
+        for (BatchResult result : results) {
+            if (result.isThrottled()) {
+                status = 429;
+                retryAfterMillis = Math.max(retryAfterMillis, result.getRetryAfterMillis());
+            } else if (status != 429 && (result.getStatus() == 0 || result.getStatus() >= 500)) {
+                status = result.getStatus();
+            }
+        }
+        limiter.release(status, retryAfterMillis);
+    }
+
+    private byte[] buildBatchBody(List<BatchPart> parts, String boundary) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < parts.size(); i++) {
+            BatchPart part = parts.get(i);
+            StringBuilder sb = new StringBuilder();
+            sb.append("--").append(boundary).append(CRLF);
+            sb.append("Content-Type: application/http").append(CRLF);
+            sb.append("Content-ID: <item-").append(i).append(">").append(CRLF);
+            sb.append(CRLF);
+            sb.append(part.getMethod()).append(" ").append(part.getPath()).append(CRLF);
+            if (part.getBody() != null) {
+                sb.append("Content-Type: application/json; charset=UTF-8").append(CRLF);
+                sb.append(CRLF);
+                sb.append(part.getBody()).append(CRLF);
+            } else {
+                sb.append(CRLF);
+            }
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        byte[] closing = ("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8);
+        out.write(closing, 0, closing.length);
+        return out.toByteArray();
+    }
+
+    private List<BatchResult> parseBatchResponse(String body, String boundary, int expectedParts) {
+        List<BatchResult> results = new ArrayList<>(Collections.nCopies(expectedParts, (BatchResult) null));
+        String normalized = body.replace("\r\n", "\n");
+        String delimiter = "--" + boundary;
+
+        int order = 0;
+        for (String rawPart : normalized.split(java.util.regex.Pattern.quote(delimiter))) {
+            String part = rawPart.startsWith("\n") ? rawPart.substring(1) : rawPart;
+            if (part.isBlank() || part.startsWith("--")) {
+                continue;
+            }
+
+            int headerEnd = part.indexOf("\n\n");
+            if (headerEnd < 0) {
+                continue;
+            }
+            int index = parseContentIdIndex(part.substring(0, headerEnd), order++);
+
+            // Embedded HTTP response: status line, headers, blank line, body
+            String http = part.substring(headerEnd + 2);
+            int statusEnd = http.indexOf('\n');
+            String statusLine = statusEnd >= 0 ? http.substring(0, statusEnd) : http;
+            int status = parseStatus(statusLine);
+
+            String retryAfter = null;
+            String responseBody = "";
+            int innerHeaderEnd = http.indexOf("\n\n");
+            if (innerHeaderEnd >= 0) {
+                for (String header : http.substring(0, innerHeaderEnd).split("\n")) {
+                    if (header.toLowerCase().startsWith("retry-after:")) {
+                        retryAfter = header.substring("retry-after:".length()).trim();
+                    }
+                }
+                responseBody = http.substring(innerHeaderEnd + 2).trim();
+            }
+
+            if (index >= 0 && index < expectedParts) {
+                results.set(index, new BatchResult(status, responseBody, retryAfter));
+            }
+        }
+
+        for (int i = 0; i < expectedParts; i++) {
+            if (results.get(i) == null) {
+                results.set(i, new BatchResult(0, "Missing part in batch response", null));
+            }
+        }
+        return results;
+    }
+
+    // Google answers "Content-ID: <response-item-N>"; fall back to position if absent
+    private int parseContentIdIndex(String headers, int fallback) {
+        for (String header : headers.split("\n")) {
+            if (header.toLowerCase().startsWith("content-id:")) {
+                String value = header.substring("content-id:".length()).trim();
+                int dash = value.lastIndexOf('-');
+                int end = value.endsWith(">") ? value.length() - 1 : value.length();
+                try {
+                    return Integer.parseInt(value.substring(dash + 1, end));
+                } catch (Exception ignored) {
+                    return fallback;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private int parseStatus(String statusLine) {
+        String[] tokens = statusLine.trim().split(" ");
+        try {
+            return tokens.length > 1 ? Integer.parseInt(tokens[1]) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private List<BatchResult> failAll(int count, int status, String body, String retryAfter) {
+        List<BatchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new BatchResult(status, body, retryAfter));
+        }
+        return results;
+    }
+
+    private String stripQuotes(String value) {
+        return value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+    }
+
+    public static class BatchPart {
+        private final String method;
+        private final String path;
+        private final String body;
+
+        public BatchPart(String method, String path, String body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+        public static BatchPart post(String path, String jsonBody) {
+            return new BatchPart("POST", path, jsonBody);
+        }
+
+        public String getMethod() { return method; }
+        public String getPath() { return path; }
+        public String getBody() { return body; }
+
+        // Approximate wire size, used to keep batches under the request size limit
+        public int estimatedSize() {
+            return path.length() + (body != null ? body.length() : 0) + 128;
+        }
+    }
+
+    public static class BatchResult {
+        private final int status;
+        private final String body;
+        private final String retryAfter;
+
+        public BatchResult(int status, String body, String retryAfter) {
+            this.status = status;
+            this.body = body;
+            this.retryAfter = retryAfter;
+        }
+
+        public int getStatus() { return status; }
+        public String getBody() { return body; }
+        public String getRetryAfter() { return retryAfter; }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        // Transport errors, throttling and server errors are worth another attempt
+        public boolean isRetryable() {
+            return status == 0 || status >= 500 || isThrottled();
+        }
+
+        public boolean isThrottled() {
+            return status == 429 || status == 503
+                    || (status == 403 && body != null && body.contains("ateLimitExceeded"));
+        }
+
+        public long getRetryAfterMillis() {
+            return AdaptiveRateLimiter.parseRetryAfterMillis(retryAfter);
+        }
+    }
+}
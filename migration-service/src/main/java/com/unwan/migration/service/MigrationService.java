@@ -1,16 +1,40 @@
 //migration-service/src/main/java/com/unwan/migration/service/MigrationService.java
 package com.unwan.migration.service;
 
+import com.unwan.migration.dedupe.FingerprintIndex;
+import com.unwan.migration.drive.DriveFolderCache;
+import com.unwan.migration.drive.DriveTargetIndex;
+import com.unwan.migration.drive.OneDriveCrawler;
+import com.unwan.migration.drive.OneDriveDeltaReader;
+import com.unwan.migration.model.CalendarEvent;
+import com.unwan.migration.model.DriveFile;
+import com.unwan.migration.model.EmailMessage;
+import com.unwan.migration.model.JobProgressUpdate;
+import com.unwan.migration.model.MigrationCheckpoint;
 import com.unwan.migration.model.MigrationRequest;
 import com.unwan.migration.model.MigrationResponse;
+import com.unwan.migration.model.OutlookFolder;
+import com.unwan.migration.model.UserContact;
+import com.unwan.migration.pipeline.MigrationPipeline;
+import com.unwan.migration.pipeline.PipelineStats;
+import com.unwan.migration.pipeline.SourceCursor;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class MigrationService {
@@ -27,9 +51,63 @@ public class MigrationService {
     @Autowired
     private RealDriveMigrationService realDriveMigrationService;
 
+    @Autowired
+    private CheckpointService checkpointService;
+
+    @Autowired
+    private FingerprintIndex fingerprints;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private DriveUploadSessionService driveUploadSessions;
+
+    @Autowired
+    private OneDriveCrawler oneDriveCrawler;
+
+    @Autowired
+    private OneDriveDeltaReader oneDriveDelta;
+
+    @Autowired
+    private DriveDeltaService driveDeltas;
+
+    @Autowired
+    private ProgressPublisher progressPublisher;
+
     @Autowired
     private RestTemplate restTemplate;
 
+    @Value("${migration.pipeline.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${migration.pipeline.transform-parallelism:2}")
+    private int transformParallelism;
+
+    @Value("${migration.pipeline.upload-parallelism:2}")
+    private int uploadParallelism;
+
+    // Drive files download into the spool in the transform stage and may run this far ahead of the uploads
+    @Value("${migration.drive.download-parallelism:4}")
+    private int driveDownloadParallelism;
+
+    @Value("${migration.drive.spool-ahead-files:32}")
+    private int driveSpoolAheadFiles;
+
+    // Concurrent Drive uploads; files from large-file-threshold-mb up get their own slots
+    @Value("${migration.drive.upload-slots:6}")
+    private int driveUploadSlots;
+
+    @Value("${migration.drive.large-upload-slots:2}")
+    private int driveLargeUploadSlots;
+
+    @Value("${migration.drive.large-file-threshold-mb:100}")
+    private long driveLargeFileThresholdMb;
+
+    // One upload chunk of calendar events goes out as one Google batch request
+    @Value("${migration.calendar.batch-size:50}")
+    private int calendarBatchSize;
+
     private final String STATUS_SERVICE_URL = "http://status-service:8083/api/status";
 
     private final ExecutorService migrationExecutor = Executors.newCachedThreadPool();
@@ -49,35 +127,7 @@ public class MigrationService {
         try {
             createJobInStatusService(jobId, request.getUserId(), request.getEmail(), request.getMigrationType());
 
-            migrationExecutor.submit(() -> {
-                try {
-                    switch (request.getMigrationType().toLowerCase()) {
-                        case "mail":
-                            migrateMailData(request, jobId);
-                            break;
-                        case "contacts":
-                            migrateContactData(request, jobId);
-                            break;
-                        case "calendar":
-                            migrateCalendarData(request, jobId);
-                            break;
-                        case "drive":
-                            migrateDriveData(request, jobId);
-                            break;
-                        case "all":
-                            migrateAllData(request, jobId);
-                            break;
-                        default:
-                            updateJobStatus(jobId, "failed", 0, "Unknown migration type", request.getUserId(), request.getEmail());
-                    }
-                } catch (Exception e) {
-                    updateJobStatus(jobId, "failed", 0, "Migration error: " + e.getMessage(), request.getUserId(), request.getEmail());
-                } finally {
-                    userLocks.put(request.getUserId(), false);
-                    pauseFlags.remove(jobId);
-                    cancelFlags.remove(jobId);
-                }
-            });
+            launchMigration(request, jobId);
 
             return new MigrationResponse("started", "Migration started successfully", jobId);
         } catch (Exception e) {
@@ -86,6 +136,69 @@ public class MigrationService {
         }
     }
 
+    // ✅ RESUME: re-runs an interrupted job under the same jobId, continuing each workload from its checkpoint
+    public MigrationResponse resumeFromCheckpoint(String jobId, MigrationRequest request) {
+        List<MigrationCheckpoint> checkpoints = checkpointService.findByJob(jobId);
+        if (checkpoints.isEmpty()) {
+            return new MigrationResponse("failed", "No checkpoint found for this job", jobId);
+        }
+        if (checkpoints.stream().anyMatch(checkpoint -> !request.getUserId().equals(checkpoint.getUserId()))) {
+            return new MigrationResponse("failed", "Job does not belong to this user", jobId);
+        }
+        if (userLocks.containsKey(request.getUserId()) && userLocks.get(request.getUserId())) {
+            return new MigrationResponse("failed", "You already have a migration in progress. Please wait for it to complete.", jobId);
+        }
+
+        userLocks.put(request.getUserId(), true);
+        // Fresh tokens come from the request, the workload set from the original job
+        request.setMigrationType(checkpoints.get(0).getMigrationType());
+
+        try {
+            progressPublisher.reopen(jobId);
+            updateJobStatus(jobId, "in_progress", 0, "Resuming migration from checkpoint", request.getUserId(), request.getEmail());
+            launchMigration(request, jobId);
+            return new MigrationResponse("started", "Migration resumed from checkpoint", jobId);
+        } catch (Exception e) {
+            userLocks.put(request.getUserId(), false);
+            return new MigrationResponse("failed", "Failed to resume migration: " + e.getMessage(), jobId);
+        }
+    }
+
+    private void launchMigration(MigrationRequest request, String jobId) {
+        migrationExecutor.submit(() -> {
+            try {
+                switch (request.getMigrationType().toLowerCase()) {
+                    case "mail":
+                        migrateMailData(request, jobId);
+                        break;
+                    case "contacts":
+                        migrateContactData(request, jobId);
+                        break;
+                    case "calendar":
+                        migrateCalendarData(request, jobId);
+                        break;
+                    case "drive":
+                        migrateDriveData(request, jobId);
+                        break;
+                    case "all":
+                        migrateAllData(request, jobId);
+                        break;
+                    default:
+                        updateJobStatus(jobId, "failed", 0, "Unknown migration type", request.getUserId(), request.getEmail());
+                }
+            } catch (Exception e) {
+                updateJobStatus(jobId, "failed", 0, "Migration error: " + e.getMessage(), request.getUserId(), request.getEmail());
+            } finally {
+                userLocks.put(request.getUserId(), false);
+                fingerprints.release(request.getUserId());
+                rateLimiters.release(request.getUserId());
+                checkpointService.release(jobId);
+                pauseFlags.remove(jobId);
+                cancelFlags.remove(jobId);
+            }
+        });
+    }
+
     private boolean shouldPause(String jobId) {
         return pauseFlags.getOrDefault(jobId, false);
     }
@@ -105,68 +218,79 @@ public class MigrationService {
         }
     }
 
-    private String migrateMailData(MigrationRequest request, String jobId) {
+    private String migrateMailData(MigrationRequest request, String jobId) throws InterruptedException {
         try {
+            MigrationCheckpoint checkpoint = checkpointService.find(jobId, "mail").orElse(null);
+            if (checkpoint != null && checkpoint.isCompleted()) {
+                return "Mail already migrated";
+            }
+            long resumedItems = checkpoint != null ? checkpoint.getCommittedItems() : 0;
+
             updateJobStatus(jobId, "in_progress", 5, "Fetching Outlook folders", request.getUserId(), request.getEmail());
 
-            var folders = realMailMigrationService.fetchOutlookFolders(request.getOutlookAccessToken());
+            var folders = realMailMigrationService.fetchOutlookMailFolders(request.getOutlookAccessToken());
             updateJobStatus(jobId, "in_progress", 10, "Found " + folders.size() + " folders", request.getUserId(), request.getEmail());
 
-            int totalEmails = 0;
-            int migratedEmails = 0;
-
-            for (String folder : folders) {
-                var emails = realMailMigrationService.fetchOutlookMails(request.getOutlookAccessToken(), folder);
-                totalEmails += emails.size();
-            }
+            // Totals come from each folder's totalItemCount, no pre-scan of the mailbox
+            int totalEmails = folders.stream().mapToInt(OutlookFolder::getTotalItemCount).sum();
 
             updateJobStatusWithItems(jobId, "in_progress", 15,
                     "Starting migration of " + totalEmails + " emails",
-                    totalEmails, 0, request.getUserId(), request.getEmail());
-
-            for (String folder : folders) {
-                if (shouldCancel(jobId)) {
-                    updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
-                    return "cancelled";
-                }
-                waitIfPaused(jobId);
-
-                updateJobStatus(jobId, "in_progress", 20, "Processing folder: " + folder, request.getUserId(), request.getEmail());
-
-                var emails = realMailMigrationService.fetchOutlookMails(request.getOutlookAccessToken(), folder);
-
-                int batchSize = 10;
-                for (int i = 0; i < emails.size(); i += batchSize) {
-                    if (shouldCancel(jobId)) {
-                        updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
-                        return "cancelled";
-                    }
-                    waitIfPaused(jobId);
-
-                    int end = Math.min(i + batchSize, emails.size());
-                    var batch = emails.subList(i, end);
-
-                    String result = realMailMigrationService.pushToGmail(batch, request.getGmailAccessToken());
-                    migratedEmails += batch.size();
-
-                    int progress = 20 + (int) ((double) migratedEmails / totalEmails * 70);
-
-                    updateJobStatusWithItems(jobId, "in_progress", progress,
-                            "Migrated " + migratedEmails + " out of " + totalEmails + " emails (" + folder + ")",
-                            totalEmails, migratedEmails, request.getUserId(), request.getEmail());
-
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            }
-
-            String finalMessage = "Mail migration completed: " + migratedEmails + "/"+ totalEmails + " emails migrated";
-            updateJobStatus(jobId, "completed", 100, finalMessage, request.getUserId(), request.getEmail());
-            return finalMessage;
+                    totalEmails, 0, 0, request.getUserId(), request.getEmail());
+
+            // Folders before the checkpointed one are done; if it no longer exists, start over
+            SourceCursor resumeAt = checkpoint != null ? checkpoint.toCursor() : null;
+            boolean resumeFolderFound = resumeAt != null && resumeAt.getFolderId() != null
+                    && folders.stream().anyMatch(folder -> resumeAt.getFolderId().equals(folder.getId()));
+
+            PipelineStats stats = MigrationPipeline.<EmailMessage, RealMailMigrationService.PreparedMessage>builder("mail-" + jobId)
+                    .source(sink -> {
+                        boolean skipping = resumeFolderFound;
+                        for (OutlookFolder folder : folders) {
+                            String pageLink = null;
+                            if (skipping) {
+                                if (!folder.getId().equals(resumeAt.getFolderId())) {
+                                    continue;
+                                }
+                                skipping = false;
+                                if (resumeAt.isFolderDone()) {
+                                    continue;
+                                }
+                                pageLink = resumeAt.getPageLink();
+                            }
+                            if (folder.getTotalItemCount() == 0) {
+                                continue;
+                            }
+                            updateJobStatus(jobId, "in_progress", 20, "Processing folder: " + folder.getDisplayName(), request.getUserId(), request.getEmail());
+
+                            // Each page goes downstream as soon as it arrives
+                            var pages = realMailMigrationService.streamOutlookMails(request.getOutlookAccessToken(), folder, pageLink);
+                            while (pages.hasNext()) {
+                                List<EmailMessage> page = pages.next();
+                                String lastId = page.isEmpty() ? null : page.get(page.size() - 1).getId();
+                                sink.emit(page, SourceCursor.page(folder.getId(), pages.getNextLink(), lastId));
+                            }
+                        }
+                    })
+                    // Messages already in Gmail from an earlier run are dropped before the MIME build
+                    .transform(email -> fingerprints.isMigrated(request.getUserId(), FingerprintIndex.MAIL, FingerprintIndex.mailKey(email))
+                            ? null : realMailMigrationService.prepareForGmail(email), transformParallelism)
+                    .upload(batch -> {
+                        List<String> imported = new ArrayList<>(batch.size());
+                        int count = realMailMigrationService.importPrepared(batch, request.getOutlookAccessToken(),
+                                request.getGmailAccessToken(), request.getUserId(), email -> imported.add(FingerprintIndex.mailKey(email)));
+                        fingerprints.markMigrated(request.getUserId(), FingerprintIndex.MAIL, jobId, imported);
+                        return count;
+                    }, 100, uploadParallelism)
+                    .queueCapacity(queueCapacity)
+                    .cancelWhen(() -> shouldCancel(jobId))
+                    .pauseWith(() -> waitIfPaused(jobId))
+                    .onProgress(progressReporter(request, jobId, "emails", totalEmails, resumedItems))
+                    .onCheckpoint((cursor, committed) -> checkpointService.commit(request, jobId, "mail", cursor, resumedItems + committed))
+                    .build()
+                    .run();
+
+            return finishWorkload(request, jobId, stats, "Mail", "emails", totalEmails, resumedItems);
 
         } catch (Exception e) {
             updateJobStatus(jobId, "failed", 0, "Mail migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
@@ -225,54 +349,38 @@ public class MigrationService {
 //    }
 
     // Contacts migration method ko update karo
-    private String migrateContactData(MigrationRequest request, String jobId) {
+    private String migrateContactData(MigrationRequest request, String jobId) throws InterruptedException {
         try {
-            updateJobStatus(jobId, "in_progress", 5, "Fetching Outlook contacts", request.getUserId(), request.getEmail());
-
-            var contacts = realContactMigrationService.fetchOutlookContacts(request.getOutlookAccessToken());
-            int totalContacts = contacts.size();
-
-            updateJobStatusWithItems(jobId, "in_progress", 10,
-                    "Found " + totalContacts + " contacts, starting migration",
-                    totalContacts, 0, request.getUserId(), request.getEmail());
-
-            // Migrate in batches for better progress tracking
-            int batchSize = 2; // Small batches for frequent updates
-            int migratedContacts = 0;
-
-            for (int i = 0; i < contacts.size(); i += batchSize) {
-                if (shouldCancel(jobId)) {
-                    updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
-                    return "Cancelled";
-                }
-                waitIfPaused(jobId);
-
-                int end = Math.min(i + batchSize, contacts.size());
-                var batch = contacts.subList(i, end);
-
-                // ✅ ACTUAL MIGRATION - yeh line execute honi chahiye
-                String result = realContactMigrationService.pushToGoogleContacts(batch, request.getGmailAccessToken());
-                migratedContacts += batch.size();
-
-                // ✅ REAL PROGRESS CALCULATION
-                int progress = 10 + (int) ((double) migratedContacts / totalContacts * 85);
-
-                updateJobStatusWithItems(jobId, "in_progress", progress,
-                        "Migrated " + migratedContacts + " out of " + totalContacts + " contacts",
-                        totalContacts, migratedContacts, request.getUserId(), request.getEmail());
-
-                // Small delay to show progress smoothly
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+            MigrationCheckpoint checkpoint = checkpointService.find(jobId, "contacts").orElse(null);
+            if (checkpoint != null && checkpoint.isCompleted()) {
+                return "Contacts already migrated";
             }
+            long resumedItems = checkpoint != null ? checkpoint.getCommittedItems() : 0;
+            String resumeLink = checkpoint != null ? checkpoint.getPageLink() : null;
 
-            String result = "Contacts migration completed: " + migratedContacts + "/" + totalContacts + " contacts migrated";
-            updateJobStatus(jobId, "completed", 100, result, request.getUserId(), request.getEmail());
-            return result;
+            updateJobStatus(jobId, "in_progress", 5, "Fetching Outlook contacts", request.getUserId(), request.getEmail());
+
+            // People API wants mutations for one user sent sequentially, so a single upload worker
+            PipelineStats stats = MigrationPipeline.<UserContact, UserContact>builder("contacts-" + jobId)
+                    .source(sink -> realContactMigrationService.streamOutlookContacts(request.getOutlookAccessToken(), resumeLink, sink))
+                    .transform(contact -> fingerprints.isMigrated(request.getUserId(), FingerprintIndex.CONTACTS,
+                            FingerprintIndex.contactKey(contact)) ? null : contact, 1)
+                    .upload(batch -> {
+                        List<String> created = new ArrayList<>(batch.size());
+                        int count = realContactMigrationService.createGoogleContacts(batch, request.getGmailAccessToken(),
+                                request.getUserId(), contact -> created.add(FingerprintIndex.contactKey(contact)));
+                        fingerprints.markMigrated(request.getUserId(), FingerprintIndex.CONTACTS, jobId, created);
+                        return count;
+                    }, 10, 1)
+                    .queueCapacity(queueCapacity)
+                    .cancelWhen(() -> shouldCancel(jobId))
+                    .pauseWith(() -> waitIfPaused(jobId))
+                    .onProgress(progressReporter(request, jobId, "contacts", 0, resumedItems))
+                    .onCheckpoint((cursor, committed) -> checkpointService.commit(request, jobId, "contacts", cursor, resumedItems + committed))
+                    .build()
+                    .run();
+
+            return finishWorkload(request, jobId, stats, "Contacts", "contacts", 0, resumedItems);
 
         } catch (Exception e) {
             updateJobStatus(jobId, "failed", 0, "Contact migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
@@ -280,107 +388,308 @@ public class MigrationService {
         }
     }
 
-    private String migrateCalendarData(MigrationRequest request, String jobId) {
+    private String migrateCalendarData(MigrationRequest request, String jobId) throws InterruptedException {
         try {
-            updateJobStatus(jobId, "in_progress", 5, "Fetching Outlook calendar events", request.getUserId(), request.getEmail());
-
-            var events = realCalendarMigrationService.fetchOutlookEvents(request.getOutlookAccessToken());
-            int totalEvents = events.size();
-
-            updateJobStatusWithItems(jobId, "in_progress", 20,
-                    "Found " + totalEvents + " events, starting migration",
-                    totalEvents, 0, request.getUserId(), request.getEmail());
-
-            int batchSize = 5;
-            int migratedEvents = 0;
-
-            for (int i = 0; i < events.size(); i += batchSize) {
-                if (shouldCancel(jobId)) {
-                    updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
-                    return "Cancelled";
-                }
-                waitIfPaused(jobId);
+            MigrationCheckpoint checkpoint = checkpointService.find(jobId, "calendar").orElse(null);
+            if (checkpoint != null && checkpoint.isCompleted()) {
+                return "Calendar already migrated";
+            }
+            long resumedItems = checkpoint != null ? checkpoint.getCommittedItems() : 0;
+            String resumeLink = checkpoint != null ? checkpoint.getPageLink() : null;
 
-                int end = Math.min(i + batchSize, events.size());
-                var batch = events.subList(i, end);
+            updateJobStatus(jobId, "in_progress", 5, "Fetching Outlook calendar events", request.getUserId(), request.getEmail());
 
-                String result = realCalendarMigrationService.pushToGoogleCalendar(batch, request.getGmailAccessToken());
-                migratedEvents += batch.size();
+            PipelineStats stats = MigrationPipeline.<CalendarEvent, CalendarEvent>builder("calendar-" + jobId)
+                    .source(sink -> realCalendarMigrationService.streamOutlookEvents(request.getOutlookAccessToken(), resumeLink, sink))
+                    .transform(event -> fingerprints.isMigrated(request.getUserId(), FingerprintIndex.CALENDAR,
+                            FingerprintIndex.eventKey(event)) ? null : event, 1)
+                    .upload(batch -> {
+                        List<String> created = new ArrayList<>(batch.size());
+                        int count = realCalendarMigrationService.createGoogleCalendarEvents(batch, request.getGmailAccessToken(),
+                                request.getUserId(), event -> created.add(FingerprintIndex.eventKey(event)));
+                        fingerprints.markMigrated(request.getUserId(), FingerprintIndex.CALENDAR, jobId, created);
+                        return count;
+                    }, calendarBatchSize, uploadParallelism)
+                    .queueCapacity(queueCapacity)
+                    .cancelWhen(() -> shouldCancel(jobId))
+                    .pauseWith(() -> waitIfPaused(jobId))
+                    .onProgress(progressReporter(request, jobId, "events", 0, resumedItems))
+                    .onCheckpoint((cursor, committed) -> checkpointService.commit(request, jobId, "calendar", cursor, resumedItems + committed))
+                    .build()
+                    .run();
+
+            return finishWorkload(request, jobId, stats, "Calendar", "events", 0, resumedItems);
 
-                int progress = 20 + (int) ((double) migratedEvents / totalEvents * 75);
-                updateJobStatusWithItems(jobId, "in_progress", progress,
-                        "Migrated " + migratedEvents + " out of " + totalEvents + " events",
-                        totalEvents, migratedEvents, request.getUserId(), request.getEmail());
+        } catch (Exception e) {
+            updateJobStatus(jobId, "failed", 0, "Calendar migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
+            throw e;
+        }
+    }
 
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+    private String migrateDriveData(MigrationRequest request, String jobId) throws InterruptedException {
+        try {
+            MigrationCheckpoint checkpoint = checkpointService.find(jobId, "drive").orElse(null);
+            if (checkpoint != null && checkpoint.isCompleted()) {
+                return "Drive already migrated";
+            }
+            // After a complete pass only the changes since then are applied, unless a full pass is asked for
+            String deltaLink = "full".equalsIgnoreCase(request.getDriveMode()) ? null : driveDeltas.find(request.getUserId());
+            if (deltaLink != null) {
+                String result = migrateDriveChanges(request, jobId, deltaLink);
+                if (result != null) {
+                    return result;
                 }
             }
 
-            String result = "Calendar migration completed: " + migratedEvents + "/" + totalEvents + " events migrated";
-            updateJobStatus(jobId, "completed", 100, result, request.getUserId(), request.getEmail());
+            // A resumed run re-crawls the tree; files uploaded before are skipped by their fingerprint
+            var uploadSessions = driveUploadSessions.forUser(request.getUserId(), jobId);
+            DriveFolderCache folderCache = new DriveFolderCache();
+            DriveMetadataBatcher metadataBatcher = realDriveMigrationService.newMetadataBatcher(
+                    request.getGmailAccessToken(), request.getUserId());
+
+            // Taken before the crawl, so changes made while it runs are picked up by the next pass
+            String nextDeltaLink = latestDriveDeltaLink(request);
+
+            // Files already in Google Drive in their current version are skipped before anything is downloaded
+            updateJobStatus(jobId, "in_progress", 3, "Indexing existing Google Drive files", request.getUserId(), request.getEmail());
+            DriveTargetIndex existingFiles = realDriveMigrationService.loadTargetIndex(
+                    request.getGmailAccessToken(), request.getUserId());
+
+            // With every existing folder known up front, new ones are created in batches without lookups
+            boolean foldersPreloaded = realDriveMigrationService.preloadGoogleFolders(
+                    request.getGmailAccessToken(), request.getUserId(), folderCache);
+            OneDriveCrawler.FolderHandler folderHandler = (folders, googleParentId) -> {
+                if (foldersPreloaded) {
+                    return realDriveMigrationService.ensureGoogleFolders(folders, googleParentId, metadataBatcher, folderCache);
+                }
+                List<String> googleIds = new ArrayList<>(folders.size());
+                for (DriveFile folder : folders) {
+                    googleIds.add(realDriveMigrationService.ensureGoogleFolder(
+                            folder, googleParentId, request.getGmailAccessToken(), request.getUserId(), folderCache));
+                }
+                return googleIds;
+            };
+
+            updateJobStatus(jobId, "in_progress", 5, "Crawling OneDrive", request.getUserId(), request.getEmail());
+
+            PipelineStats stats = MigrationPipeline.<DriveFile, DriveFile>builder("drive-" + jobId)
+                    // Folders are recreated while crawling; files flow into the pipeline as they are found
+                    .source(sink -> oneDriveCrawler.crawl(request.getOutlookAccessToken(), DriveFolderCache.GOOGLE_ROOT,
+                            folderHandler,
+                            file -> sink.emit(List.of(file), SourceCursor.driveItem(file.getId()))))
+                    .transform(file -> {
+                        if (existingFiles.contains(file) || fingerprints.isMigrated(request.getUserId(),
+                                FingerprintIndex.DRIVE, FingerprintIndex.driveKey(file))) {
+                            return null;
+                        }
+                        // Large files download in their own upload slot, so they never hold up the small ones here
+                        if (!isLargeDriveFile(file)) {
+                            realDriveMigrationService.spoolAhead(file, request.getOutlookAccessToken());
+                        }
+                        return file;
+                    }, driveDownloadParallelism)
+                    .upload(batch -> {
+                        List<String> keys = new ArrayList<>();
+                        int written = realDriveMigrationService.transferToGoogleDrive(
+                                batch, request.getOutlookAccessToken(), request.getGmailAccessToken(), request.getUserId(),
+                                uploadSessions, file -> keys.add(FingerprintIndex.driveKey(file)));
+                        fingerprints.markMigrated(request.getUserId(), FingerprintIndex.DRIVE, jobId, keys);
+                        return written;
+                    }, 1, driveUploadSlots)
+                    .largeItemLane(this::isLargeDriveFile, driveLargeUploadSlots)
+                    .queueCapacity(driveSpoolAheadFiles)
+                    .cancelWhen(() -> shouldCancel(jobId))
+                    .pauseWith(() -> waitIfPaused(jobId))
+                    .onProgress(progressReporter(request, jobId, "files", 0, 0))
+                    .onCheckpoint((cursor, committed) -> checkpointService.commit(request, jobId, "drive", cursor, committed))
+                    .build()
+                    .run();
+
+            System.out.println("📁 Google folders resolved: " + folderCache.size());
+            String result = finishWorkload(request, jobId, stats, "Drive", "files", 0, 0);
+            saveDriveDeltaLink(request, jobId, stats, nextDeltaLink);
             return result;
 
         } catch (Exception e) {
-            updateJobStatus(jobId, "failed", 0, "Calendar migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
+            updateJobStatus(jobId, "failed", 0, "Drive migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
             throw e;
         }
     }
 
-    private String migrateDriveData(MigrationRequest request, String jobId) {
-        try {
-            updateJobStatus(jobId, "in_progress", 5, "Fetching OneDrive files", request.getUserId(), request.getEmail());
-
-            var files = realDriveMigrationService.fetchOneDriveFiles(request.getOutlookAccessToken());
-            int totalFiles = files.size();
+    // ✅ DELTA: applies only what changed in OneDrive since the stored deltaLink. New and changed files
+    // go through the upload pipeline; folders, renames, moves and deletions are applied while reading.
+    // Returns null when Graph wants a full resync instead.
+    private String migrateDriveChanges(MigrationRequest request, String jobId, String deltaLink) throws InterruptedException {
+        String userId = request.getUserId();
+        String oneDriveToken = request.getOutlookAccessToken();
+        String googleToken = request.getGmailAccessToken();
+        var uploadSessions = driveUploadSessions.forUser(userId, jobId);
+        DriveFolderCache folderCache = new DriveFolderCache();
+        DriveMetadataBatcher metadataBatcher = realDriveMigrationService.newMetadataBatcher(googleToken, userId);
+
+        // Deleted items are trashed together once the whole feed has been read
+        List<String> deletedItems = new ArrayList<>();
+        // Google copies each re-uploaded file replaces; trashed once the new version is in
+        Map<String, List<String>> replaced = new ConcurrentHashMap<>();
+        // Graph may list an item more than once in one feed
+        Set<String> emitted = ConcurrentHashMap.newKeySet();
+        AtomicReference<String> nextDeltaLink = new AtomicReference<>();
+        AtomicInteger trashed = new AtomicInteger();
+
+        updateJobStatus(jobId, "in_progress", 5, "Reading OneDrive changes", userId, request.getEmail());
+
+        PipelineStats stats = MigrationPipeline.<DriveFile, DriveFile>builder("drive-delta-" + jobId)
+                .source(sink -> {
+                    String rootItemId = oneDriveDelta.rootItemId(oneDriveToken);
+                    if (rootItemId != null) {
+                        folderCache.put(rootItemId, DriveFolderCache.GOOGLE_ROOT);
+                    }
+                    nextDeltaLink.set(oneDriveDelta.read(oneDriveToken, deltaLink, change -> {
+                        DriveFile item = change.getItem();
+                        if (change.isRoot()) {
+                            return;
+                        }
+                        if (change.isDeleted()) {
+                            deletedItems.add(item.getId());
+                            return;
+                        }
+                        String googleParentId = realDriveMigrationService.resolveGoogleParent(
+                                change.getParentId(), oneDriveToken, googleToken, userId, folderCache);
+                        if (change.isFolder()) {
+                            realDriveMigrationService.syncGoogleFolder(item, googleParentId, googleToken, userId, folderCache);
+                            return;
+                        }
+                        if (!"file".equals(item.getType()) || !emitted.add(FingerprintIndex.driveKey(item))) {
+                            return;
+                        }
+                        item.setGoogleParentId(googleParentId);
+                        List<String> outdated = realDriveMigrationService.prepareChangedFile(item, googleToken, userId);
+                        if (outdated == null) {
+                            // Renamed or moved only; Google already has this content
+                            return;
+                        }
+                        if (!outdated.isEmpty()) {
+                            replaced.put(item.getId(), outdated);
+                        }
+                        sink.emit(List.of(item), SourceCursor.driveItem(item.getId()));
+                    }));
+                    trashed.set(realDriveMigrationService.trashGoogleCopies(deletedItems, metadataBatcher));
+                })
+                .transform(file -> {
+                    if (!isLargeDriveFile(file)) {
+                        realDriveMigrationService.spoolAhead(file, oneDriveToken);
+                    }
+                    return file;
+                }, driveDownloadParallelism)
+                .upload(batch -> {
+                    List<String> keys = new ArrayList<>();
+                    int written = realDriveMigrationService.transferToGoogleDrive(
+                            batch, oneDriveToken, googleToken, userId, uploadSessions, file -> {
+                                keys.add(FingerprintIndex.driveKey(file));
+                                List<String> outdated = replaced.remove(file.getId());
+                                if (outdated != null) {
+                                    realDriveMigrationService.trashGoogleFiles(outdated, metadataBatcher);
+                                }
+                            });
+                    fingerprints.markMigrated(userId, FingerprintIndex.DRIVE, jobId, keys);
+                    return written;
+                }, 1, driveUploadSlots)
+                .largeItemLane(this::isLargeDriveFile, driveLargeUploadSlots)
+                .queueCapacity(driveSpoolAheadFiles)
+                .cancelWhen(() -> shouldCancel(jobId))
+                .pauseWith(() -> waitIfPaused(jobId))
+                .onProgress(progressReporter(request, jobId, "changed files", 0, 0))
+                .onCheckpoint((cursor, committed) -> checkpointService.commit(request, jobId, "drive", cursor, committed))
+                .build()
+                .run();
+
+        if (stats.getSourceError() instanceof OneDriveDeltaReader.ResyncRequiredException) {
+            System.out.println("🔁 " + stats.getSourceError().getMessage());
+            driveDeltas.clear(userId);
+            return null;
+        }
 
-            updateJobStatusWithItems(jobId, "in_progress", 20,
-                    "Found " + totalFiles + " files, starting migration",
-                    totalFiles, 0, request.getUserId(), request.getEmail());
+        System.out.println("🗑️ OneDrive deletions applied: " + trashed.get() + " Google items trashed");
+        String result = finishWorkload(request, jobId, stats, "Drive", "changed files", 0, 0);
+        saveDriveDeltaLink(request, jobId, stats, nextDeltaLink.get());
+        return result;
+    }
 
-            int batchSize = 3;
-            int migratedFiles = 0;
+    private boolean isLargeDriveFile(DriveFile file) {
+        return file.getSize() >= driveLargeFileThresholdMb * 1024L * 1024L;
+    }
 
-            for (int i = 0; i < files.size(); i += batchSize) {
-                if (shouldCancel(jobId)) {
-                    updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
-                    return "Cancelled";
-                }
-                waitIfPaused(jobId);
+    private String latestDriveDeltaLink(MigrationRequest request) {
+        try {
+            return oneDriveDelta.latestLink(request.getOutlookAccessToken());
+        } catch (Exception e) {
+            // This pass still runs; the next one is then a full pass again
+            System.err.println("⚠️ Could not get a OneDrive delta link: " + e.getMessage());
+            return null;
+        }
+    }
 
-                int end = Math.min(i + batchSize, files.size());
-                var batch = files.subList(i, end);
+    // Only a pass that got everything across may move the link forward; otherwise failed files would be missed
+    private void saveDriveDeltaLink(MigrationRequest request, String jobId, PipelineStats stats, String deltaLink) {
+        if (deltaLink != null && !shouldCancel(jobId) && stats.getFailed() == 0) {
+            driveDeltas.save(request.getUserId(), jobId, deltaLink);
+        }
+    }
 
-                String result = realDriveMigrationService.pushToGoogleDrive(batch, request.getOutlookAccessToken(), request.getGmailAccessToken());
-                migratedFiles += batch.size();
+    // Progress from pipeline counters; when no total is known up front, items fetched so far are the total.
+    // resumedItems are the items a previous run of this job already committed.
+    private MigrationPipeline.ProgressListener progressReporter(MigrationRequest request, String jobId, String itemLabel,
+                                                                int knownTotal, long resumedItems) {
+        return stats -> {
+            long total = Math.max(knownTotal, resumedItems + stats.getFetched());
+            long processed = resumedItems + stats.getProcessed();
+            int progress = 20 + (int) (processed * 75 / Math.max(total, 1));
+
+            String message = "Migrated " + (resumedItems + stats.getUploaded()) + " out of " + total + " " + itemLabel;
+            if (stats.getSkipped() > 0) {
+                message += ", " + stats.getSkipped() + " already migrated";
+            }
+            updateJobStatusWithItems(jobId, "in_progress", Math.min(progress, 95), message,
+                    (int) total, (int) processed, (int) stats.getSkipped(), request.getUserId(), request.getEmail());
+        };
+    }
 
-                int progress = 20 + (int) ((double) migratedFiles / totalFiles * 75);
-                updateJobStatusWithItems(jobId, "in_progress", progress,
-                        "Migrated " + migratedFiles + " out of " + totalFiles + " files",
-                        totalFiles, migratedFiles, request.getUserId(), request.getEmail());
+    // Reports the workload's result; in "all" mode it stays in_progress, since only migrateAllData finishes the job
+    private String finishWorkload(MigrationRequest request, String jobId, PipelineStats stats,
+                                  String workload, String itemLabel, int knownTotal, long resumedItems) {
+        if (shouldCancel(jobId)) {
+            updateJobStatus(jobId, "cancelled", 0, "Migration cancelled", request.getUserId(), request.getEmail());
+            return "Cancelled";
+        }
+        if (stats.getSourceError() != null) {
+            // Checkpoint stays open, so the job can be resumed from the last committed page
+            String reason = stats.getFetched() == 0 ? "Could not read from Outlook: "
+                    : "Outlook read stopped after " + stats.getFetched() + " " + itemLabel + ": ";
+            throw new IllegalStateException(reason + stats.getSourceError().getMessage(), stats.getSourceError());
+        }
 
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
+        long total = Math.max(knownTotal, resumedItems + stats.getFetched());
+        if (stats.getFailed() == 0) {
+            checkpointService.complete(request, jobId, workload.toLowerCase(), resumedItems + stats.getProcessed());
+        }
+        // Otherwise the checkpoint stays before the first failed page, so a resume retries those items
 
-            String result = "Drive migration completed: " + migratedFiles + "/" + totalFiles + " files migrated";
+        String result = workload + " migration completed: " + (resumedItems + stats.getUploaded()) + "/" + total + " " + itemLabel + " migrated";
+        if (stats.getSkipped() > 0) {
+            result += " (" + stats.getSkipped() + " already migrated, skipped)";
+        }
+        if (stats.getFailed() > 0) {
+            result += " (" + stats.getFailed() + " failed)";
+        }
+        if ("all".equalsIgnoreCase(request.getMigrationType())) {
+            updateJobStatus(jobId, "in_progress", 95, result, request.getUserId(), request.getEmail());
+        } else {
             updateJobStatus(jobId, "completed", 100, result, request.getUserId(), request.getEmail());
-            return result;
-
-        } catch (Exception e) {
-            updateJobStatus(jobId, "failed", 0, "Drive migration failed: " + e.getMessage(), request.getUserId(), request.getEmail());
-            throw e;
         }
+        return result;
     }
 
-    private String migrateAllData(MigrationRequest request, String jobId) {
+    private String migrateAllData(MigrationRequest request, String jobId) throws InterruptedException {
         try {
             StringBuilder result = new StringBuilder();
             updateJobStatus(jobId, "in_progress", 5, "Starting all migrations", request.getUserId(), request.getEmail());
@@ -388,18 +697,31 @@ public class MigrationService {
             updateJobStatus(jobId, "in_progress", 10, "Migrating mails", request.getUserId(), request.getEmail());
             String mailResult = migrateMailData(request, jobId);
             result.append("Mail: ").append(mailResult).append("; ");
+            // A cancelled workload has already reported the job as cancelled; "completed" must not replace that
+            if (shouldCancel(jobId)) {
+                return result.toString();
+            }
 
             updateJobStatus(jobId, "in_progress", 50, "Migrating contacts", request.getUserId(), request.getEmail());
             String contactResult = migrateContactData(request, jobId);
             result.append("Contacts: ").append(contactResult).append("; ");
+            if (shouldCancel(jobId)) {
+                return result.toString();
+            }
 
             updateJobStatus(jobId, "in_progress", 75, "Migrating calendar", request.getUserId(), request.getEmail());
             String calendarResult = migrateCalendarData(request, jobId);
             result.append("Calendar: ").append(calendarResult).append("; ");
+            if (shouldCancel(jobId)) {
+                return result.toString();
+            }
 
             updateJobStatus(jobId, "in_progress", 90, "Migrating drive", request.getUserId(), request.getEmail());
             String driveResult = migrateDriveData(request, jobId);
             result.append("Drive: ").append(driveResult);
+            if (shouldCancel(jobId)) {
+                return result.toString();
+            }
 
             updateJobStatus(jobId, "completed", 100, "All migrations completed successfully", request.getUserId(), request.getEmail());
             return result.toString();
@@ -429,61 +751,33 @@ public class MigrationService {
     private void createJobInStatusService(String jobId, String userId, String userEmail, String migrationType) {
         try {
             String url = STATUS_SERVICE_URL + "/job";
-            String requestBody = String.format(
-                    "{\"jobId\":\"%s\",\"userId\":\"%s\",\"userEmail\":\"%s\",\"migrationType\":\"%s\"}",
-                    jobId, userId, userEmail, migrationType
-            );
+            Map<String, String> requestBody = new LinkedHashMap<>();
+            requestBody.put("jobId", jobId);
+            requestBody.put("userId", userId);
+            requestBody.put("userEmail", userEmail);
+            requestBody.put("migrationType", migrationType);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
+            HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, headers);
 
+            // Stays synchronous: the job must exist before the first progress flush reaches it
             restTemplate.postForEntity(url, entity, String.class);
         } catch (Exception e) {
             System.err.println("Failed to create job: " + e.getMessage());
         }
     }
 
+    // ✅ ASYNC: both only queue the latest state; ProgressPublisher flushes it in bulk
     private void updateJobStatus(String jobId, String status, int progress, String message, String userId, String userEmail) {
-        try {
-            String url = STATUS_SERVICE_URL + "/job/" + jobId;
-            String requestBody = String.format(
-                    "{\"status\":\"%s\",\"progress\":%d,\"message\":\"%s\"}",
-                    status, progress, message
-            );
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-
-            restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
-        } catch (Exception e) {
-            System.err.println("Failed to update job status: " + e.getMessage());
-        }
+        progressPublisher.publish(JobProgressUpdate.status(jobId, status, progress, message));
     }
 
     private void updateJobStatusWithItems(String jobId, String status, int progress,
-                                          String message, int totalItems, int processedItems,
+                                          String message, int totalItems, int processedItems, int skippedItems,
                                           String userId, String userEmail) {
-        try {
-            String url = STATUS_SERVICE_URL + "/job/" + jobId + "/items";
-            String requestBody = String.format(
-                    "{\"status\":\"%s\",\"progress\":%d,\"message\":\"%s\",\"totalItems\":%d,\"processedItems\":%d}",
-                    status, progress, message, totalItems, processedItems
-            );
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PUT, entity, String.class);
-
-            System.out.println("✅ Progress update sent to status service: " + progress + "%");
-
-        } catch (Exception e) {
-            System.err.println("❌ Failed to update job with items: " + e.getMessage());
-            e.printStackTrace();
-        }
+        progressPublisher.publish(JobProgressUpdate.items(jobId, status, progress, message,
+                totalItems, processedItems, skippedItems));
     }
 
     public MigrationResponse getStatus(String jobId) {
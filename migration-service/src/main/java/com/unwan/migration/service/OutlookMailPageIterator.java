@@ -0,0 +1,72 @@
+package com.unwan.migration.service;
+
+import com.microsoft.graph.models.Message;
+import com.microsoft.graph.requests.MessageCollectionPage;
+import com.microsoft.graph.requests.MessageCollectionRequest;
+import com.microsoft.graph.requests.MessageCollectionRequestBuilder;
+import com.unwan.migration.model.EmailMessage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Walks every page of a mail folder by following {@code @odata.nextLink}.
+ * Only one page is held at a time, so callers can push each page as soon as it arrives.
+ */
+public class OutlookMailPageIterator implements Iterator<List<EmailMessage>> {
+
+    private final Function<Message, EmailMessage> mapper;
+    private MessageCollectionRequest firstRequest;
+    private MessageCollectionRequestBuilder nextPage;
+    private String nextLink;
+
+    public OutlookMailPageIterator(MessageCollectionRequest firstRequest, Function<Message, EmailMessage> mapper) {
+        this.firstRequest = firstRequest;
+        this.mapper = mapper;
+    }
+
+    // Continues a folder from a nextLink saved in a checkpoint
+    public static OutlookMailPageIterator resumeAt(MessageCollectionRequestBuilder nextPage, Function<Message, EmailMessage> mapper) {
+        OutlookMailPageIterator iterator = new OutlookMailPageIterator(null, mapper);
+        iterator.nextPage = nextPage;
+        return iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return firstRequest != null || nextPage != null;
+    }
+
+    @Override
+    public List<EmailMessage> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more Outlook mail pages");
+        }
+
+        MessageCollectionPage page;
+        if (firstRequest != null) {
+            page = firstRequest.get();
+            firstRequest = null;
+        } else {
+            page = nextPage.buildRequest().get();
+        }
+
+        nextPage = page != null ? page.getNextPage() : null;
+        nextLink = nextPage != null ? nextPage.getRequestUrl() : null;
+
+        if (page == null || page.getCurrentPage() == null) {
+            return List.of();
+        }
+        return page.getCurrentPage().stream()
+                .map(mapper)
+                .collect(Collectors.toList());
+    }
+
+    // @odata.nextLink of the page last returned, null once the folder is exhausted
+    public String getNextLink() {
+        return nextLink;
+    }
+}
@@ -0,0 +1,129 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.JobProgressUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends job progress to status-service without making migration threads wait on it.
+ * <p>
+ * {@link #publish} only records the latest state per job; a single background thread
+ * flushes everything pending in one bulk call at most {@code flushes-per-second} times a
+ * second. A failed flush puts its updates back unless a newer one has arrived meanwhile.
+ * Once a job reaches completed/failed/cancelled, later in-progress reports for it are
+ * dropped until {@link #reopen} is called, so a straggling progress callback can never
+ * flip a finished job back to running.
+ */
+@Service
+public class ProgressPublisher {
+
+    private static final String BULK_URL = "http://status-service:8083/api/status/jobs/bulk";
+    private static final int MAX_FINISHED_JOBS = 10_000;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Value("${migration.status.flushes-per-second:2}")
+    private int flushesPerSecond;
+
+    private final Map<String, JobProgressUpdate> pending = new ConcurrentHashMap<>();
+
+    // Jobs whose last published state was terminal; bounded, oldest forgotten first
+    private final Set<String> finishedJobs = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_FINISHED_JOBS;
+                }
+            }));
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "progress-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        long periodMillis = 1000L / Math.max(1, flushesPerSecond);
+        flusher.scheduleWithFixedDelay(this::flush, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void publish(JobProgressUpdate update) {
+        if (update.isTerminal()) {
+            finishedJobs.add(update.getJobId());
+        } else if (finishedJobs.contains(update.getJobId())) {
+            return;
+        }
+        pending.merge(update.getJobId(), update, ProgressPublisher::coalesce);
+    }
+
+    // A job restarted under the same id (checkpoint resume) may report progress again
+    public void reopen(String jobId) {
+        finishedJobs.remove(jobId);
+    }
+
+    private static JobProgressUpdate coalesce(JobProgressUpdate previous, JobProgressUpdate next) {
+        if (previous.isTerminal() && !next.isTerminal()) {
+            return previous;
+        }
+        if (!next.isWithItems() && previous.isWithItems()) {
+            // Keep the item counts a status-only message would otherwise drop, but its own progress
+            JobProgressUpdate merged = JobProgressUpdate.items(next.getJobId(), next.getStatus(), next.getProgress(),
+                    next.getMessage(), previous.getTotalItems(), previous.getProcessedItems(), previous.getSkippedItems());
+            merged.setProgressFromItems(false);
+            return merged;
+        }
+        return next;
+    }
+
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<JobProgressUpdate> batch = new ArrayList<>();
+        for (String jobId : new ArrayList<>(pending.keySet())) {
+            JobProgressUpdate update = pending.remove(jobId);
+            if (update != null) {
+                batch.add(update);
+            }
+        }
+
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            restTemplate.exchange(BULK_URL, HttpMethod.PUT, new HttpEntity<>(batch, headers), String.class);
+        } catch (Exception e) {
+            System.err.println("❌ Failed to publish " + batch.size() + " job updates: " + e.getMessage());
+            for (JobProgressUpdate update : batch) {
+                // Newer state wins; the failed one only comes back if nothing replaced it
+                pending.merge(update.getJobId(), update, (newer, failed) -> coalesce(failed, newer));
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+}
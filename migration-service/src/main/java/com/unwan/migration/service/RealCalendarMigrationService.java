@@ -1,81 +1,353 @@
 package com.unwan.migration.service;
 
 import com.microsoft.graph.authentication.IAuthenticationProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.graph.models.DateTimeTimeZone;
+import com.microsoft.graph.models.EventType;
+import com.microsoft.graph.options.Option;
+import com.microsoft.graph.options.QueryOption;
 import com.microsoft.graph.requests.GraphServiceClient;
 import com.microsoft.graph.requests.EventCollectionPage;
+import com.microsoft.graph.requests.EventCollectionRequest;
+import com.microsoft.graph.requests.EventCollectionRequestBuilder;
+import com.unwan.migration.calendar.RecurrenceTranslator;
+import com.unwan.migration.graph.GraphClientFactory;
 import com.unwan.migration.model.CalendarEvent;
+import com.unwan.migration.pipeline.MigrationPipeline;
+import com.unwan.migration.pipeline.SourceCursor;
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
+import com.unwan.migration.time.DateTimeConverter;
 import okhttp3.Request;
 import org.jetbrains.annotations.NotNull;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class RealCalendarMigrationService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    @Autowired
+    private GoogleBatchClient googleBatchClient;
+
+    @Value("${migration.calendar.batch-size:50}")
+    private int calendarBatchSize;
+
+    @Value("${migration.calendar.fetch-window-months:12}")
+    private int fetchWindowMonths;
+
+    // Windows of one job fetched at once
+    @Value("${migration.calendar.fetch-parallelism:4}")
+    private int fetchParallelism;
+
+    // Shared by every job's window fetches
+    @Value("${migration.calendar.fetch-threads:16}")
+    private int fetchThreads;
+
+    private ExecutorService fetchExecutor;
 
     // ✅ FIXED: Proper ISO formatter
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    private static final DateTimeFormatter ISO_FORMATTER = DateTimeConverter.ISO_OFFSET;
+
+    private static final String CALENDAR_BATCH_URL = "https://www.googleapis.com/batch/calendar/v3";
+    private static final String CALENDAR_EVENTS_PATH = "/calendar/v3/calendars/primary/events";
+    // events.import keeps one Google event per iCalUID, so a repeated write updates instead of duplicating
+    private static final String CALENDAR_IMPORT_PATH = CALENDAR_EVENTS_PATH + "/import";
+    // Keep each batch request well below Google's payload limit
+    private static final long MAX_BATCH_BYTES = 8L * 1024 * 1024;
+    // A retried import overwrites the same event, so failed parts get more attempts than other batches
+    private static final int BATCH_MAX_ATTEMPTS = 6;
+
+    private static final String EVENT_FIELDS = "id,iCalUId,subject,body,start,end,location,attendees,isAllDay,organizer,webLink,"
+            + "type,recurrence,originalStartTimeZone";
+    private static final String INSTANCE_FIELDS = "id,type,originalStart,subject,body,start,end,location,attendees";
+    // Open-ended series are checked for deleted and changed occurrences this far ahead
+    private static final int SERIES_HORIZON_YEARS = 2;
+    private static final int MAX_SERIES_OCCURRENCES = 2000;
+
+    // Checkpoint of a windowed fetch: every event starting before the instant after the prefix is migrated
+    private static final String WINDOW_CURSOR_PREFIX = "window:";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Fetches one window: every page of events starting inside it, in order, without a cursor
+    @FunctionalInterface
+    interface WindowFetch {
+        void fetch(EventWindow window, MigrationPipeline.PageSink<CalendarEvent> pages) throws Exception;
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        fetchExecutor = Executors.newFixedThreadPool(Math.max(1, fetchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "calendar-fetch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        fetchExecutor.shutdownNow();
+    }
 
     public List<CalendarEvent> fetchOutlookEvents(String accessToken) {
-        List<CalendarEvent> allEvents = new ArrayList<>();
+        List<CalendarEvent> allEvents = Collections.synchronizedList(new ArrayList<>());
         System.out.println("🔄 Fetching Outlook calendar events...");
 
         try {
-            GraphServiceClient<Request> graphClient = getGraphClient(accessToken);
+            streamOutlookEvents(accessToken, null, (page, cursor) -> allEvents.addAll(page));
+            System.out.println("✅ Successfully fetched " + allEvents.size() + " events from Outlook Calendar");
+            return allEvents;
 
-            // ✅ FIXED: More fields select karo for better data
+        } catch (Exception e) {
+            System.err.println("❌ Outlook calendar fetch failed: " + e.getMessage());
+            // Return dummy events for testing
+            return Arrays.asList(new CalendarEvent());
+        }
+    }
+
+    // ✅ NEW: Every page of Outlook events, handed to the pipeline as it arrives
+    // ✅ WINDOWS: the calendar is split into time windows by event start, fetched fetch-parallelism at a time
+    public void streamOutlookEvents(String accessToken, String resumeLink, MigrationPipeline.PageSink<CalendarEvent> sink)
+            throws Exception {
+        GraphServiceClient<Request> graphClient = getGraphClient(accessToken);
+
+        if (resumeLink != null && !resumeLink.startsWith(WINDOW_CURSOR_PREFIX)) {
+            // Checkpoint of a job that started before the fetch was windowed
+            streamEventPages(graphClient, new EventCollectionRequestBuilder(resumeLink, graphClient, null).buildRequest().get(), sink);
+            return;
+        }
+
+        OffsetDateTime resumeFrom = resumeLink != null
+                ? DateTimeConverter.parseOffsetDateTime(resumeLink.substring(WINDOW_CURSOR_PREFIX.length()))
+                : null;
+        List<EventWindow> windows = planWindows(graphClient, resumeFrom);
+        System.out.println("🗓️ Fetching Outlook calendar in " + windows.size() + " time windows, "
+                + Math.max(1, fetchParallelism) + " at a time");
+        fetchWindows(windows, (window, pages) -> fetchWindow(graphClient, window, pages), sink);
+    }
+
+    // Runs fetch for every window on the shared pool, at most fetch-parallelism of them at once, and stamps
+    // each page with the window resume marker. The first failure cancels the windows still running.
+    void fetchWindows(List<EventWindow> windows, WindowFetch fetch, MigrationPipeline.PageSink<CalendarEvent> sink)
+            throws Exception {
+        WindowProgress progress = new WindowProgress(windows);
+        CompletionService<Void> completion = new ExecutorCompletionService<>(fetchExecutor);
+        List<Future<Void>> running = new ArrayList<>();
+        int parallelism = Math.max(1, fetchParallelism);
+        try {
+            for (int i = 0; i < windows.size(); i++) {
+                if (i >= parallelism) {
+                    awaitWindow(completion);
+                }
+                int index = i;
+                running.add(completion.submit(() -> {
+                    fetch.fetch(windows.get(index), (events, ignored) -> {
+                        String lastId = events.isEmpty() ? null : events.get(events.size() - 1).getId();
+                        sink.emit(events, SourceCursor.page(null, progress.resumeMarker(), lastId));
+                    });
+                    progress.done(index);
+                    return null;
+                }));
+            }
+            // Windows finish in any order
+            for (int i = Math.max(0, windows.size() - parallelism); i < windows.size(); i++) {
+                awaitWindow(completion);
+            }
+        } finally {
+            for (Future<Void> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void awaitWindow(CompletionService<Void> completion) throws Exception {
+        try {
+            completion.take().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private void fetchWindow(GraphServiceClient<Request> graphClient, EventWindow window,
+                             MigrationPipeline.PageSink<CalendarEvent> pages) throws InterruptedException {
+        EventCollectionRequest request = graphClient.me().events()
+                .buildRequest()
+                .select(EVENT_FIELDS)
+                .top(100);
+        if (window.filter() != null) {
+            request = request.filter(window.filter());
+        }
+
+        EventCollectionPage page = request.get();
+        int eventCount = 0;
+        while (page != null && page.getCurrentPage() != null) {
+            List<CalendarEvent> events = page.getCurrentPage().stream()
+                    .map(graphEvent -> withRecurrence(graphClient, graphEvent, mapOutlookEventToCalendarEvent(graphEvent)))
+                    .collect(Collectors.toList());
+            pages.emit(events);
+            eventCount += events.size();
+            page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+        }
+        System.out.println("📅 Fetched " + eventCount + " Outlook events " + window);
+    }
+
+    private void streamEventPages(GraphServiceClient<Request> graphClient, EventCollectionPage page,
+                                  MigrationPipeline.PageSink<CalendarEvent> sink) throws InterruptedException {
+        while (page != null && page.getCurrentPage() != null) {
+            List<CalendarEvent> events = page.getCurrentPage().stream()
+                    .map(graphEvent -> withRecurrence(graphClient, graphEvent, mapOutlookEventToCalendarEvent(graphEvent)))
+                    .collect(Collectors.toList());
+            String nextLink = page.getNextPage() != null ? page.getNextPage().getRequestUrl() : null;
+            String lastId = events.isEmpty() ? null : events.get(events.size() - 1).getId();
+
+            sink.emit(events, SourceCursor.page(null, nextLink, lastId));
+            page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+        }
+    }
+
+    // Consecutive windows of fetch-window-months between the earliest and latest event start. The first and
+    // last windows are open-ended, so events outside the probed range are still fetched exactly once.
+    private List<EventWindow> planWindows(GraphServiceClient<Request> graphClient, OffsetDateTime resumeFrom) {
+        OffsetDateTime earliest = resumeFrom != null ? resumeFrom : boundaryStart(graphClient, "start/dateTime");
+        OffsetDateTime latest = boundaryStart(graphClient, "start/dateTime desc");
+
+        List<EventWindow> windows = new ArrayList<>();
+        OffsetDateTime from = resumeFrom;
+        if (earliest != null && latest != null && fetchWindowMonths > 0) {
+            OffsetDateTime boundary = earliest.withOffsetSameInstant(ZoneOffset.UTC)
+                    .truncatedTo(ChronoUnit.DAYS)
+                    .withDayOfMonth(1)
+                    .plusMonths(fetchWindowMonths);
+            while (!boundary.isAfter(latest)) {
+                windows.add(new EventWindow(from, boundary));
+                from = boundary;
+                boundary = boundary.plusMonths(fetchWindowMonths);
+            }
+        }
+        windows.add(new EventWindow(from, null));
+        return windows;
+    }
+
+    // Start of the first event in this order; null for an empty calendar or when it cannot be read,
+    // which leaves a single window covering everything
+    private OffsetDateTime boundaryStart(GraphServiceClient<Request> graphClient, String orderBy) {
+        try {
             EventCollectionPage page = graphClient.me().events()
                     .buildRequest()
-                    .select("subject,body,start,end,location,attendees,isAllDay,organizer,webLink")
-                    .top(100)
+                    .select("start")
+                    .orderBy(orderBy)
+                    .top(1)
                     .get();
+            if (page == null || page.getCurrentPage() == null || page.getCurrentPage().isEmpty()) {
+                return null;
+            }
+            return DateTimeConverter.parseOffsetDateTime(convertDateTimeTimeZone(page.getCurrentPage().get(0).start));
+        } catch (Exception e) {
+            System.err.println("⚠️ Could not probe calendar range (" + orderBy + "): " + e.getMessage());
+            return null;
+        }
+    }
 
-            int eventCount = 0;
-            while (page != null && page.getCurrentPage() != null) {
-                List<CalendarEvent> pageEvents = page.getCurrentPage().stream()
-                        .map(this::mapOutlookEventToCalendarEvent)
-                        .collect(Collectors.toList());
+    // Events whose start falls in [from, to); a null bound is open
+    static final class EventWindow {
+        private static final DateTimeFormatter FILTER_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
-                allEvents.addAll(pageEvents);
-                eventCount += pageEvents.size();
+        private final OffsetDateTime from;
+        private final OffsetDateTime to;
 
-                System.out.println("📅 Fetched " + pageEvents.size() + " events from Outlook");
+        EventWindow(OffsetDateTime from, OffsetDateTime to) {
+            this.from = from;
+            this.to = to;
+        }
 
-                // ✅ FIXED: Better pagination handling
-                if (page.getNextPage() != null) {
-                    page = page.getNextPage().buildRequest().get();
-                } else {
-                    page = null;
-                }
+        // Graph compares start/dateTime as UTC text
+        private String filter() {
+            List<String> clauses = new ArrayList<>();
+            if (from != null) {
+                clauses.add("start/dateTime ge '" + from.withOffsetSameInstant(ZoneOffset.UTC).format(FILTER_FORMATTER) + "'");
+            }
+            if (to != null) {
+                clauses.add("start/dateTime lt '" + to.withOffsetSameInstant(ZoneOffset.UTC).format(FILTER_FORMATTER) + "'");
             }
+            return clauses.isEmpty() ? null : String.join(" and ", clauses);
+        }
 
-            System.out.println("✅ Successfully fetched " + eventCount + " events from Outlook Calendar");
-            return allEvents;
+        @Override
+        public String toString() {
+            return "[" + (from != null ? from.toLocalDate() : "…") + " → " + (to != null ? to.toLocalDate() : "…") + ")";
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌ Outlook calendar fetch failed: " + e.getMessage());
-            // Return dummy events for testing
-            return Arrays.asList(new CalendarEvent());
+    // Tracks which windows have emitted all their pages. A page's checkpoint marker names the start of the first
+    // window still in flight: the pipeline commits pages in emit order, so once that page commits, every window
+    // before the marker is fully migrated and a resumed job starts there.
+    private static final class WindowProgress {
+        private final List<EventWindow> windows;
+        private final boolean[] done;
+
+        private WindowProgress(List<EventWindow> windows) {
+            this.windows = windows;
+            this.done = new boolean[windows.size()];
+        }
+
+        private synchronized void done(int index) {
+            done[index] = true;
+        }
+
+        private synchronized String resumeMarker() {
+            int first = 0;
+            while (first < done.length - 1 && done[first]) {
+                first++;
+            }
+            OffsetDateTime from = windows.get(first).from;
+            return from != null ? WINDOW_CURSOR_PREFIX + from : null;
         }
     }
 
     private CalendarEvent mapOutlookEventToCalendarEvent(com.microsoft.graph.models.Event graphEvent) {
         CalendarEvent event = new CalendarEvent();
+        event.setId(graphEvent.id);
+        event.setICalUId(graphEvent.iCalUId);
 
         // ✅ FIXED: Better title handling
         event.setTitle(graphEvent.subject != null ? graphEvent.subject : "No Title");
@@ -121,25 +393,90 @@ public class RealCalendarMigrationService {
         return event;
     }
 
+    // ✅ RECURRENCE: a series master carries its RRULE, an EXDATE for every deleted occurrence and
+    // its changed occurrences, so the whole series is written with one import plus one patch per change
+    private CalendarEvent withRecurrence(GraphServiceClient<Request> graphClient, com.microsoft.graph.models.Event graphEvent,
+                                         CalendarEvent event) {
+        if (graphEvent.type != EventType.SERIES_MASTER || !RecurrenceTranslator.isSupported(graphEvent.recurrence)) {
+            return event;
+        }
+        try {
+            String seriesTimeZone = graphEvent.recurrence.range.recurrenceTimeZone != null
+                    ? graphEvent.recurrence.range.recurrenceTimeZone
+                    : graphEvent.originalStartTimeZone;
+            ZoneId zone = DateTimeConverter.zoneFor(seriesTimeZone);
+            LocalTime startTime = DateTimeConverter.parseOffsetDateTime(event.getStartTime()).atZoneSameInstant(zone).toLocalTime();
+
+            List<String> recurrence = new ArrayList<>();
+            recurrence.add(RecurrenceTranslator.toRRule(graphEvent.recurrence, zone));
+            event.setTimeZone(zone.getId());
+            event.setRecurrence(recurrence);
+
+            List<LocalDate> expected = RecurrenceTranslator.expand(graphEvent.recurrence,
+                    LocalDate.now(zone).plusYears(SERIES_HORIZON_YEARS), MAX_SERIES_OCCURRENCES);
+            if (expected.isEmpty()) {
+                return event;
+            }
+
+            Set<LocalDate> present = new HashSet<>();
+            List<CalendarEvent> exceptions = new ArrayList<>();
+            for (com.microsoft.graph.models.Event instance : fetchInstances(graphClient, graphEvent.id,
+                    expected.get(0).atStartOfDay(zone), expected.get(expected.size() - 1).plusDays(1).atStartOfDay(zone))) {
+                OffsetDateTime originalStart = instance.originalStart != null
+                        ? instance.originalStart
+                        : DateTimeConverter.parseOffsetDateTime(convertDateTimeTimeZone(instance.start));
+                present.add(originalStart.atZoneSameInstant(zone).toLocalDate());
+                if (instance.type == EventType.EXCEPTION) {
+                    CalendarEvent exception = mapOutlookEventToCalendarEvent(instance);
+                    exception.setOriginalStartTime(originalStart.atZoneSameInstant(ZoneOffset.UTC).format(ISO_FORMATTER));
+                    exceptions.add(exception);
+                }
+            }
+
+            List<LocalDate> deleted = expected.stream()
+                    .filter(date -> !present.contains(date))
+                    .collect(Collectors.toList());
+            String exDate = RecurrenceTranslator.toExDate(deleted, startTime, zone);
+            if (exDate != null) {
+                recurrence.add(exDate);
+            }
+            event.setExceptions(exceptions);
+            System.out.println("🔁 Series '" + event.getTitle() + "': " + recurrence.get(0) + ", "
+                    + deleted.size() + " deleted and " + exceptions.size() + " changed occurrences");
+        } catch (Exception e) {
+            // Without its occurrences the series still migrates; deleted occurrences then reappear
+            System.err.println("⚠️ Could not read occurrences of series '" + event.getTitle() + "': " + e.getMessage());
+        }
+        return event;
+    }
+
+    private List<com.microsoft.graph.models.Event> fetchInstances(GraphServiceClient<Request> graphClient, String seriesId,
+                                                                  ZonedDateTime from, ZonedDateTime to) {
+        List<Option> window = List.of(
+                new QueryOption("startDateTime", from.toInstant().toString()),
+                new QueryOption("endDateTime", to.toInstant().toString()));
+        EventCollectionPage page = graphClient.me().events(seriesId).instances()
+                .buildRequest(window)
+                .select(INSTANCE_FIELDS)
+                .top(100)
+                .get();
+
+        List<com.microsoft.graph.models.Event> instances = new ArrayList<>();
+        while (page != null && page.getCurrentPage() != null) {
+            instances.addAll(page.getCurrentPage());
+            page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+        }
+        return instances;
+    }
+
     // ✅ FIXED: Proper date time conversion
     private String convertDateTimeTimeZone(DateTimeTimeZone dtz) {
         if (dtz == null || dtz.dateTime == null) return "";
 
         try {
-            String dateTimeStr = dtz.dateTime;
-            String timeZoneStr = dtz.timeZone;
-
-            // Parse the date time string (Outlook format: "2024-01-15T10:00:00.0000000")
-            LocalDateTime localDateTime = LocalDateTime.parse(
-                    dateTimeStr.substring(0, 19) // Take only first 19 chars for "YYYY-MM-DDTHH:MM:SS"
-            );
-
-            // Convert to proper timezone
-            ZoneId zoneId = convertWindowsTimeZoneToZoneId(timeZoneStr);
-            ZonedDateTime zonedDateTime = ZonedDateTime.of(localDateTime, zoneId);
-
-            // Format to ISO string
-            return zonedDateTime.format(ISO_FORMATTER);
+            // Outlook format: "2024-01-15T10:00:00.0000000" in the event's Windows time zone
+            LocalDateTime localDateTime = DateTimeConverter.parseGraphDateTime(dtz.dateTime);
+            return DateTimeConverter.toIsoOffset(localDateTime, DateTimeConverter.zoneFor(dtz.timeZone));
 
         } catch (DateTimeParseException e) {
             System.err.println("❌ Date parsing error: " + e.getMessage());
@@ -151,89 +488,151 @@ public class RealCalendarMigrationService {
         }
     }
 
-    // ✅ FIXED: Windows timezone to Java ZoneId conversion
-    private ZoneId convertWindowsTimeZoneToZoneId(String windowsTimeZone) {
-        if (windowsTimeZone == null) {
-            return ZoneId.of("UTC");
-        }
-
-        // Common timezone mappings
-        switch (windowsTimeZone) {
-            case "India Standard Time":
-                return ZoneId.of("Asia/Kolkata");
-            case "Pacific Standard Time":
-                return ZoneId.of("America/Los_Angeles");
-            case "Eastern Standard Time":
-                return ZoneId.of("America/New_York");
-            case "Central Standard Time":
-                return ZoneId.of("America/Chicago");
-            case "UTC":
-                return ZoneId.of("UTC");
-            case "GMT Standard Time":
-                return ZoneId.of("Europe/London");
-            default:
-                return ZoneId.of("UTC"); // Default to UTC
-        }
-    }
-
     public String pushToGoogleCalendar(List<CalendarEvent> events, String googleToken) {
         System.out.println("🔄 Starting Google Calendar migration for " + events.size() + " events");
 
-        int successCount = 0;
-        int totalEvents = events.size();
-
-        for (int i = 0; i < totalEvents; i++) {
-            CalendarEvent event = events.get(i);
-            System.out.println("📅 Processing event " + (i+1) + "/" + totalEvents + ": " + event.getTitle());
-
-            boolean success = createGoogleCalendarEvent(event, googleToken);
-            if (success) {
-                successCount++;
-                System.out.println("✅ Successfully migrated event: " + event.getTitle());
-            } else {
-                System.err.println("❌ Failed to migrate event: " + event.getTitle());
-            }
-
-            // Rate limiting
-            try {
-                Thread.sleep(500); // 500ms delay between requests
-            } catch (InterruptedException ignored) {}
+        int successCount;
+        try {
+            successCount = createGoogleCalendarEvents(events, googleToken, RateLimiterRegistry.ANONYMOUS, event -> {});
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Calendar migration interrupted";
         }
 
-        String result = "Calendar migration: " + successCount + "/" + totalEvents + " events migrated";
+        String result = "Calendar migration: " + successCount + "/" + events.size() + " events migrated";
         System.out.println("🎉 " + result);
         return result;
     }
 
-    private boolean createGoogleCalendarEvent(CalendarEvent event, String accessToken) {
-        try {
-            String url = "https://www.googleapis.com/calendar/v3/calendars/primary/events";
+    // ✅ BATCH: events.import calls packed into multipart batch requests; returns the number of events
+    // created in Google Calendar and calls onCreated for each of them
+    public int createGoogleCalendarEvents(List<CalendarEvent> events, String googleToken, String userId,
+                                          Consumer<CalendarEvent> onCreated) throws InterruptedException {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.CALENDAR);
+        int successCount = 0;
 
-            // ✅ FIXED: Proper JSON construction with debugging
-            String jsonBody = buildCalendarEventJson(event);
-            System.out.println("📨 Creating calendar event with JSON: " + jsonBody);
+        List<CalendarEvent> batchEvents = new ArrayList<>();
+        List<GoogleBatchClient.BatchPart> batchParts = new ArrayList<>();
+        long batchBytes = 0;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(accessToken);
+        for (CalendarEvent event : events) {
+            GoogleBatchClient.BatchPart part = GoogleBatchClient.BatchPart.post(CALENDAR_IMPORT_PATH, buildCalendarEventJson(event));
 
-            HttpEntity<String> entity = new HttpEntity<>(jsonBody, headers);
+            // Flush before the batch exceeds the call count or the payload budget
+            if (!batchParts.isEmpty() && (batchParts.size() >= Math.min(calendarBatchSize, GoogleBatchClient.MAX_BATCH_SIZE)
+                    || batchBytes + part.estimatedSize() > MAX_BATCH_BYTES)) {
+                successCount += sendCalendarBatch(batchEvents, batchParts, googleToken, limiter, onCreated);
+                batchEvents.clear();
+                batchParts.clear();
+                batchBytes = 0;
+            }
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            batchEvents.add(event);
+            batchParts.add(part);
+            batchBytes += part.estimatedSize();
+        }
 
-            boolean success = response.getStatusCode().is2xxSuccessful();
-            if (success) {
-                System.out.println("✅ Google Calendar event created successfully: " + event.getTitle());
+        if (!batchParts.isEmpty()) {
+            successCount += sendCalendarBatch(batchEvents, batchParts, googleToken, limiter, onCreated);
+        }
+        return successCount;
+    }
+
+    // Only the events whose part failed with a retryable status are sent again. A series counts as created
+    // once its changed occurrences are patched too; otherwise it is left for the next run, where the import
+    // lands on the same event again
+    private int sendCalendarBatch(List<CalendarEvent> batchEvents, List<GoogleBatchClient.BatchPart> batchParts,
+                                  String googleToken, AdaptiveRateLimiter limiter,
+                                  Consumer<CalendarEvent> onCreated) throws InterruptedException {
+        System.out.println("📦 Sending Google Calendar batch of " + batchParts.size() + " events");
+        List<GoogleBatchClient.BatchResult> results = googleBatchClient.executeWithRetry(
+                CALENDAR_BATCH_URL, googleToken, batchParts, BATCH_MAX_ATTEMPTS, limiter);
+
+        List<Integer> imported = new ArrayList<>();
+        Set<Integer> incomplete = new HashSet<>();
+        List<GoogleBatchClient.BatchPart> exceptionParts = new ArrayList<>();
+        // Index in batchEvents of the series each exception part belongs to
+        List<Integer> exceptionOwners = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            GoogleBatchClient.BatchResult result = results.get(i);
+            if (result.isSuccess()) {
+                imported.add(i);
+                List<GoogleBatchClient.BatchPart> parts = buildExceptionParts(batchEvents.get(i), result);
+                if (parts == null) {
+                    incomplete.add(i);
+                    continue;
+                }
+                exceptionParts.addAll(parts);
+                exceptionOwners.addAll(Collections.nCopies(parts.size(), i));
             } else {
-                System.err.println("❌ Google Calendar API error: " + response.getStatusCode() + " - " + response.getBody());
+                System.err.println("❌ Failed to migrate event: " + batchEvents.get(i).getTitle()
+                        + " (" + result.getStatus() + ")");
             }
+        }
 
-            return success;
+        if (!exceptionParts.isEmpty()) {
+            for (int failed : sendExceptionBatches(exceptionParts, googleToken, limiter)) {
+                incomplete.add(exceptionOwners.get(failed));
+            }
+        }
 
+        int successCount = 0;
+        for (int i : imported) {
+            if (incomplete.contains(i)) {
+                System.err.println("❌ Series '" + batchEvents.get(i).getTitle()
+                        + "' is missing changed occurrences, it will be retried");
+            } else {
+                successCount++;
+                onCreated.accept(batchEvents.get(i));
+            }
+        }
+        System.out.println("📤 Google Calendar batch result: " + successCount + "/" + batchParts.size() + " created");
+        return successCount;
+    }
+
+    // Changed occurrences of an imported series, as patches of the occurrences Google expanded from its RRULE;
+    // null when they cannot be addressed because the import response carries no event ID
+    private List<GoogleBatchClient.BatchPart> buildExceptionParts(CalendarEvent series, GoogleBatchClient.BatchResult imported) {
+        List<GoogleBatchClient.BatchPart> parts = new ArrayList<>();
+        if (series.getExceptions() == null || series.getExceptions().isEmpty()) {
+            return parts;
+        }
+        String seriesId;
+        try {
+            seriesId = mapper.readTree(imported.getBody()).path("id").asText(null);
         } catch (Exception e) {
-            System.err.println("❌ Google Calendar create failed for event '" + event.getTitle() + "': " + e.getMessage());
-            return false;
+            seriesId = null;
         }
+        if (seriesId == null) {
+            System.err.println("⚠️ No Google ID for series '" + series.getTitle() + "', its changed occurrences cannot be patched");
+            return null;
+        }
+        for (CalendarEvent exception : series.getExceptions()) {
+            String instanceId = seriesId + "_" + DateTimeConverter.parseOffsetDateTime(exception.getOriginalStartTime()).format(DateTimeConverter.UTC_BASIC);
+            parts.add(new GoogleBatchClient.BatchPart("PATCH", CALENDAR_EVENTS_PATH + "/" + instanceId,
+                    buildCalendarEventJson(exception)));
+        }
+        return parts;
+    }
+
+    // Returns the indexes of the parts that could not be applied
+    private List<Integer> sendExceptionBatches(List<GoogleBatchClient.BatchPart> parts, String googleToken,
+                                               AdaptiveRateLimiter limiter) throws InterruptedException {
+        int batchSize = Math.min(calendarBatchSize, GoogleBatchClient.MAX_BATCH_SIZE);
+        List<Integer> failed = new ArrayList<>();
+        for (int from = 0; from < parts.size(); from += batchSize) {
+            List<GoogleBatchClient.BatchPart> batch = parts.subList(from, Math.min(from + batchSize, parts.size()));
+            List<GoogleBatchClient.BatchResult> results = googleBatchClient.executeWithRetry(
+                    CALENDAR_BATCH_URL, googleToken, batch, BATCH_MAX_ATTEMPTS, limiter);
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).isSuccess()) {
+                    System.err.println("❌ Failed to update changed occurrence (" + results.get(i).getStatus() + ")");
+                    failed.add(from + i);
+                }
+            }
+        }
+        System.out.println("🔁 Changed occurrences: " + (parts.size() - failed.size()) + "/" + parts.size() + " updated");
+        return failed;
     }
 
     // ✅ FIXED: Better JSON construction
@@ -241,6 +640,11 @@ public class RealCalendarMigrationService {
         StringBuilder json = new StringBuilder();
         json.append("{");
 
+        // ✅ IMPORT: iCalUID decides which Google event this write lands on; occurrences are patched by ID instead
+        if (event.getOriginalStartTime() == null) {
+            json.append("\"iCalUID\":").append(toJsonString(importUid(event))).append(",");
+        }
+
         // Summary (title)
         json.append("\"summary\":").append(toJsonString(event.getTitle()));
 
@@ -260,7 +664,10 @@ public class RealCalendarMigrationService {
             json.append(",\"start\":{");
             json.append("\"dateTime\":").append(toJsonString(startTime));
             // Use timezone from the datetime string or default
-            if (startTime.contains("+") || startTime.contains("Z")) {
+            if (event.getTimeZone() != null) {
+                // Required for a series: Google expands the RRULE in this zone
+                json.append(",\"timeZone\":").append(toJsonString(event.getTimeZone())).append("}");
+            } else if (startTime.contains("+") || startTime.contains("Z")) {
                 json.append("}"); // Timezone already in datetime
             } else {
                 json.append(",\"timeZone\":\"Asia/Kolkata\"}");
@@ -279,7 +686,9 @@ public class RealCalendarMigrationService {
             json.append(",\"end\":{");
             json.append("\"dateTime\":").append(toJsonString(endTime));
             // Use timezone from the datetime string or default
-            if (endTime.contains("+") || endTime.contains("Z")) {
+            if (event.getTimeZone() != null) {
+                json.append(",\"timeZone\":").append(toJsonString(event.getTimeZone())).append("}");
+            } else if (endTime.contains("+") || endTime.contains("Z")) {
                 json.append("}"); // Timezone already in datetime
             } else {
                 json.append(",\"timeZone\":\"Asia/Kolkata\"}");
@@ -303,11 +712,32 @@ public class RealCalendarMigrationService {
             json.append("]");
         }
 
+        // RRULE and EXDATE lines of a series
+        if (event.getRecurrence() != null && !event.getRecurrence().isEmpty()) {
+            json.append(",\"recurrence\":[");
+            for (int i = 0; i < event.getRecurrence().size(); i++) {
+                if (i > 0) json.append(",");
+                json.append(toJsonString(event.getRecurrence().get(i)));
+            }
+            json.append("]");
+        }
+
         json.append("}");
 
         return json.toString();
     }
 
+    // Outlook's iCalUId when there is one; otherwise a UID derived from the event, stable across runs
+    private String importUid(CalendarEvent event) {
+        if (event.getICalUId() != null && !event.getICalUId().isBlank()) {
+            return event.getICalUId();
+        }
+        String source = event.getId() != null
+                ? event.getId()
+                : event.getTitle() + "|" + event.getStartTime() + "|" + event.getEndTime();
+        return UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)) + "@outlook-migration";
+    }
+
     // ✅ FIXED: Better JSON string escape
     private String toJsonString(String str) {
         if (str == null || str.isEmpty()) return "\"\"";
@@ -319,9 +749,7 @@ public class RealCalendarMigrationService {
     }
 
     private GraphServiceClient<Request> getGraphClient(String token) {
-        return GraphServiceClient.builder()
-                .authenticationProvider(url -> CompletableFuture.completedFuture(token))
-                .buildClient();
+        return graphClients.forToken(token);
     }
 
 }
\ No newline at end of file
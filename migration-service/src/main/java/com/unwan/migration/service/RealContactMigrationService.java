@@ -1,71 +1,57 @@
 package com.unwan.migration.service;
 
 import com.microsoft.graph.authentication.IAuthenticationProvider;
+import com.microsoft.graph.models.Contact;
 import com.microsoft.graph.requests.GraphServiceClient;
 import com.microsoft.graph.requests.ContactCollectionPage;
+import com.microsoft.graph.requests.ContactCollectionRequestBuilder;
+import com.unwan.migration.graph.GraphClientFactory;
+import com.unwan.migration.pipeline.MigrationPipeline;
+import com.unwan.migration.pipeline.SourceCursor;
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
 import okhttp3.Request;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class RealContactMigrationService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    @Qualifier("googleRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    private static final String CONTACT_FIELDS = "id,displayName,givenName,surname,emailAddresses,businessPhones,mobilePhone,companyName";
 
     public List<com.unwan.migration.model.UserContact> fetchOutlookContacts(String accessToken) {
         System.out.println("🔄 Fetching Outlook contacts...");
 
         try {
-            GraphServiceClient<Request> client = GraphServiceClient.builder()
-                    .authenticationProvider(url -> CompletableFuture.completedFuture(accessToken))
-                    .buildClient();
+            GraphServiceClient<Request> client = graphClients.forToken(accessToken);
 
             ContactCollectionPage contacts = client.me().contacts()
                     .buildRequest()
-                    .select("displayName,givenName,surname,emailAddresses,businessPhones,mobilePhone,companyName")
+                    .select(CONTACT_FIELDS)
                     .top(100)
                     .get();
 
             List<com.unwan.migration.model.UserContact> contactList = contacts.getCurrentPage().stream()
-                    .map(c -> {
-                        com.unwan.migration.model.UserContact contact = new com.unwan.migration.model.UserContact();
-
-                        // Name handling
-                        if (c.displayName != null) {
-                            contact.setName(c.displayName);
-                        } else {
-                            String givenName = c.givenName != null ? c.givenName : "";
-                            String surname = c.surname != null ? c.surname : "";
-                            contact.setName((givenName + " " + surname).trim());
-                        }
-
-                        // Email handling
-                        if (c.emailAddresses != null && !c.emailAddresses.isEmpty()) {
-                            contact.setEmail(c.emailAddresses.get(0).address);
-                        } else {
-                            contact.setEmail("no-email@example.com");
-                        }
-
-                        // Phone handling
-                        if (c.mobilePhone != null && !c.mobilePhone.isEmpty()) {
-                            contact.setPhone(c.mobilePhone);
-                        } else if (c.businessPhones != null && !c.businessPhones.isEmpty()) {
-                            contact.setPhone(c.businessPhones.get(0));
-                        } else {
-                            contact.setPhone("");
-                        }
-
-                        // Company
-                        contact.setCompany(c.companyName != null ? c.companyName : "");
-
-                        return contact;
-                    })
+                    .map(this::mapOutlookContact)
                     .collect(Collectors.toList());
 
             System.out.println("✅ Found " + contactList.size() + " contacts in Outlook");
@@ -78,9 +64,81 @@ public class RealContactMigrationService {
         }
     }
 
+    // ✅ NEW: Every page of Outlook contacts, handed to the pipeline as it arrives; resumeLink continues a checkpoint
+    public void streamOutlookContacts(String accessToken, String resumeLink,
+                                      MigrationPipeline.PageSink<com.unwan.migration.model.UserContact> sink)
+            throws InterruptedException {
+        GraphServiceClient<Request> client = graphClients.forToken(accessToken);
+
+        ContactCollectionPage page = resumeLink != null
+                ? new ContactCollectionRequestBuilder(resumeLink, client, null).buildRequest().get()
+                : client.me().contacts()
+                        .buildRequest()
+                        .select(CONTACT_FIELDS)
+                        .top(100)
+                        .get();
+
+        while (page != null) {
+            List<com.unwan.migration.model.UserContact> contacts = page.getCurrentPage().stream()
+                    .map(this::mapOutlookContact)
+                    .collect(Collectors.toList());
+            String nextLink = page.getNextPage() != null ? page.getNextPage().getRequestUrl() : null;
+            String lastId = contacts.isEmpty() ? null : contacts.get(contacts.size() - 1).getId();
+
+            sink.emit(contacts, SourceCursor.page(null, nextLink, lastId));
+            page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+        }
+    }
+
+    private com.unwan.migration.model.UserContact mapOutlookContact(Contact c) {
+        com.unwan.migration.model.UserContact contact = new com.unwan.migration.model.UserContact();
+        contact.setId(c.id);
+
+        // Name handling
+        if (c.displayName != null) {
+            contact.setName(c.displayName);
+        } else {
+            String givenName = c.givenName != null ? c.givenName : "";
+            String surname = c.surname != null ? c.surname : "";
+            contact.setName((givenName + " " + surname).trim());
+        }
+
+        // Email handling
+        if (c.emailAddresses != null && !c.emailAddresses.isEmpty()) {
+            contact.setEmail(c.emailAddresses.get(0).address);
+        } else {
+            contact.setEmail("no-email@example.com");
+        }
+
+        // Phone handling
+        if (c.mobilePhone != null && !c.mobilePhone.isEmpty()) {
+            contact.setPhone(c.mobilePhone);
+        } else if (c.businessPhones != null && !c.businessPhones.isEmpty()) {
+            contact.setPhone(c.businessPhones.get(0));
+        } else {
+            contact.setPhone("");
+        }
+
+        // Company
+        contact.setCompany(c.companyName != null ? c.companyName : "");
+
+        return contact;
+    }
+
     public String pushToGoogleContacts(List<com.unwan.migration.model.UserContact> contacts, String gmailToken) {
         System.out.println("🔄 Starting Google Contacts migration for " + contacts.size() + " contacts");
 
+        int successCount = createGoogleContacts(contacts, gmailToken, RateLimiterRegistry.ANONYMOUS, contact -> {});
+
+        String result = "Contacts migration: " + successCount + "/" + contacts.size() + " contacts migrated";
+        System.out.println("🎉 " + result);
+        return result;
+    }
+
+    // Returns the number of contacts created in Google; onCreated is called for each of them
+    public int createGoogleContacts(List<com.unwan.migration.model.UserContact> contacts, String gmailToken, String userId,
+                                    Consumer<com.unwan.migration.model.UserContact> onCreated) {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.PEOPLE);
         int successCount = 0;
         int totalContacts = contacts.size();
 
@@ -89,26 +147,19 @@ public class RealContactMigrationService {
             System.out.println("👤 Processing contact " + (i+1) + ": " + contact.getName());
 
             // ✅ ACTUAL MIGRATION - yeh line execute honi chahiye
-            boolean success = createGoogleContact(contact, gmailToken);
+            boolean success = createGoogleContact(contact, gmailToken, limiter);
             if (success) {
                 successCount++;
+                onCreated.accept(contact);
                 System.out.println("✅ Successfully migrated contact: " + contact.getName());
             } else {
                 System.err.println("❌ Failed to migrate contact: " + contact.getName());
             }
-
-            // Rate limiting
-            try {
-                Thread.sleep(1000); // 1 second delay
-            } catch (InterruptedException ignored) {}
         }
-
-        String result = "Contacts migration: " + successCount + "/" + totalContacts + " contacts migrated";
-        System.out.println("🎉 " + result);
-        return result;
+        return successCount;
     }
 
-    private boolean createGoogleContact(com.unwan.migration.model.UserContact contact, String token) {
+    private boolean createGoogleContact(com.unwan.migration.model.UserContact contact, String token, AdaptiveRateLimiter limiter) {
         try {
             // ✅ FIXED: Simple JSON structure jo definitely work karega
             String givenName = contact.getName().split(" ")[0];
@@ -158,10 +209,11 @@ public class RealContactMigrationService {
 
             HttpEntity<String> entity = new HttpEntity<>(json, headers);
 
-            ResponseEntity<String> response = restTemplate.exchange(
+            // ✅ Rate limited per user; 429s are retried after Retry-After
+            ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
                     "https://people.googleapis.com/v1/people:createContact",
                     HttpMethod.POST, entity, String.class
-            );
+            ), 4);
 
             boolean success = response.getStatusCode().is2xxSuccessful();
             System.out.println("📤 Google Contacts API response: " + response.getStatusCode() + " - Success: " + success);
@@ -174,6 +226,9 @@ public class RealContactMigrationService {
 
             return success;
 
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception ex) {
             System.err.println("❌ Google Contacts API error: " + ex.getMessage());
             return false;
@@ -1,87 +1,143 @@
 package com.unwan.migration.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.graph.models.DriveItem;
 import com.microsoft.graph.requests.DriveItemCollectionPage;
 import com.microsoft.graph.requests.GraphServiceClient;
 
+import com.unwan.migration.drive.ContentCache;
+import com.unwan.migration.drive.ContentSource;
+import com.unwan.migration.drive.DriveFolderCache;
+import com.unwan.migration.drive.DriveSpool;
+import com.unwan.migration.drive.DriveTargetIndex;
+import com.unwan.migration.drive.OneDriveCrawler;
+import com.unwan.migration.drive.RangedDownloader;
+import com.unwan.migration.drive.StreamingRequestBody;
+import com.unwan.migration.graph.GraphClientFactory;
 import com.unwan.migration.model.DriveFile;
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.net.URI;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class RealDriveMigrationService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    @Qualifier("googleRestTemplate")
+    private RestTemplate restTemplate;
 
+    @Autowired
+    @Qualifier("googleOkHttpClient")
+    private OkHttpClient googleHttp;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    @Autowired
+    private RangedDownloader rangedDownloader;
+
+    @Autowired
+    private DriveSpool spool;
+
+    @Autowired
+    private ContentCache contentCache;
+
+    @Autowired
+    private GoogleBatchClient googleBatchClient;
+
+    // How long the first metadata call waits for others to join its batch
+    @Value("${migration.drive.batch-linger-ms:20}")
+    private long batchLingerMillis;
+
+    @Value("${migration.drive.ranged-download-threshold-mb:64}")
+    private long rangedDownloadThresholdMb;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Where resumable upload session URIs are kept so a restarted job can continue a large file
+    public interface UploadSessionStore {
+        String find(String itemId);
+
+        // A null sessionUri clears the stored session
+        void save(String itemId, String sessionUri);
+
+        // Bytes of the session Google has acknowledged so far
+        default void progress(String itemId, long committedBytes) {
+        }
+    }
+
+    private static final UploadSessionStore NO_SESSION_STORE = new UploadSessionStore() {
+        @Override
+        public String find(String itemId) {
+            return null;
+        }
+
+        @Override
+        public void save(String itemId, String sessionUri) {
+        }
+    };
+
+    private static final String GRAPH_DRIVE_ITEMS_URL = "https://graph.microsoft.com/v1.0/me/drive/items/";
+    private static final String DRIVE_UPLOAD_URL = "https://www.googleapis.com/upload/drive/v3/files";
+    private static final String DRIVE_FILES_URL = "https://www.googleapis.com/drive/v3/files";
+    private static final String DRIVE_FILES_PATH = "/drive/v3/files";
+    private static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+    private static final long SIMPLE_UPLOAD_LIMIT = 5L * 1024 * 1024;
+
+    // Google requires every chunk except the last to be a multiple of 256 KiB
+    private static final int CHUNK_GRANULARITY = 256 * 1024;
+    private static final int MAX_CHUNK_FAILURES = 5;
+
+    @Value("${migration.drive.upload-chunk-size-kib:8192}")
+    private int uploadChunkSizeKib;
+
+    // Items directly under the OneDrive root, every page (the migration itself walks the whole tree)
     public List<DriveFile> fetchOneDriveFiles(String accessToken) {
         System.out.println("🔄 Fetching OneDrive files...");
         System.out.println("🔑 OneDrive Token: " + (accessToken != null ? accessToken.substring(0, 20) + "..." : "NULL"));
 
         try {
-            GraphServiceClient<Request> graphClient = GraphServiceClient
-                    .builder()
-                    .authenticationProvider(url -> CompletableFuture.completedFuture(accessToken))
-                    .buildClient();
+            GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
 
-            // ✅ IMPROVED: Better field selection
-            DriveItemCollectionPage driveItems = graphClient
+            DriveItemCollectionPage page = graphClient
                     .me()
                     .drive()
                     .root()
                     .children()
                     .buildRequest()
-                    .select("id,name,file,folder,size,webUrl,createdDateTime,lastModifiedDateTime,fileSystemInfo,parentReference")
-                    .top(100)
+                    .select(OneDriveCrawler.ITEM_FIELDS)
+                    .top(200)
                     .get();
 
-            List<DriveFile> files = driveItems.getCurrentPage().stream()
-                    .map(item -> {
-                        DriveFile file = new DriveFile();
-                        file.setId(item.id != null ? item.id : UUID.randomUUID().toString());
-                        file.setName(item.name != null ? item.name : "Unknown File");
-
-                        // ✅ IMPROVED: Better type detection
-                        if (item.file != null) {
-                            file.setType("file");
-                            if (item.name != null && item.name.contains(".")) {
-                                file.setFileExtension(item.name.substring(item.name.lastIndexOf(".") + 1));
-                            }
-                            System.out.println("📄 File detected: " + file.getName() + " (Size: " + item.size + " bytes)");
-                        } else if (item.folder != null) {
-                            file.setType("folder");
-                            System.out.println("📁 Folder detected: " + file.getName());
-                        } else {
-                            file.setType("unknown");
-                            System.out.println("❓ Unknown type: " + file.getName());
-                        }
-
-                        if (item.size != null) {
-                            file.setSize(item.size);
-                        } else {
-                            file.setSize(0);
-                        }
-
-                        // ✅ FIXED: Store item ID for proper download
-                        file.setDownloadUrl(item.id); // We'll use ID for proper Graph API download
-                        file.setAdditionalData("Source: OneDrive | ItemID: " + item.id);
-
-                        if (item.createdDateTime != null) {
-                            file.setCreatedTime(item.createdDateTime.toString());
-                        } else {
-                            file.setCreatedTime(new Date().toString());
-                        }
-
-                        return file;
-                    })
-                    .collect(Collectors.toList());
+            List<DriveFile> files = new ArrayList<>();
+            while (page != null) {
+                for (DriveItem item : page.getCurrentPage()) {
+                    files.add(OneDriveCrawler.toDriveFile(item, ""));
+                }
+                page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+            }
 
             System.out.println("✅ Successfully fetched " + files.size() + " items from OneDrive");
             return files;
@@ -93,11 +149,384 @@ public class RealDriveMigrationService {
         }
     }
 
+    // ✅ FOLDERS: Google folder matching a OneDrive folder, found by its sourceItemId on re-runs, otherwise created
+    public String ensureGoogleFolder(DriveFile folder, String googleParentId, String googleToken, String userId,
+                                     DriveFolderCache cache) throws Exception {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
+        return cache.resolve(folder.getId(), () -> {
+            String existing = findGoogleFolder(folder.getId(), googleToken, limiter);
+            if (existing != null) {
+                return existing;
+            }
+            return createGoogleFolder(folder, googleParentId, googleToken, limiter);
+        });
+    }
+
+    private String findGoogleFolder(String sourceItemId, String googleToken, AdaptiveRateLimiter limiter)
+            throws InterruptedException, IOException {
+        String query = sourceItemQuery(sourceItemId) + " and mimeType='" + FOLDER_MIME_TYPE + "' and trashed=false";
+        URI uri = UriComponentsBuilder.fromHttpUrl(DRIVE_FILES_URL)
+                .queryParam("q", "{q}")
+                .queryParam("fields", "files(id)")
+                .queryParam("pageSize", 1)
+                .encode()
+                .buildAndExpand(query)
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(googleToken);
+        ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
+                uri, HttpMethod.GET, new HttpEntity<>(headers), String.class), 4);
+
+        JsonNode found = mapper.readTree(response.getBody()).path("files");
+        return found.size() > 0 ? found.get(0).path("id").asText(null) : null;
+    }
+
+    private String createGoogleFolder(DriveFile folder, String googleParentId, String googleToken, AdaptiveRateLimiter limiter)
+            throws InterruptedException, IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(googleToken);
+        HttpEntity<String> entity = new HttpEntity<>(buildFolderMetadataJson(folder, googleParentId), headers);
+
+        ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
+                DRIVE_FILES_URL + "?fields=id", HttpMethod.POST, entity, String.class), 4);
+
+        String id = mapper.readTree(response.getBody()).path("id").asText(null);
+        System.out.println("📁 Created Google folder " + folder.getPath() + " (" + id + ")");
+        return id;
+    }
+
+    // ✅ BATCH: sibling folders of one crawled page, created through the Drive batch endpoint. Their parent
+    // is created before any child is listed, so parent-before-child holds across batches; the returned IDs
+    // go straight into the folder cache. Only valid once preloadGoogleFolders has seeded the cache.
+    public List<String> ensureGoogleFolders(List<DriveFile> folders, String googleParentId, DriveMetadataBatcher batcher,
+                                            DriveFolderCache cache) throws Exception {
+        Map<String, DriveFile> byId = new HashMap<>();
+        List<String> sourceIds = new ArrayList<>(folders.size());
+        for (DriveFile folder : folders) {
+            byId.put(folder.getId(), folder);
+            sourceIds.add(folder.getId());
+        }
+
+        return cache.resolveAll(sourceIds, missing -> {
+            List<GoogleBatchClient.BatchPart> creates = new ArrayList<>(missing.size());
+            for (String sourceId : missing) {
+                creates.add(GoogleBatchClient.BatchPart.post(DRIVE_FILES_PATH + "?fields=id",
+                        buildFolderMetadataJson(byId.get(sourceId), googleParentId)));
+            }
+            List<CompletableFuture<String>> googleIds = new ArrayList<>(missing.size());
+            List<CompletableFuture<GoogleBatchClient.BatchResult>> results = batcher.submitAll(creates);
+            for (int i = 0; i < results.size(); i++) {
+                DriveFile folder = byId.get(missing.get(i));
+                googleIds.add(results.get(i).thenApply(result -> createdFolderId(folder, result)));
+            }
+            return googleIds;
+        });
+    }
+
+    private String createdFolderId(DriveFile folder, GoogleBatchClient.BatchResult result) {
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Creating Google folder " + folder.getPath() + " failed: "
+                    + result.getStatus() + " " + result.getBody());
+        }
+        try {
+            String id = mapper.readTree(result.getBody()).path("id").asText(null);
+            System.out.println("📁 Created Google folder " + folder.getPath() + " (" + id + ")");
+            return id;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable folder create response for " + folder.getPath(), e);
+        }
+    }
+
+    // Seeds the cache with every folder earlier runs created, so new folders need no per-folder lookup.
+    // Returns false when the listing failed and folders must be looked up one by one.
+    public boolean preloadGoogleFolders(String googleToken, String userId, DriveFolderCache cache) {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
+        String query = "appProperties has { key='migrationSource' and value='OneDrive' }"
+                + " and mimeType='" + FOLDER_MIME_TYPE + "' and trashed=false";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(googleToken);
+        try {
+            int loaded = 0;
+            String pageToken = null;
+            do {
+                UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(DRIVE_FILES_URL)
+                        .queryParam("q", "{q}")
+                        .queryParam("fields", "nextPageToken,files(id,appProperties)")
+                        .queryParam("pageSize", 1000);
+                if (pageToken != null) {
+                    builder.queryParam("pageToken", "{pageToken}");
+                }
+                URI uri = pageToken != null
+                        ? builder.encode().buildAndExpand(query, pageToken).toUri()
+                        : builder.encode().buildAndExpand(query).toUri();
+
+                ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
+                        uri, HttpMethod.GET, new HttpEntity<>(headers), String.class), 4);
+
+                JsonNode page = mapper.readTree(response.getBody());
+                for (JsonNode folder : page.path("files")) {
+                    String sourceItemId = folder.path("appProperties").path("sourceItemId").asText(null);
+                    if (sourceItemId != null && cache.find(sourceItemId) == null) {
+                        cache.put(sourceItemId, folder.path("id").asText());
+                        loaded++;
+                    }
+                }
+                pageToken = page.path("nextPageToken").asText(null);
+            } while (pageToken != null);
+
+            System.out.println("📁 Preloaded " + loaded + " existing Google folders");
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.err.println("⚠️ Could not list existing Google folders: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public DriveMetadataBatcher newMetadataBatcher(String googleToken, String userId) {
+        return new DriveMetadataBatcher(googleBatchClient, googleToken, rateLimiters.get(userId, ApiQuota.DRIVE),
+                batchLingerMillis);
+    }
+
+    private static String sourceItemQuery(String sourceItemId) {
+        return "appProperties has { key='sourceItemId' and value='" + sourceItemId.replace("'", "\\'") + "' }";
+    }
+
+    // ✅ DELTA: Google folder for a OneDrive parent. Parents not seen in this pass are looked up by their
+    // sourceItemId, or fetched from Graph and created together with their own missing parents.
+    public String resolveGoogleParent(String parentItemId, String oneDriveToken, String googleToken, String userId,
+                                      DriveFolderCache cache) throws Exception {
+        if (parentItemId == null) {
+            return DriveFolderCache.GOOGLE_ROOT;
+        }
+        String known = cache.find(parentItemId);
+        if (known != null) {
+            return known;
+        }
+        String existing = findGoogleFolder(parentItemId, googleToken, rateLimiters.get(userId, ApiQuota.DRIVE));
+        if (existing != null) {
+            cache.put(parentItemId, existing);
+            return existing;
+        }
+
+        DriveItem parent = graphClients.forToken(oneDriveToken).me().drive().items(parentItemId)
+                .buildRequest()
+                .select(OneDriveCrawler.ITEM_FIELDS + ",root")
+                .get();
+        if (parent.root != null) {
+            cache.put(parentItemId, DriveFolderCache.GOOGLE_ROOT);
+            return DriveFolderCache.GOOGLE_ROOT;
+        }
+        String googleGrandParentId = resolveGoogleParent(parent.parentReference != null ? parent.parentReference.id : null,
+                oneDriveToken, googleToken, userId, cache);
+        return ensureGoogleFolder(OneDriveCrawler.toDriveFile(parent, ""), googleGrandParentId, googleToken, userId, cache);
+    }
+
+    // New folders are created; an existing copy of a changed folder is renamed or moved to match
+    public String syncGoogleFolder(DriveFile folder, String googleParentId, String googleToken, String userId,
+                                   DriveFolderCache cache) throws Exception {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
+        List<JsonNode> copies = findGoogleCopies(folder.getId(), googleToken, limiter);
+        if (copies.isEmpty()) {
+            return ensureGoogleFolder(folder, googleParentId, googleToken, userId, cache);
+        }
+        JsonNode copy = copies.get(0);
+        updatePlacement(copy, folder.getName(), googleParentId, googleToken, limiter);
+        String googleId = copy.path("id").asText();
+        cache.put(folder.getId(), googleId);
+        return googleId;
+    }
+
+    // A changed file whose content Google already has is only renamed or moved, and null is returned.
+    // Otherwise it needs uploading, and the result lists the outdated copies to trash once the new one is in.
+    public List<String> prepareChangedFile(DriveFile file, String googleToken, String userId) throws Exception {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
+        List<String> outdated = new ArrayList<>();
+        for (JsonNode copy : findGoogleCopies(file.getId(), googleToken, limiter)) {
+            if (toTargetEntry(copy).matches(file)) {
+                updatePlacement(copy, file.getName(), file.getGoogleParentId(), googleToken, limiter);
+                return null;
+            }
+            outdated.add(copy.path("id").asText());
+        }
+        return outdated;
+    }
+
+    // Moves every Google copy of the deleted OneDrive items to the trash (a folder takes its contents along).
+    // Both the lookups and the trash calls go out in batches.
+    public int trashGoogleCopies(List<String> sourceItemIds, DriveMetadataBatcher batcher) throws Exception {
+        List<GoogleBatchClient.BatchPart> lookups = new ArrayList<>(sourceItemIds.size());
+        for (String sourceItemId : sourceItemIds) {
+            String path = UriComponentsBuilder.fromPath(DRIVE_FILES_PATH)
+                    .queryParam("q", "{q}")
+                    .queryParam("fields", "files(id)")
+                    .queryParam("pageSize", 100)
+                    .encode()
+                    .buildAndExpand(sourceItemQuery(sourceItemId) + " and trashed=false")
+                    .toUriString();
+            lookups.add(new GoogleBatchClient.BatchPart("GET", path, null));
+        }
+
+        List<String> googleIds = new ArrayList<>();
+        List<CompletableFuture<GoogleBatchClient.BatchResult>> found = batcher.submitAll(lookups);
+        for (int i = 0; i < found.size(); i++) {
+            GoogleBatchClient.BatchResult result = found.get(i).join();
+            if (!result.isSuccess()) {
+                throw new IOException("Lookup of deleted item " + sourceItemIds.get(i) + " failed: " + result.getStatus());
+            }
+            mapper.readTree(result.getBody()).path("files").forEach(copy -> googleIds.add(copy.path("id").asText()));
+        }
+        trashGoogleFiles(googleIds, batcher);
+        return googleIds.size();
+    }
+
+    public void trashGoogleFiles(List<String> googleIds, DriveMetadataBatcher batcher) {
+        List<GoogleBatchClient.BatchPart> parts = new ArrayList<>(googleIds.size());
+        for (String googleId : googleIds) {
+            parts.add(new GoogleBatchClient.BatchPart("PATCH", DRIVE_FILES_PATH + "/" + googleId + "?fields=id", "{\"trashed\":true}"));
+        }
+        List<CompletableFuture<GoogleBatchClient.BatchResult>> results = batcher.submitAll(parts);
+        for (int i = 0; i < results.size(); i++) {
+            GoogleBatchClient.BatchResult result = results.get(i)
+                    .exceptionally(e -> new GoogleBatchClient.BatchResult(0, e.getMessage(), null))
+                    .join();
+            if (result.isSuccess()) {
+                System.out.println("🗑️ Trashed Google item " + googleIds.get(i));
+            } else {
+                System.err.println("⚠️ Could not trash Google item " + googleIds.get(i) + ": " + result.getStatus() + " " + result.getBody());
+            }
+        }
+    }
+
+    private List<JsonNode> findGoogleCopies(String sourceItemId, String googleToken, AdaptiveRateLimiter limiter)
+            throws InterruptedException, IOException {
+        String query = sourceItemQuery(sourceItemId) + " and trashed=false";
+        URI uri = UriComponentsBuilder.fromHttpUrl(DRIVE_FILES_URL)
+                .queryParam("q", "{q}")
+                .queryParam("fields", "files(id,name,parents,size,appProperties)")
+                .queryParam("pageSize", 100)
+                .encode()
+                .buildAndExpand(query)
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(googleToken);
+        ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
+                uri, HttpMethod.GET, new HttpEntity<>(headers), String.class), 4);
+
+        List<JsonNode> copies = new ArrayList<>();
+        mapper.readTree(response.getBody()).path("files").forEach(copies::add);
+        return copies;
+    }
+
+    // Renames and/or re-parents a Google item when the OneDrive item was renamed or moved
+    private void updatePlacement(JsonNode copy, String name, String googleParentId, String googleToken,
+                                 AdaptiveRateLimiter limiter) throws InterruptedException {
+        List<String> parents = new ArrayList<>();
+        copy.path("parents").forEach(parent -> parents.add(parent.asText()));
+        boolean renamed = name != null && !name.equals(copy.path("name").asText());
+        boolean moved = googleParentId != null && !parents.contains(googleParentId);
+        if (!renamed && !moved) {
+            return;
+        }
+
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(DRIVE_FILES_URL + "/" + copy.path("id").asText())
+                .queryParam("fields", "id");
+        if (moved) {
+            builder.queryParam("addParents", googleParentId);
+            if (!parents.isEmpty()) {
+                builder.queryParam("removeParents", String.join(",", parents));
+            }
+        }
+        URI uri = builder.encode().build().toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(googleToken);
+        HttpEntity<String> entity = new HttpEntity<>(renamed ? "{\"name\":" + toJsonString(name) + "}" : "{}", headers);
+
+        limiter.call(() -> restTemplate.exchange(uri, HttpMethod.PATCH, entity, String.class), 4);
+        System.out.println("✏️ Updated Google item " + copy.path("id").asText() + (renamed ? " name=" + name : "")
+                + (moved ? " parent=" + googleParentId : ""));
+    }
+
+    // ✅ PRE-FLIGHT: every file earlier runs uploaded, read back from the appProperties written with it.
+    // One paged listing covers all target folders; on failure the run relies on fingerprints alone.
+    public DriveTargetIndex loadTargetIndex(String googleToken, String userId) {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
+        DriveTargetIndex index = new DriveTargetIndex();
+        String query = "appProperties has { key='migrationSource' and value='OneDrive' }"
+                + " and mimeType!='" + FOLDER_MIME_TYPE + "' and trashed=false";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(googleToken);
+        try {
+            String pageToken = null;
+            do {
+                UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(DRIVE_FILES_URL)
+                        .queryParam("q", "{q}")
+                        .queryParam("fields", "nextPageToken,files(id,size,appProperties)")
+                        .queryParam("pageSize", 1000);
+                if (pageToken != null) {
+                    builder.queryParam("pageToken", "{pageToken}");
+                }
+                URI uri = pageToken != null
+                        ? builder.encode().buildAndExpand(query, pageToken).toUri()
+                        : builder.encode().buildAndExpand(query).toUri();
+
+                ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
+                        uri, HttpMethod.GET, new HttpEntity<>(headers), String.class), 4);
+
+                JsonNode page = mapper.readTree(response.getBody());
+                for (JsonNode file : page.path("files")) {
+                    index.add(file.path("appProperties").path("sourceItemId").asText(null), toTargetEntry(file));
+                }
+                pageToken = page.path("nextPageToken").asText(null);
+            } while (pageToken != null);
+
+            System.out.println("🗂️ Indexed " + index.size() + " files already in Google Drive");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("⚠️ Could not list existing Google Drive files: " + e.getMessage());
+        }
+        return index;
+    }
+
+    private static DriveTargetIndex.Entry toTargetEntry(JsonNode file) {
+        JsonNode props = file.path("appProperties");
+        long size = props.has("originalSize") ? props.path("originalSize").asLong(-1) : file.path("size").asLong(-1);
+        return new DriveTargetIndex.Entry(file.path("id").asText(null), size,
+                props.path("originalModifiedTime").asText(null),
+                props.path("quickXorHash").asText(null),
+                props.path("sha1Hash").asText(null));
+    }
+
     public String pushToGoogleDrive(List<DriveFile> files, String oneDriveToken, String googleToken) {
         System.out.println("🔄 Starting Google Drive migration for " + files.size() + " files");
         System.out.println("🔑 OneDrive Token: " + (oneDriveToken != null ? oneDriveToken.substring(0, 20) + "..." : "NULL"));
         System.out.println("🔑 Google Token: " + (googleToken != null ? googleToken.substring(0, 20) + "..." : "NULL"));
 
+        int successCount = transferToGoogleDrive(files, oneDriveToken, googleToken, RateLimiterRegistry.ANONYMOUS);
+
+        String result = "Drive migration: " + successCount + "/" + files.size() + " files migrated";
+        System.out.println("\n🎉 " + result);
+        return result;
+    }
+
+    // Returns the number of items migrated (skipped folders count as migrated)
+    public int transferToGoogleDrive(List<DriveFile> files, String oneDriveToken, String googleToken, String userId) {
+        return transferToGoogleDrive(files, oneDriveToken, googleToken, userId, NO_SESSION_STORE, file -> {});
+    }
+
+    public int transferToGoogleDrive(List<DriveFile> files, String oneDriveToken, String googleToken, String userId,
+                                     UploadSessionStore sessions, Consumer<DriveFile> onUploaded) {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.DRIVE);
         int successCount = 0;
         int totalFiles = files.size();
 
@@ -114,119 +543,163 @@ public class RealDriveMigrationService {
                 continue;
             }
 
-            boolean success = uploadToGoogleDrive(file, oneDriveToken, googleToken);
+            boolean success = uploadToGoogleDrive(file, oneDriveToken, googleToken, limiter, sessions);
             if (success) {
                 successCount++;
+                onUploaded.accept(file);
                 System.out.println("✅ Successfully migrated file: " + file.getName());
             } else {
                 System.err.println("❌ Failed to migrate file: " + file.getName());
             }
+        }
+        return successCount;
+    }
 
-            // Rate limiting
-            try {
-                System.out.println("⏳ Waiting 2 seconds before next request...");
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                System.err.println("⚠️ Thread sleep interrupted: " + e.getMessage());
+    // ✅ SPOOL: downloads a file into the disk spool ahead of its upload, so the download side runs at
+    // its own pace. Anything that cannot be spooled is left for the upload to stream from OneDrive.
+    public void spoolAhead(DriveFile file, String oneDriveToken) {
+        if ("folder".equals(file.getType()) || contentCache.contains(file)) {
+            // Content another user's migration already brought down is uploaded from the cache
+            return;
+        }
+        DriveSpool.Entry entry = spool.reserve(file);
+        if (entry == null) {
+            return;
+        }
+        try {
+            boolean ranged = file.getSize() >= rangedDownloadThresholdMb * 1024L * 1024L;
+            if (ranged) {
+                rangedDownloader.download(file, oneDriveToken, entry.getPath());
+            } else {
+                try (InputStream in = openOneDriveContent(file, oneDriveToken, 0)) {
+                    spool.fill(entry, in);
+                }
             }
+            spool.complete(entry);
+            // Ranged downloads are hash-checked already; a streamed one is checked before it is shared
+            contentCache.store(file, entry.getPath(), ranged);
+        } catch (InterruptedException e) {
+            spool.abandon(entry);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            spool.abandon(entry);
+            System.err.println("⚠️ Could not spool '" + file.getName() + "', it will be streamed: " + e.getMessage());
         }
-
-        String result = "Drive migration: " + successCount + "/" + totalFiles + " files migrated";
-        System.out.println("\n🎉 " + result);
-        return result;
     }
 
-    // ✅ COMPLETE FIX: Proper download using Graph API
-    private boolean uploadToGoogleDrive(DriveFile file, String oneDriveToken, String googleToken) {
+    // ✅ STREAMING: the upload reads the spooled copy when there is one; otherwise the OneDrive body is
+    // piped straight into Google, large files first pulled down as parallel ranges into a verified local copy.
+    private boolean uploadToGoogleDrive(DriveFile file, String oneDriveToken, String googleToken, AdaptiveRateLimiter limiter,
+                                        UploadSessionStore sessions) {
+        DriveSpool.Entry spooled = spool.acquire(file);
+        Path cached = spooled == null ? contentCache.acquire(file) : null;
+        boolean success = false;
         try {
-            System.out.println("📤 Starting upload process for: " + file.getName());
-
-            // Step 1: Download file content from OneDrive using Graph API
-            byte[] fileContent = downloadFileFromOneDrive(file, oneDriveToken);
-            if (fileContent == null) {
-                System.err.println("❌ Failed to download file content from OneDrive: " + file.getName());
-                return false;
+            System.out.println("📤 Starting upload process for: " + file.getName()
+                    + (spooled != null ? " (spooled)" : cached != null ? " (cached)" : ""));
+
+            ContentSource content = offset -> openOneDriveContent(file, oneDriveToken, offset);
+            if (spooled != null) {
+                content = ContentSource.ofFile(spooled.getPath());
+            } else if (cached != null) {
+                content = ContentSource.ofFile(cached);
+            } else if (file.getSize() >= rangedDownloadThresholdMb * 1024L * 1024L) {
+                spooled = downloadRanged(file, oneDriveToken);
+                if (spooled != null) {
+                    contentCache.store(file, spooled.getPath(), true);
+                    content = ContentSource.ofFile(spooled.getPath());
+                }
             }
 
-            System.out.println("✅ Successfully downloaded file content: " + fileContent.length + " bytes");
-
-            // Step 2: Upload to Google Drive
-            boolean success = uploadFileToGoogleDrive(file, fileContent, googleToken);
+            // For small files (<5MB), use simple upload; larger ones go through a resumable session
+            success = file.getSize() < SIMPLE_UPLOAD_LIMIT
+                    ? simpleUploadToGoogleDrive(file, content, googleToken, limiter)
+                    : resumableUploadToGoogleDrive(file, content, googleToken, limiter, sessions);
 
             if (success) {
                 System.out.println("✅ File completely migrated to Google Drive: " + file.getName());
             } else {
                 System.err.println("❌ Google Drive upload failed for file: " + file.getName());
             }
-
             return success;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             System.err.println("❌ Google Drive upload failed for file '" + file.getName() + "': " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            if (spooled != null) {
+                spool.release(spooled, success);
+            }
+            if (cached != null) {
+                contentCache.release(file);
+            }
         }
     }
 
-    // ✅ COMPLETE FIX: Download using Microsoft Graph API with proper authentication
-    private byte[] downloadFileFromOneDrive(DriveFile file, String accessToken) {
+    // Verified copy of a large file in the spool, pinned like an acquired one; null to fall back to a
+    // single streamed download. The copy counts against the spool quota like one spooled ahead.
+    private DriveSpool.Entry downloadRanged(DriveFile file, String oneDriveToken) throws InterruptedException {
+        DriveSpool.Entry entry = spool.reserveForUpload(file);
+        if (entry == null) {
+            System.out.println("⚠️ No spool room for '" + file.getName() + "', streaming it");
+            return null;
+        }
         try {
-            if (file.getDownloadUrl() == null || file.getDownloadUrl().isEmpty()) {
-                System.err.println("❌ No item ID available for file: " + file.getName());
-                return null;
-            }
-
-            String itemId = file.getDownloadUrl();
-            System.out.println("📥 Downloading file from OneDrive using Graph API: " + file.getName());
-            System.out.println("🆔 Using Item ID: " + itemId);
-
-            // ✅ FIXED: Use Microsoft Graph API endpoint with proper authentication
-            String downloadUrl = "https://graph.microsoft.com/v1.0/me/drive/items/" + itemId + "/content";
-            System.out.println("🔗 Graph API Download URL: " + downloadUrl);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(accessToken);
-            headers.set("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            rangedDownloader.download(file, oneDriveToken, entry.getPath());
+            spool.complete(entry);
+            return entry;
+        } catch (IOException e) {
+            System.err.println("⚠️ Ranged download failed for '" + file.getName() + "', streaming instead: " + e.getMessage());
+            spool.abandon(entry);
+            return null;
+        } catch (InterruptedException e) {
+            spool.abandon(entry);
+            throw e;
+        }
+    }
 
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                    downloadUrl,
-                    HttpMethod.GET,
-                    entity,
-                    byte[].class
-            );
+    // OneDrive content from `offset` on, as a live stream; closing it releases the connection
+    private InputStream openOneDriveContent(DriveFile file, String accessToken, long offset) throws IOException {
+        if (file.getDownloadUrl() == null || file.getDownloadUrl().isEmpty()) {
+            throw new IOException("No item ID available for file: " + file.getName());
+        }
 
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                System.out.println("✅ Successfully downloaded file via Graph API: " + file.getName() + " (" + response.getBody().length + " bytes)");
-                return response.getBody();
-            } else {
-                System.err.println("❌ Graph API download failed. Status: " + response.getStatusCode());
-                System.err.println("Response headers: " + response.getHeaders());
+        Request.Builder request = new Request.Builder()
+                .url(GRAPH_DRIVE_ITEMS_URL + file.getDownloadUrl() + "/content")
+                .header("Authorization", "Bearer " + accessToken);
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
 
-                // Try alternative method if direct download fails
-                return downloadWithGraphClient(file, accessToken);
+        try {
+            Response response = graphClients.httpClient().newCall(request.build()).execute();
+            if (response.isSuccessful() && response.body() != null && (offset == 0 || response.code() == 206)) {
+                return response.body().byteStream();
             }
-
-        } catch (Exception e) {
+            System.err.println("❌ Graph API download failed. Status: " + response.code());
+            response.close();
+        } catch (IOException e) {
             System.err.println("❌ Graph API download failed for '" + file.getName() + "': " + e.getMessage());
-            // Fallback to Graph Client method
-            return downloadWithGraphClient(file, accessToken);
         }
+
+        if (offset > 0) {
+            throw new IOException("Could not resume download of " + file.getName() + " at byte " + offset);
+        }
+        // Fallback to Graph Client method
+        return downloadWithGraphClient(file, accessToken);
     }
 
     // ✅ ALTERNATIVE METHOD: Download using GraphServiceClient
-    private byte[] downloadWithGraphClient(DriveFile file, String accessToken) {
+    private InputStream downloadWithGraphClient(DriveFile file, String accessToken) throws IOException {
+        System.out.println("🔄 Trying alternative download method using GraphServiceClient for: " + file.getName());
         try {
-            System.out.println("🔄 Trying alternative download method using GraphServiceClient for: " + file.getName());
+            GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
 
-            GraphServiceClient<Request> graphClient = GraphServiceClient
-                    .builder()
-                    .authenticationProvider(url -> CompletableFuture.completedFuture(accessToken))
-                    .buildClient();
-
-            // Download using GraphServiceClient
-            InputStream stream = graphClient
+            return graphClient
                     .me()
                     .drive()
                     .items(file.getDownloadUrl())
@@ -234,166 +707,117 @@ public class RealDriveMigrationService {
                     .buildRequest()
                     .get();
 
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] data = new byte[4096];
-            int bytesRead;
-            int totalBytes = 0;
-
-            while ((bytesRead = stream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, bytesRead);
-                totalBytes += bytesRead;
-            }
-
-            byte[] fileContent = buffer.toByteArray();
-            System.out.println("✅ Successfully downloaded via GraphServiceClient: " + file.getName() + " (" + fileContent.length + " bytes)");
-
-            stream.close();
-            buffer.close();
-
-            return fileContent;
-
         } catch (Exception e) {
-            System.err.println("❌ GraphServiceClient download also failed for '" + file.getName() + "': " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            throw new IOException("GraphServiceClient download also failed for '" + file.getName() + "': " + e.getMessage(), e);
         }
     }
 
-    // ✅ IMPROVED: Upload to Google Drive with better error handling
-    private boolean uploadFileToGoogleDrive(DriveFile file, byte[] fileContent, String accessToken) {
-        try {
-            System.out.println("🚀 Uploading to Google Drive: " + file.getName() + " (" + fileContent.length + " bytes)");
-
-            // For small files (<5MB), use simple upload
-            if (fileContent.length < 5 * 1024 * 1024) {
-                return simpleUploadToGoogleDrive(file, fileContent, accessToken);
-            } else {
-                // For larger files, use resumable upload
-                return resumableUploadToGoogleDrive(file, fileContent, accessToken);
+    private boolean simpleUploadToGoogleDrive(DriveFile file, ContentSource source, String googleToken,
+                                              AdaptiveRateLimiter limiter) throws IOException, InterruptedException {
+        System.out.println("📤 Using simple upload for small file: " + file.getName());
+        String metadata = buildFileMetadataJson(file);
+
+        // The source stream is consumed by each attempt, so a retry re-opens it
+        for (int attempt = 1; ; attempt++) {
+            limiter.acquire();
+            int status = 0;
+            long retryAfterMillis = 0;
+            try (InputStream content = source.open(0)) {
+                String boundary = "-------" + System.currentTimeMillis();
+                Request request = new Request.Builder()
+                        .url(DRIVE_UPLOAD_URL + "?uploadType=multipart")
+                        .header("Authorization", "Bearer " + googleToken)
+                        .post(StreamingRequestBody.multipart(boundary, metadata, getMimeType(file.getName()),
+                                file.getSize(), content))
+                        .build();
+
+                try (Response response = googleHttp.newCall(request).execute()) {
+                    status = response.code();
+                    retryAfterMillis = AdaptiveRateLimiter.parseRetryAfterMillis(response.header("Retry-After"));
+                    String body = response.body() != null ? response.body().string() : "";
+                    if (response.isSuccessful()) {
+                        System.out.println("✅ Simple upload successful: " + file.getName());
+                        System.out.println("📄 Response: " + body);
+                        return true;
+                    }
+                    System.err.println("❌ Simple upload failed. Status: " + status);
+                    System.err.println("Error: " + body);
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Simple upload failed: " + e.getMessage());
+            } finally {
+                limiter.release(status, retryAfterMillis);
             }
 
-        } catch (Exception e) {
-            System.err.println("❌ Google Drive upload failed: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-
-private boolean simpleUploadToGoogleDrive(DriveFile file, byte[] fileContent, String accessToken) {
-        try {
-            System.out.println("📤 Using simple upload for small file: " + file.getName());
-
-            String url = "https://www.googleapis.com/upload/drive/v3/files?uploadType=multipart";
-
-            HttpHeaders headers = new HttpHeaders();
-            String boundary = "-------" + System.currentTimeMillis();
-            headers.setContentType(MediaType.parseMediaType("multipart/related; boundary=" + boundary));
-            headers.setBearerAuth(accessToken);
-
-            String metadata = buildFileMetadataJson(file);
-            byte[] body = buildMultipartRequestBodyBytes(metadata, fileContent, boundary, file);
-
-            HttpEntity<byte[]> entity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    String.class
-            );
-
-            boolean success = response.getStatusCode().is2xxSuccessful();
-            if (success) {
-                System.out.println("✅ Simple upload successful: " + file.getName());
-                System.out.println("📄 Response: " + response.getBody());
-            } else {
-                System.err.println("❌ Simple upload failed. Status: " + response.getStatusCode());
-                System.err.println("Error: " + response.getBody());
+            if (attempt >= 4 || !AdaptiveRateLimiter.isRetryable(status)) {
+                return false;
             }
-            return success;
-
-        } catch (Exception e) {
-            System.err.println("❌ Simple upload failed: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-
-
-
-    // ✅ NEW: build multipart body as byte[] (safe for binary files)
-    private byte[] buildMultipartRequestBodyBytes(String metadata, byte[] fileContent, String boundary, DriveFile file) {
-        String lineBreak = "\r\n";
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            // Metadata part
-            out.write(("--" + boundary + lineBreak).getBytes(StandardCharsets.UTF_8));
-            out.write("Content-Type: application/json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
-            out.write((lineBreak + lineBreak).getBytes(StandardCharsets.UTF_8));
-            out.write(metadata.getBytes(StandardCharsets.UTF_8));
-            out.write(lineBreak.getBytes(StandardCharsets.UTF_8));
-
-            // File part
-            out.write(("--" + boundary + lineBreak).getBytes(StandardCharsets.UTF_8));
-            out.write(("Content-Type: " + getMimeType(file.getName()) + lineBreak + lineBreak).getBytes(StandardCharsets.UTF_8));
-            out.write(fileContent); // raw bytes (no String conversion!)
-            out.write(lineBreak.getBytes(StandardCharsets.UTF_8));
-
-            // Closing boundary
-            out.write(("--" + boundary + "--").getBytes(StandardCharsets.UTF_8));
-
-            return out.toByteArray();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to build multipart body: " + e.getMessage(), e);
-        } finally {
-            try { out.close(); } catch (Exception ignored) {}
+            System.out.println("🔁 Retrying simple upload " + attempt + "/3: " + file.getName());
         }
     }
 
-
     // ✅ RESUMABLE UPLOAD: For files >= 5MB
-    private boolean resumableUploadToGoogleDrive(DriveFile file, byte[] fileContent, String accessToken) {
-        try {
-            System.out.println("📤 Using resumable upload for large file: " + file.getName());
-
-            String uploadUrl = initiateResumableUpload(file, accessToken);
-            if (uploadUrl == null) {
-                System.err.println("❌ Failed to initiate resumable upload");
-                return false;
+    private boolean resumableUploadToGoogleDrive(DriveFile file, ContentSource content, String googleToken,
+                                                 AdaptiveRateLimiter limiter, UploadSessionStore sessions)
+            throws InterruptedException {
+        System.out.println("📤 Using resumable upload for large file: " + file.getName());
+        long total = file.getSize();
+
+        // ✅ RESUME: a session saved before a restart continues from Google's committed offset
+        String savedSession = sessions.find(file.getId());
+        if (savedSession != null) {
+            long offset = queryResumableOffset(savedSession, total, googleToken);
+            if (offset >= total) {
+                System.out.println("✅ Upload already completed in previous run: " + file.getName());
+                sessions.save(file.getId(), null);
+                return true;
             }
+            if (offset >= 0 && uploadInChunks(savedSession, file, content, googleToken, offset, limiter, sessions)) {
+                sessions.save(file.getId(), null);
+                return true;
+            }
+            System.out.println("⚠️ Saved upload session unusable, starting a new one: " + file.getName());
+        }
 
-            return completeResumableUpload(uploadUrl, fileContent, accessToken);
-
-        } catch (Exception e) {
-            System.err.println("❌ Resumable upload failed: " + e.getMessage());
+        String uploadUrl = initiateResumableUpload(file, googleToken, limiter);
+        if (uploadUrl == null) {
+            System.err.println("❌ Failed to initiate resumable upload");
             return false;
         }
+        sessions.save(file.getId(), uploadUrl);
+
+        boolean success = uploadInChunks(uploadUrl, file, content, googleToken, 0, limiter, sessions);
+        if (success) {
+            sessions.save(file.getId(), null);
+        }
+        return success;
     }
 
     // ✅ INITIATE RESUMABLE UPLOAD
-    private String initiateResumableUpload(DriveFile file, String accessToken) {
+    private String initiateResumableUpload(DriveFile file, String accessToken, AdaptiveRateLimiter limiter) {
         try {
-            String url = "https://www.googleapis.com/upload/drive/v3/files?uploadType=resumable";
+            String url = DRIVE_UPLOAD_URL + "?uploadType=resumable";
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(accessToken);
             headers.add("X-Upload-Content-Type", getMimeType(file.getName()));
-            headers.add("X-Upload-Content-Length", String.valueOf(file.getSize() > 0 ? file.getSize() : 1024));
+            if (file.getSize() > 0) {
+                // Only a real length; Google then checks the upload against it
+                headers.add("X-Upload-Content-Length", String.valueOf(file.getSize()));
+            }
 
             String metadata = buildFileMetadataJson(file);
             System.out.println("📨 Upload metadata: " + metadata);
 
             HttpEntity<String> entity = new HttpEntity<>(metadata, headers);
 
-            ResponseEntity<String> response = restTemplate.exchange(
+            ResponseEntity<String> response = limiter.call(() -> restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     entity,
                     String.class
-            );
+            ), 4);
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 String uploadUrl = response.getHeaders().getFirst("Location");
@@ -405,65 +829,172 @@ private boolean simpleUploadToGoogleDrive(DriveFile file, byte[] fileContent, St
                 return null;
             }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             System.err.println("❌ Upload initiation failed: " + e.getMessage());
             return null;
         }
     }
 
-    // ✅ COMPLETE RESUMABLE UPLOAD
-    private boolean completeResumableUpload(String uploadUrl, byte[] fileContent, String accessToken) {
-        try {
-            System.out.println("📤 Uploading file content (" + fileContent.length + " bytes)...");
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentLength(fileContent.length);
-            headers.setBearerAuth(accessToken);
-
-            HttpEntity<byte[]> entity = new HttpEntity<>(fileContent, headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    uploadUrl,
-                    HttpMethod.PUT,
-                    entity,
-                    String.class
-            );
+    // ✅ CHUNKED: one buffer-sized PUT at a time. After any failure Google is asked for the committed
+    // range and the upload continues from there, from the buffer if it still holds those bytes,
+    // otherwise by re-opening the source at that offset.
+    boolean uploadInChunks(String uploadUrl, DriveFile file, ContentSource content, String googleToken,
+                           long offset, AdaptiveRateLimiter limiter, UploadSessionStore sessions)
+            throws InterruptedException {
+        long total = file.getSize();
+        byte[] buffer = new byte[chunkSizeBytes()];
+        long bufferStart = offset;
+        int buffered = 0;
+        int failures = 0;
+        InputStream source = null;
+        System.out.println("📤 Uploading file content (" + (total - offset) + " of " + total + " bytes) in "
+                + (buffer.length / 1024) + " KiB chunks...");
 
-            boolean success = response.getStatusCode().is2xxSuccessful();
-            if (success) {
-                System.out.println("✅ File content uploaded successfully!");
-                System.out.println("📄 Upload response: " + response.getBody());
-            } else {
-                System.err.println("❌ Upload failed. Status: " + response.getStatusCode());
-                System.err.println("Error: " + response.getBody());
+        try {
+            while (true) {
+                // Fill a whole chunk (or up to the end of the file); the source sits at bufferStart + buffered
+                try {
+                    if (source == null) {
+                        source = content.open(bufferStart + buffered);
+                    }
+                    while (buffered < buffer.length && bufferStart + buffered < total) {
+                        int read = source.read(buffer, buffered, (int) Math.min(buffer.length - buffered, total - bufferStart - buffered));
+                        if (read == -1) {
+                            throw new IOException("OneDrive stream ended at byte " + (bufferStart + buffered) + " of " + total);
+                        }
+                        buffered += read;
+                    }
+                } catch (IOException e) {
+                    System.err.println("⚠️ Source read failed for '" + file.getName() + "': " + e.getMessage());
+                    closeQuietly(source);
+                    source = null;
+                    if (++failures > MAX_CHUNK_FAILURES) {
+                        return false;
+                    }
+                    continue;
+                }
+
+                String contentRange = "bytes " + bufferStart + "-" + (bufferStart + buffered - 1) + "/" + total;
+                Request request = new Request.Builder()
+                        .url(uploadUrl)
+                        .header("Authorization", "Bearer " + googleToken)
+                        .header("Content-Range", contentRange)
+                        .put(StreamingRequestBody.bytes(getMimeType(file.getName()), buffer, buffered))
+                        .build();
+
+                int status = 0;
+                long retryAfterMillis = 0;
+                long committed = -1;
+                limiter.acquire();
+                try (Response response = googleHttp.newCall(request).execute()) {
+                    status = response.code();
+                    retryAfterMillis = AdaptiveRateLimiter.parseRetryAfterMillis(response.header("Retry-After"));
+                    if (response.isSuccessful()) {
+                        String body = response.body() != null ? response.body().string() : "";
+                        System.out.println("✅ File content uploaded successfully!");
+                        System.out.println("📄 Upload response: " + body);
+                        return true;
+                    }
+                    if (status == 308) {
+                        committed = committedFromRange(response.header("Range"));
+                    } else if (status == 404 || status == 410) {
+                        System.err.println("❌ Upload session expired for: " + file.getName());
+                        sessions.save(file.getId(), null);
+                        return false;
+                    } else {
+                        System.err.println("❌ Chunk " + contentRange + " failed. Status: " + status);
+                    }
+                } catch (IOException e) {
+                    System.err.println("❌ Chunk " + contentRange + " failed: " + e.getMessage());
+                } finally {
+                    limiter.release(status, retryAfterMillis);
+                }
+
+                if (committed < 0) {
+                    if (status != 0 && !AdaptiveRateLimiter.isRetryable(status)) {
+                        return false;
+                    }
+                    if (++failures > MAX_CHUNK_FAILURES) {
+                        return false;
+                    }
+                    // The failed PUT may still have landed, fully or in part
+                    committed = queryResumableOffset(uploadUrl, total, googleToken);
+                    if (committed < 0) {
+                        return false;
+                    }
+                    if (committed >= total) {
+                        return true;
+                    }
+                } else {
+                    failures = 0;
+                }
+
+                if (committed >= bufferStart && committed <= bufferStart + buffered) {
+                    // Keep whatever part of the chunk Google did not take
+                    int consumed = (int) (committed - bufferStart);
+                    System.arraycopy(buffer, consumed, buffer, 0, buffered - consumed);
+                    buffered -= consumed;
+                } else {
+                    // Committed range is outside the buffer: re-read the source from there
+                    closeQuietly(source);
+                    source = null;
+                    buffered = 0;
+                }
+                bufferStart = committed;
+                sessions.progress(file.getId(), committed);
             }
+        } finally {
+            closeQuietly(source);
+        }
+    }
 
-            return success;
+    private int chunkSizeBytes() {
+        long requested = (long) uploadChunkSizeKib * 1024;
+        long chunks = Math.max(1, requested / CHUNK_GRANULARITY);
+        return (int) Math.min(chunks * CHUNK_GRANULARITY, 256L * 1024 * 1024);
+    }
 
-        } catch (Exception e) {
-            System.err.println("❌ File content upload failed: " + e.getMessage());
-            return false;
+    // 308 Resume Incomplete: "Range: bytes=0-<last byte received>", absent when nothing arrived
+    static long committedFromRange(String range) {
+        if (range == null) {
+            return 0;
         }
+        return Long.parseLong(range.substring(range.lastIndexOf('-') + 1).trim()) + 1;
     }
 
-    // ✅ BUILD MULTIPART REQUEST BODY
-    private String buildMultipartRequestBody(String metadata, byte[] fileContent, String boundary, DriveFile file) {
-        StringBuilder body = new StringBuilder();
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // Connection is discarded either way
+            }
+        }
+    }
 
-        // Metadata part
-        body.append("--").append(boundary).append("\r\n");
-        body.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
-        body.append(metadata).append("\r\n");
+    // Bytes Google already holds for a resumable session: the file length when complete, -1 if the session is gone
+    private long queryResumableOffset(String uploadUrl, long totalLength, String accessToken) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setBearerAuth(accessToken);
+            headers.setContentLength(0);
+            headers.set("Content-Range", "bytes */" + totalLength);
 
-        // File content part
-        body.append("--").append(boundary).append("\r\n");
-        body.append("Content-Type: ").append(getMimeType(file.getName())).append("\r\n\r\n");
-        body.append(new String(fileContent)).append("\r\n");
+            ResponseEntity<String> response = restTemplate.exchange(
+                    uploadUrl, HttpMethod.PUT, new HttpEntity<>(new byte[0], headers), String.class);
 
-        body.append("--").append(boundary).append("--");
+            if (response.getStatusCode().is2xxSuccessful()) {
+                return totalLength;
+            }
+            return committedFromRange(response.getHeaders().getFirst("Range"));
 
-        return body.toString();
+        } catch (Exception e) {
+            System.err.println("⚠️ Upload session status query failed: " + e.getMessage());
+            return -1;
+        }
     }
 
     // ✅ REPLACED: safe metadata JSON (no read-only fields, appProperties values are strings)
@@ -477,6 +1008,10 @@ private boolean simpleUploadToGoogleDrive(DriveFile file, byte[] fileContent, St
         String description = "Migrated from OneDrive | Original created: " + file.getCreatedTime();
         json.append(",\"description\":").append(toJsonString(description));
 
+        if (file.getGoogleParentId() != null) {
+            json.append(",\"parents\":[").append(toJsonString(file.getGoogleParentId())).append("]");
+        }
+
         // Remove fileExtension (read-only) — DO NOT include it here
 
         // appProperties values must be strings
@@ -484,6 +1019,17 @@ private boolean simpleUploadToGoogleDrive(DriveFile file, byte[] fileContent, St
         json.append("\"migrationSource\":").append(toJsonString("OneDrive")).append(",");
         json.append("\"originalCreatedTime\":").append(toJsonString(file.getCreatedTime())).append(",");
         json.append("\"originalSize\":").append(toJsonString(String.valueOf(file.getSize()))).append(",");
+        // Read back by loadTargetIndex to recognise this exact version on later runs
+        json.append("\"sourceItemId\":").append(toJsonString(file.getId())).append(",");
+        if (file.getModifiedTime() != null) {
+            json.append("\"originalModifiedTime\":").append(toJsonString(file.getModifiedTime())).append(",");
+        }
+        if (file.getQuickXorHash() != null) {
+            json.append("\"quickXorHash\":").append(toJsonString(file.getQuickXorHash())).append(",");
+        }
+        if (file.getSha1Hash() != null) {
+            json.append("\"sha1Hash\":").append(toJsonString(file.getSha1Hash())).append(",");
+        }
         json.append("\"migratedAt\":").append(toJsonString(String.valueOf(System.currentTimeMillis())));
         json.append("}");
 
@@ -492,6 +1038,13 @@ private boolean simpleUploadToGoogleDrive(DriveFile file, byte[] fileContent, St
     }
 
 
+    private String buildFolderMetadataJson(DriveFile folder, String googleParentId) {
+        return "{\"name\":" + toJsonString(folder.getName())
+                + ",\"mimeType\":" + toJsonString(FOLDER_MIME_TYPE)
+                + ",\"parents\":[" + toJsonString(googleParentId) + "]"
+                + ",\"appProperties\":{\"migrationSource\":\"OneDrive\",\"sourceItemId\":" + toJsonString(folder.getId()) + "}}";
+    }
+
     // ✅ MIME TYPE DETECTION
     private String getMimeType(String fileName) {
         if (fileName == null) return "application/octet-stream";
@@ -2,25 +2,72 @@ package com.unwan.migration.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.nio.charset.StandardCharsets;
+import com.microsoft.graph.models.MailFolder;
+import com.microsoft.graph.models.Message;
 import com.microsoft.graph.requests.GraphServiceClient;
 import com.microsoft.graph.requests.MessageCollectionPage;
+import com.microsoft.graph.requests.MessageCollectionRequest;
+import com.microsoft.graph.requests.MessageCollectionRequestBuilder;
 import com.microsoft.graph.requests.MailFolderCollectionPage;
+import com.unwan.migration.drive.StreamingRequestBody;
+import com.unwan.migration.graph.GraphClientFactory;
 import com.unwan.migration.model.EmailMessage;
+import com.unwan.migration.model.OutlookFolder;
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import com.unwan.migration.ratelimit.RateLimiterRegistry;
+import com.unwan.migration.time.DateTimeConverter;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import org.springframework.http.*;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class RealMailMigrationService {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private GoogleBatchClient googleBatchClient;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiters;
+
+    @Autowired
+    private GraphClientFactory graphClients;
+
+    @Autowired
+    @Qualifier("googleOkHttpClient")
+    private OkHttpClient googleHttp;
+
+    @Value("${migration.gmail.batch-size:100}")
+    private int gmailBatchSize;
+
+    @Value("${migration.mail.raw-passthrough:false}")
+    private boolean rawPassthrough;
 
+    private static final String GMAIL_BATCH_URL = "https://gmail.googleapis.com/batch/gmail/v1";
+    private static final String GMAIL_IMPORT_PATH = "/gmail/v1/users/me/messages/import";
+    private static final String GMAIL_IMPORT_URL = "https://gmail.googleapis.com" + GMAIL_IMPORT_PATH;
+    private static final String GRAPH_MESSAGES_URL = "https://graph.microsoft.com/v1.0/me/messages/";
+    // Keep each batch request well below Google's payload limit
+    private static final long MAX_BATCH_BYTES = 8L * 1024 * 1024;
+    private static final int BATCH_MAX_ATTEMPTS = 4;
 
+    private static final String MESSAGE_FIELDS = "id,internetMessageId,subject,from,toRecipients,body,receivedDateTime,isRead,hasAttachments";
+    // Passthrough copies the original MIME, so the body is never selected
+    private static final String PASSTHROUGH_MESSAGE_FIELDS = "id,internetMessageId,subject,receivedDateTime,isRead,hasAttachments";
+    private static final String FOLDER_FIELDS = "id,displayName,totalItemCount,childFolderCount";
+    private static final int MAIL_PAGE_SIZE = 100;
 
     private final Map<String, String> OUTLOOK_FOLDER_IDS = Map.of(
             "inbox", "inbox",
@@ -37,44 +84,19 @@ public class RealMailMigrationService {
         String folderId = getFolderId(folderName);
 
         try {
-            GraphServiceClient<Request> graphClient = GraphServiceClient
-                    .builder()
-                    .authenticationProvider(url -> CompletableFuture.completedFuture(accessToken))
-                    .buildClient();
+            GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
 
             MessageCollectionPage messages = graphClient
                     .me()
                     .mailFolders(folderId)
                     .messages()
                     .buildRequest()
-                    .select("subject,from,toRecipients,body,receivedDateTime,isRead,hasAttachments")
+                    .select(MESSAGE_FIELDS)
                     .top(50)
                     .get();
 
             return messages.getCurrentPage().stream()
-                    .map(msg -> {
-                        EmailMessage email = new EmailMessage();
-                        email.setSubject(msg.subject != null ? msg.subject : "No Subject");
-
-                        if (msg.from != null && msg.from.emailAddress != null) {
-                            email.setFrom(msg.from.emailAddress.address);
-                        }
-
-                        if (msg.toRecipients != null && !msg.toRecipients.isEmpty()) {
-                            email.setTo(msg.toRecipients.stream()
-                                    .filter(recipient -> recipient.emailAddress != null)
-                                    .map(recipient -> recipient.emailAddress.address)
-                                    .collect(Collectors.joining(", ")));
-                        }
-
-                        if (msg.body != null) {
-                            email.setBody(msg.body.content != null ? msg.body.content : "");
-                        }
-
-                        email.setReceivedDateTime(msg.receivedDateTime != null ?
-                                msg.receivedDateTime.toString() : new Date().toString());
-                        return email;
-                    })
+                    .map(msg -> mapOutlookMessage(msg, folderName))
                     .collect(Collectors.toList());
 
         } catch (Exception e) {
@@ -84,42 +106,243 @@ public class RealMailMigrationService {
         }
     }
 
+    // ✅ NEW: Page-by-page mail stream for a folder, follows @odata.nextLink until exhausted
+    public OutlookMailPageIterator streamOutlookMails(String accessToken, OutlookFolder folder) {
+        GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
+
+        MessageCollectionRequest firstRequest = graphClient
+                .me()
+                .mailFolders(folder.getId())
+                .messages()
+                .buildRequest()
+                .select(rawPassthrough ? PASSTHROUGH_MESSAGE_FIELDS : MESSAGE_FIELDS)
+                .top(MAIL_PAGE_SIZE);
+
+        return new OutlookMailPageIterator(firstRequest, msg -> mapOutlookMessage(msg, folder.getDisplayName()));
+    }
+
+    // Same stream, starting at a page link saved by a checkpoint
+    public OutlookMailPageIterator streamOutlookMails(String accessToken, OutlookFolder folder, String pageLink) {
+        if (pageLink == null) {
+            return streamOutlookMails(accessToken, folder);
+        }
+        GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
+
+        // The nextLink already carries $select, $top and the skip token
+        return OutlookMailPageIterator.resumeAt(new MessageCollectionRequestBuilder(pageLink, graphClient, null),
+                msg -> mapOutlookMessage(msg, folder.getDisplayName()));
+    }
+
+    private EmailMessage mapOutlookMessage(Message msg, String folderName) {
+        EmailMessage email = new EmailMessage();
+        email.setId(msg.id);
+        email.setInternetMessageId(msg.internetMessageId);
+        email.setFolder(folderName);
+        email.setSubject(msg.subject != null ? msg.subject : "No Subject");
+
+        if (msg.from != null && msg.from.emailAddress != null) {
+            email.setFrom(msg.from.emailAddress.address);
+        }
+
+        if (msg.toRecipients != null && !msg.toRecipients.isEmpty()) {
+            email.setTo(msg.toRecipients.stream()
+                    .filter(recipient -> recipient.emailAddress != null)
+                    .map(recipient -> recipient.emailAddress.address)
+                    .collect(Collectors.joining(", ")));
+        }
+
+        if (msg.body != null) {
+            email.setBody(msg.body.content != null ? msg.body.content : "");
+        }
+
+        email.setRead(Boolean.TRUE.equals(msg.isRead));
+        email.setHasAttachments(Boolean.TRUE.equals(msg.hasAttachments));
+        email.setReceivedDateTime(msg.receivedDateTime != null ?
+                msg.receivedDateTime.toString() : OffsetDateTime.now(ZoneOffset.UTC).toString());
+        return email;
+    }
+
 
     private String getFolderId(String folderName) {
         String lowerFolder = folderName.toLowerCase().replace(" ", "");
         return OUTLOOK_FOLDER_IDS.getOrDefault(lowerFolder, "inbox"); // Default to inbox
     }
 
-    // ✅ FIXED: Proper Gmail import with debugging
-    public String pushToGmail(List<EmailMessage> emails, String gmailToken) {
+    // ✅ BATCHED: Gmail import through the multipart batch endpoint, up to 100 messages per request
+    public String pushToGmail(List<EmailMessage> emails, String gmailToken) throws InterruptedException {
         System.out.println("🔄 Starting Gmail migration for " + emails.size() + " emails");
 
+        int successCount = importToGmail(emails, gmailToken, RateLimiterRegistry.ANONYMOUS);
+
+        String result = "Gmail migration: " + successCount + "/" + emails.size() + " emails migrated";
+        System.out.println("🎉 " + result);
+        return result;
+    }
+
+    // Returns the number of messages Gmail accepted
+    public int importToGmail(List<EmailMessage> emails, String gmailToken, String userId) throws InterruptedException {
+        List<PreparedMessage> prepared = new ArrayList<>(emails.size());
+        for (EmailMessage email : emails) {
+            try {
+                prepared.add(new PreparedMessage(email, buildGmailImportPart(email)));
+            } catch (Exception e) {
+                System.err.println("❌ Failed to build Gmail import for email: " + email.getSubject() + " - " + e.getMessage());
+            }
+        }
+        return sendGmailBatches(prepared, gmailToken, rateLimiters.get(userId, ApiQuota.GMAIL), email -> {});
+    }
+
+    // CPU-heavy half of the import (MIME build + base64), run on the pipeline's transform workers
+    public PreparedMessage prepareForGmail(EmailMessage email) throws Exception {
+        return new PreparedMessage(email, rawPassthrough ? null : buildGmailImportPart(email));
+    }
+
+    // Network half of the import: raw MIME passthrough or batch import, depending on migration.mail.raw-passthrough
+    // onImported is called for every message Gmail accepted
+    public int importPrepared(List<PreparedMessage> prepared, String outlookToken, String gmailToken, String userId,
+                              Consumer<EmailMessage> onImported) throws InterruptedException {
+        AdaptiveRateLimiter limiter = rateLimiters.get(userId, ApiQuota.GMAIL);
+        if (rawPassthrough) {
+            List<EmailMessage> emails = prepared.stream().map(PreparedMessage::getEmail).collect(Collectors.toList());
+            return importRawToGmail(emails, outlookToken, gmailToken, rateLimiters.get(userId, ApiQuota.GRAPH), limiter, onImported);
+        }
+        return sendGmailBatches(prepared, gmailToken, limiter, onImported);
+    }
+
+    private int sendGmailBatches(List<PreparedMessage> prepared, String gmailToken, AdaptiveRateLimiter limiter,
+                                 Consumer<EmailMessage> onImported) throws InterruptedException {
+        int successCount = 0;
+
+        List<EmailMessage> batchEmails = new ArrayList<>();
+        List<GoogleBatchClient.BatchPart> batchParts = new ArrayList<>();
+        long batchBytes = 0;
+
+        for (PreparedMessage message : prepared) {
+            GoogleBatchClient.BatchPart part = message.getImportPart();
+
+            // Flush before the batch exceeds the call count or the payload budget
+            if (!batchParts.isEmpty() && (batchParts.size() >= Math.min(gmailBatchSize, GoogleBatchClient.MAX_BATCH_SIZE)
+                    || batchBytes + part.estimatedSize() > MAX_BATCH_BYTES)) {
+                successCount += sendGmailBatch(batchEmails, batchParts, gmailToken, limiter, onImported);
+                batchEmails.clear();
+                batchParts.clear();
+                batchBytes = 0;
+            }
+
+            batchEmails.add(message.getEmail());
+            batchParts.add(part);
+            batchBytes += part.estimatedSize();
+        }
+
+        if (!batchParts.isEmpty()) {
+            successCount += sendGmailBatch(batchEmails, batchParts, gmailToken, limiter, onImported);
+        }
+        return successCount;
+    }
+
+    // ✅ PASSTHROUGH: original MIME from Graph $value, base64url-encoded on the fly into the import body
+    public int importRawToGmail(List<EmailMessage> emails, String outlookToken, String gmailToken,
+                                AdaptiveRateLimiter graphLimiter, AdaptiveRateLimiter gmailLimiter,
+                                Consumer<EmailMessage> onImported) throws InterruptedException {
         int successCount = 0;
-        int totalEmails = emails.size();
-
-        for (int i = 0; i < totalEmails; i++) {
-            EmailMessage email = emails.get(i);
-            System.out.println("📧 Processing email " + (i+1) + ": " + email.getSubject());
-            //insert method call
-            boolean success = tryGmailInsert(email, gmailToken);
-            if (success) {
+        for (EmailMessage email : emails) {
+            if (streamRawMessageToGmail(email, outlookToken, gmailToken, graphLimiter, gmailLimiter)) {
                 successCount++;
-                System.out.println("✅ Successfully migrated email: " + email.getSubject());
+                onImported.accept(email);
             } else {
                 System.err.println("❌ Failed to migrate email: " + email.getSubject());
             }
+        }
+        System.out.println("📤 Gmail passthrough result: " + successCount + "/" + emails.size() + " imported");
+        return successCount;
+    }
 
-            // Rate limiting
-            try {
-                Thread.sleep(1000); // 1 second delay
-            } catch (InterruptedException ignored) {}
+    // The $value GET runs under the Graph limiter and only the import under the Gmail one; the Graph slot
+    // stays taken while its body streams into Gmail
+    private boolean streamRawMessageToGmail(EmailMessage email, String outlookToken, String gmailToken,
+                                            AdaptiveRateLimiter graphLimiter, AdaptiveRateLimiter gmailLimiter)
+            throws InterruptedException {
+        if (email.getId() == null) {
+            return false;
+        }
+        String jsonPrefix;
+        try {
+            jsonPrefix = "{\"labelIds\":" + mapper.writeValueAsString(resolveGmailLabels(email)) + ",\"raw\":\"";
+        } catch (IOException e) {
+            System.err.println("❌ Gmail passthrough failed for email '" + email.getSubject() + "': " + e.getMessage());
+            return false;
         }
+        Request mimeRequest = new Request.Builder()
+                .url(GRAPH_MESSAGES_URL + email.getId() + "/$value")
+                .header("Authorization", "Bearer " + outlookToken)
+                .build();
+
+        // The MIME stream can only be read once, so every attempt fetches $value again before importing
+        for (int attempt = 1; ; attempt++) {
+            int graphStatus = 0;
+            int gmailStatus = 0;
+            long graphRetryAfterMillis = 0;
+            long gmailRetryAfterMillis = 0;
+            graphLimiter.acquire();
+            try (Response mime = graphClients.httpClient().newCall(mimeRequest).execute()) {
+                graphStatus = mime.code();
+                graphRetryAfterMillis = AdaptiveRateLimiter.parseRetryAfterMillis(mime.header("Retry-After"));
+                if (!mime.isSuccessful() || mime.body() == null) {
+                    System.err.println("❌ Graph $value failed for email '" + email.getSubject() + "': " + graphStatus);
+                } else {
+                    Request importRequest = new Request.Builder()
+                            .url(GMAIL_IMPORT_URL)
+                            .header("Authorization", "Bearer " + gmailToken)
+                            .post(StreamingRequestBody.base64UrlJson(jsonPrefix, mime.body().byteStream(), "\"}"))
+                            .build();
+                    gmailLimiter.acquire();
+                    try (Response imported = googleHttp.newCall(importRequest).execute()) {
+                        gmailStatus = imported.code();
+                        gmailRetryAfterMillis = AdaptiveRateLimiter.parseRetryAfterMillis(imported.header("Retry-After"));
+                        if (imported.isSuccessful()) {
+                            return true;
+                        }
+                        System.err.println("❌ Gmail passthrough failed for email '" + email.getSubject() + "': "
+                                + gmailStatus + " - " + (imported.body() != null ? imported.body().string() : ""));
+                    } finally {
+                        gmailLimiter.release(gmailStatus, gmailRetryAfterMillis);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Gmail passthrough failed for email '" + email.getSubject() + "': " + e.getMessage());
+            } finally {
+                graphLimiter.release(graphStatus, graphRetryAfterMillis);
+            }
 
+            // Throttled, 5xx and transport failures on either side retry the whole copy
+            int failedStatus = graphStatus >= 200 && graphStatus < 300 ? gmailStatus : graphStatus;
+            if (attempt >= BATCH_MAX_ATTEMPTS || !AdaptiveRateLimiter.isRetryable(failedStatus)) {
+                return false;
+            }
+            System.out.println("🔁 Retrying passthrough " + attempt + "/" + (BATCH_MAX_ATTEMPTS - 1) + ": " + email.getSubject());
+        }
+    }
 
+    private int sendGmailBatch(List<EmailMessage> batchEmails, List<GoogleBatchClient.BatchPart> batchParts,
+                               String gmailToken, AdaptiveRateLimiter limiter,
+                               Consumer<EmailMessage> onImported) throws InterruptedException {
+        System.out.println("📦 Sending Gmail batch of " + batchParts.size() + " messages");
+        List<GoogleBatchClient.BatchResult> results = googleBatchClient.executeWithRetry(
+                GMAIL_BATCH_URL, gmailToken, batchParts, BATCH_MAX_ATTEMPTS, limiter);
 
-        String result = "Gmail migration: " + successCount + "/" + totalEmails + " emails migrated";
-        System.out.println("🎉 " + result);
-        return result;
+        int successCount = 0;
+        for (int i = 0; i < results.size(); i++) {
+            GoogleBatchClient.BatchResult result = results.get(i);
+            if (result.isSuccess()) {
+                successCount++;
+                onImported.accept(batchEmails.get(i));
+            } else {
+                System.err.println("❌ Failed to migrate email: " + batchEmails.get(i).getSubject()
+                        + " (" + result.getStatus() + ")");
+            }
+        }
+        System.out.println("📤 Gmail batch result: " + successCount + "/" + batchParts.size() + " imported");
+        return successCount;
     }
 
 //    // ✅ FIXED: Working Gmail import method
@@ -140,62 +363,47 @@ public class RealMailMigrationService {
 
 
 
-    private boolean tryGmailInsert(EmailMessage email, String accessToken) {
-        try {
-            String url = "https://gmail.googleapis.com/gmail/v1/users/me/messages/import";
-            String rawMessage = createProperMimeMessage(email);
-            System.out.println("📨 Raw MIME message length: " + rawMessage.length());
-
-            // use URL-safe base64 (without padding is fine)
-            String encodedMessage = Base64.getUrlEncoder().withoutPadding()
-                    .encodeToString(rawMessage.getBytes(StandardCharsets.UTF_8));
-
-            Map<String, Object> bodyMap = new HashMap<>();
-            bodyMap.put("raw", encodedMessage);
-
-            // label mapping: folder -> Gmail label(s)
-            List<String> labels = new ArrayList<>();
-            labels.add("INBOX"); // default
-            String folder = email.getFolder() != null ? email.getFolder().toLowerCase() : "";
-            if (folder.contains("sent")) {
-                labels = List.of("SENT");
-            } else if (folder.contains("draft")) {
-                labels = List.of("DRAFT");
-            } else if (folder.contains("trash") || folder.contains("deleted")) {
-                labels = List.of("TRASH");
-            } else if (folder.contains("archive")) {
-                labels = Arrays.asList("INBOX","CATEGORY_UPDATES"); // example
-            }
-
-            // unread mapping
-            if (!email.isRead()) {
-                // keep it unread by adding UNREAD
-                if (!labels.contains("UNREAD")) labels.add("UNREAD");
-            } else {
-                // ensure UNREAD not present
-                labels.remove("UNREAD");
-            }
+    private GoogleBatchClient.BatchPart buildGmailImportPart(EmailMessage email) throws Exception {
+        return GoogleBatchClient.BatchPart.post(GMAIL_IMPORT_PATH, buildGmailImportBody(email));
+    }
 
-            bodyMap.put("labelIds", labels);
+    // JSON body for users.messages.import: raw MIME plus folder/read-state labels
+    private String buildGmailImportBody(EmailMessage email) throws Exception {
+        String rawMessage = createProperMimeMessage(email);
 
-            ObjectMapper mapper = new ObjectMapper();
-            String requestBody = mapper.writeValueAsString(bodyMap);
+        // use URL-safe base64 (without padding is fine)
+        String encodedMessage = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(rawMessage.getBytes(StandardCharsets.UTF_8));
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(accessToken);
+        Map<String, Object> bodyMap = new HashMap<>();
+        bodyMap.put("raw", encodedMessage);
+        bodyMap.put("labelIds", resolveGmailLabels(email));
 
-            HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        return mapper.writeValueAsString(bodyMap);
+    }
 
-            boolean success = response.getStatusCode().is2xxSuccessful();
-            System.out.println("📤 Gmail Insert response: " + response.getStatusCode() + " - Success: " + success);
-            return success;
+    // label mapping: folder -> Gmail label(s)
+    private List<String> resolveGmailLabels(EmailMessage email) {
+        List<String> labels = new ArrayList<>();
+        String folder = email.getFolder() != null ? email.getFolder().toLowerCase() : "";
+        if (folder.contains("sent")) {
+            labels.add("SENT");
+        } else if (folder.contains("draft")) {
+            labels.add("DRAFT");
+        } else if (folder.contains("trash") || folder.contains("deleted")) {
+            labels.add("TRASH");
+        } else if (folder.contains("archive")) {
+            labels.add("INBOX");
+            labels.add("CATEGORY_UPDATES"); // example
+        } else {
+            labels.add("INBOX"); // default
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Gmail insert failed: " + e.getMessage());
-            return false;
+        // unread mapping: keep it unread by adding UNREAD
+        if (!email.isRead()) {
+            labels.add("UNREAD");
         }
+        return labels;
     }
 
 //    private boolean tryGmailInsert(EmailMessage email, String accessToken) {
@@ -228,18 +436,8 @@ public class RealMailMigrationService {
 
     private String createProperMimeMessage(EmailMessage email) {
         String messageId = "<" + UUID.randomUUID() + "@migration>";
-        String dateHeader;
-        // try to use original receivedDateTime if available (ISO-8601)
-        try {
-            if (email.getReceivedDateTime() != null && !email.getReceivedDateTime().isBlank()) {
-                OffsetDateTime odt = OffsetDateTime.parse(email.getReceivedDateTime());
-                dateHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(odt);
-            } else {
-                dateHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(java.time.ZonedDateTime.now(java.time.ZoneOffset.UTC));
-            }
-        } catch (Exception e) {
-            dateHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(java.time.ZonedDateTime.now(java.time.ZoneOffset.UTC));
-        }
+        // original receivedDateTime (ISO-8601) if available, otherwise now
+        String dateHeader = DateTimeConverter.mimeDate(email.getReceivedDateTime());
 
         String from = email.getFrom() != null ? email.getFrom() : "migration@example.com";
         String to = email.getTo() != null ? email.getTo() : "user@example.com";
@@ -284,13 +482,47 @@ public class RealMailMigrationService {
     }
 
 
+    // ✅ NEW: All mail folders (including child folders) with their item counts, every page
+    public List<OutlookFolder> fetchOutlookMailFolders(String accessToken) {
+        GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
+
+        List<OutlookFolder> result = new ArrayList<>();
+        MailFolderCollectionPage page = graphClient.me().mailFolders()
+                .buildRequest()
+                .select(FOLDER_FIELDS)
+                .top(100)
+                .get();
+        collectMailFolders(graphClient, page, result);
+
+        int totalItems = result.stream().mapToInt(OutlookFolder::getTotalItemCount).sum();
+        System.out.println("✅ Outlook folders found: " + result.size() + " (" + totalItems + " items)");
+        return result;
+    }
+
+    private void collectMailFolders(GraphServiceClient<Request> graphClient, MailFolderCollectionPage page,
+                                    List<OutlookFolder> result) {
+        while (page != null) {
+            for (MailFolder folder : page.getCurrentPage()) {
+                int count = folder.totalItemCount != null ? folder.totalItemCount : 0;
+                result.add(new OutlookFolder(folder.id, folder.displayName, count));
+
+                if (folder.childFolderCount != null && folder.childFolderCount > 0) {
+                    MailFolderCollectionPage children = graphClient.me().mailFolders(folder.id).childFolders()
+                            .buildRequest()
+                            .select(FOLDER_FIELDS)
+                            .top(100)
+                            .get();
+                    collectMailFolders(graphClient, children, result);
+                }
+            }
+            page = page.getNextPage() != null ? page.getNextPage().buildRequest().get() : null;
+        }
+    }
+
     // ✅ FIXED: Fetch folders with proper error handling
     public List<String> fetchOutlookFolders(String accessToken) {
         try {
-            GraphServiceClient<Request> graphClient = GraphServiceClient
-                    .builder()
-                    .authenticationProvider(url -> CompletableFuture.completedFuture(accessToken))
-                    .buildClient();
+            GraphServiceClient<Request> graphClient = graphClients.forToken(accessToken);
 
             MailFolderCollectionPage folders = graphClient.me().mailFolders()
                     .buildRequest()
@@ -311,4 +543,18 @@ public class RealMailMigrationService {
         }
     }
 
+    // An Outlook message ready for import; the batch part is null in passthrough mode
+    public static class PreparedMessage {
+        private final EmailMessage email;
+        private final GoogleBatchClient.BatchPart importPart;
+
+        public PreparedMessage(EmailMessage email, GoogleBatchClient.BatchPart importPart) {
+            this.email = email;
+            this.importPart = importPart;
+        }
+
+        public EmailMessage getEmail() { return email; }
+        public GoogleBatchClient.BatchPart getImportPart() { return importPart; }
+    }
+
 }
@@ -0,0 +1,377 @@
+package com.unwan.migration.time;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Date and time conversions on the mail and calendar hot paths, shared so every message and
+ * event goes through the same precomputed tables and formatters.
+ * <p>
+ * Outlook names time zones the Windows way ("W. Europe Standard Time"). {@link #zoneFor}
+ * covers the whole CLDR windowsZones table and passes IANA IDs through, and every
+ * {@link ZoneId} is resolved once. Graph timestamps have a fixed shape, so they are read digit
+ * by digit instead of through a {@link DateTimeFormatter}; anything else falls back to the
+ * java.time parsers.
+ */
+public final class DateTimeConverter {
+
+    public static final ZoneId UTC = ZoneId.of("UTC");
+    public static final DateTimeFormatter ISO_OFFSET = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    // RFC 5545 form of a UTC instant, also what Google appends to a series ID to name an occurrence
+    public static final DateTimeFormatter UTC_BASIC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final String[] MONTH_NAMES = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    // CLDR windowsZones, territory "001": the zone Windows means by each name
+    static final String[][] WINDOWS_TO_IANA = {
+            {"Dateline Standard Time", "Etc/GMT+12"},
+            {"UTC-11", "Etc/GMT+11"},
+            {"Aleutian Standard Time", "America/Adak"},
+            {"Hawaiian Standard Time", "Pacific/Honolulu"},
+            {"Marquesas Standard Time", "Pacific/Marquesas"},
+            {"Alaskan Standard Time", "America/Anchorage"},
+            {"UTC-09", "Etc/GMT+9"},
+            {"Pacific Standard Time (Mexico)", "America/Tijuana"},
+            {"UTC-08", "Etc/GMT+8"},
+            {"Pacific Standard Time", "America/Los_Angeles"},
+            {"US Mountain Standard Time", "America/Phoenix"},
+            {"Mountain Standard Time (Mexico)", "America/Mazatlan"},
+            {"Mountain Standard Time", "America/Denver"},
+            {"Yukon Standard Time", "America/Whitehorse"},
+            {"Central America Standard Time", "America/Guatemala"},
+            {"Central Standard Time", "America/Chicago"},
+            {"Easter Island Standard Time", "Pacific/Easter"},
+            {"Central Standard Time (Mexico)", "America/Mexico_City"},
+            {"Canada Central Standard Time", "America/Regina"},
+            {"SA Pacific Standard Time", "America/Bogota"},
+            {"Eastern Standard Time (Mexico)", "America/Cancun"},
+            {"Eastern Standard Time", "America/New_York"},
+            {"Haiti Standard Time", "America/Port-au-Prince"},
+            {"Cuba Standard Time", "America/Havana"},
+            {"US Eastern Standard Time", "America/Indiana/Indianapolis"},
+            {"Turks And Caicos Standard Time", "America/Grand_Turk"},
+            {"Paraguay Standard Time", "America/Asuncion"},
+            {"Atlantic Standard Time", "America/Halifax"},
+            {"Venezuela Standard Time", "America/Caracas"},
+            {"Central Brazilian Standard Time", "America/Cuiaba"},
+            {"SA Western Standard Time", "America/La_Paz"},
+            {"Pacific SA Standard Time", "America/Santiago"},
+            {"Newfoundland Standard Time", "America/St_Johns"},
+            {"Tocantins Standard Time", "America/Araguaina"},
+            {"E. South America Standard Time", "America/Sao_Paulo"},
+            {"SA Eastern Standard Time", "America/Cayenne"},
+            {"Argentina Standard Time", "America/Argentina/Buenos_Aires"},
+            {"Greenland Standard Time", "America/Godthab"},
+            {"Montevideo Standard Time", "America/Montevideo"},
+            {"Magallanes Standard Time", "America/Punta_Arenas"},
+            {"Saint Pierre Standard Time", "America/Miquelon"},
+            {"Bahia Standard Time", "America/Bahia"},
+            {"UTC-02", "Etc/GMT+2"},
+            {"Mid-Atlantic Standard Time", "Etc/GMT+2"},
+            {"Azores Standard Time", "Atlantic/Azores"},
+            {"Cape Verde Standard Time", "Atlantic/Cape_Verde"},
+            {"UTC", "UTC"},
+            {"GMT Standard Time", "Europe/London"},
+            {"Greenwich Standard Time", "Atlantic/Reykjavik"},
+            {"Sao Tome Standard Time", "Africa/Sao_Tome"},
+            {"Morocco Standard Time", "Africa/Casablanca"},
+            {"W. Europe Standard Time", "Europe/Berlin"},
+            {"Central Europe Standard Time", "Europe/Budapest"},
+            {"Romance Standard Time", "Europe/Paris"},
+            {"Central European Standard Time", "Europe/Warsaw"},
+            {"W. Central Africa Standard Time", "Africa/Lagos"},
+            {"Jordan Standard Time", "Asia/Amman"},
+            {"GTB Standard Time", "Europe/Bucharest"},
+            {"Middle East Standard Time", "Asia/Beirut"},
+            {"Egypt Standard Time", "Africa/Cairo"},
+            {"E. Europe Standard Time", "Europe/Chisinau"},
+            {"Syria Standard Time", "Asia/Damascus"},
+            {"West Bank Standard Time", "Asia/Hebron"},
+            {"South Africa Standard Time", "Africa/Johannesburg"},
+            {"FLE Standard Time", "Europe/Kiev"},
+            {"Israel Standard Time", "Asia/Jerusalem"},
+            {"South Sudan Standard Time", "Africa/Juba"},
+            {"Kaliningrad Standard Time", "Europe/Kaliningrad"},
+            {"Sudan Standard Time", "Africa/Khartoum"},
+            {"Libya Standard Time", "Africa/Tripoli"},
+            {"Namibia Standard Time", "Africa/Windhoek"},
+            {"Arabic Standard Time", "Asia/Baghdad"},
+            {"Turkey Standard Time", "Europe/Istanbul"},
+            {"Arab Standard Time", "Asia/Riyadh"},
+            {"Belarus Standard Time", "Europe/Minsk"},
+            {"Russian Standard Time", "Europe/Moscow"},
+            {"E. Africa Standard Time", "Africa/Nairobi"},
+            {"Volgograd Standard Time", "Europe/Volgograd"},
+            {"Iran Standard Time", "Asia/Tehran"},
+            {"Arabian Standard Time", "Asia/Dubai"},
+            {"Astrakhan Standard Time", "Europe/Astrakhan"},
+            {"Azerbaijan Standard Time", "Asia/Baku"},
+            {"Russia Time Zone 3", "Europe/Samara"},
+            {"Mauritius Standard Time", "Indian/Mauritius"},
+            {"Saratov Standard Time", "Europe/Saratov"},
+            {"Georgian Standard Time", "Asia/Tbilisi"},
+            {"Caucasus Standard Time", "Asia/Yerevan"},
+            {"Afghanistan Standard Time", "Asia/Kabul"},
+            {"West Asia Standard Time", "Asia/Tashkent"},
+            {"Ekaterinburg Standard Time", "Asia/Yekaterinburg"},
+            {"Pakistan Standard Time", "Asia/Karachi"},
+            {"Qyzylorda Standard Time", "Asia/Qyzylorda"},
+            {"India Standard Time", "Asia/Kolkata"},
+            {"Sri Lanka Standard Time", "Asia/Colombo"},
+            {"Nepal Standard Time", "Asia/Kathmandu"},
+            {"Central Asia Standard Time", "Asia/Almaty"},
+            {"Bangladesh Standard Time", "Asia/Dhaka"},
+            {"Omsk Standard Time", "Asia/Omsk"},
+            {"Myanmar Standard Time", "Asia/Yangon"},
+            {"SE Asia Standard Time", "Asia/Bangkok"},
+            {"Altai Standard Time", "Asia/Barnaul"},
+            {"W. Mongolia Standard Time", "Asia/Hovd"},
+            {"North Asia Standard Time", "Asia/Krasnoyarsk"},
+            {"N. Central Asia Standard Time", "Asia/Novosibirsk"},
+            {"Tomsk Standard Time", "Asia/Tomsk"},
+            {"China Standard Time", "Asia/Shanghai"},
+            {"North Asia East Standard Time", "Asia/Irkutsk"},
+            {"Singapore Standard Time", "Asia/Singapore"},
+            {"W. Australia Standard Time", "Australia/Perth"},
+            {"Taipei Standard Time", "Asia/Taipei"},
+            {"Ulaanbaatar Standard Time", "Asia/Ulaanbaatar"},
+            {"Aus Central W. Standard Time", "Australia/Eucla"},
+            {"Transbaikal Standard Time", "Asia/Chita"},
+            {"Tokyo Standard Time", "Asia/Tokyo"},
+            {"North Korea Standard Time", "Asia/Pyongyang"},
+            {"Korea Standard Time", "Asia/Seoul"},
+            {"Yakutsk Standard Time", "Asia/Yakutsk"},
+            {"Cen. Australia Standard Time", "Australia/Adelaide"},
+            {"AUS Central Standard Time", "Australia/Darwin"},
+            {"E. Australia Standard Time", "Australia/Brisbane"},
+            {"AUS Eastern Standard Time", "Australia/Sydney"},
+            {"West Pacific Standard Time", "Pacific/Port_Moresby"},
+            {"Tasmania Standard Time", "Australia/Hobart"},
+            {"Vladivostok Standard Time", "Asia/Vladivostok"},
+            {"Lord Howe Standard Time", "Australia/Lord_Howe"},
+            {"Bougainville Standard Time", "Pacific/Bougainville"},
+            {"Russia Time Zone 10", "Asia/Srednekolymsk"},
+            {"Magadan Standard Time", "Asia/Magadan"},
+            {"Norfolk Standard Time", "Pacific/Norfolk"},
+            {"Sakhalin Standard Time", "Asia/Sakhalin"},
+            {"Central Pacific Standard Time", "Pacific/Guadalcanal"},
+            {"Russia Time Zone 11", "Asia/Kamchatka"},
+            {"Kamchatka Standard Time", "Asia/Kamchatka"},
+            {"New Zealand Standard Time", "Pacific/Auckland"},
+            {"UTC+12", "Etc/GMT-12"},
+            {"Fiji Standard Time", "Pacific/Fiji"},
+            {"Chatham Islands Standard Time", "Pacific/Chatham"},
+            {"UTC+13", "Etc/GMT-13"},
+            {"Tonga Standard Time", "Pacific/Tongatapu"},
+            {"Samoa Standard Time", "Pacific/Apia"},
+            {"Line Islands Standard Time", "Pacific/Kiritimati"},
+    };
+
+    private static final Map<String, ZoneId> WINDOWS_ZONES = buildWindowsZones();
+    // IANA IDs and names outside the table, each resolved (or given up on) once
+    private static final ConcurrentHashMap<String, ZoneId> OTHER_ZONES = new ConcurrentHashMap<>();
+
+    private DateTimeConverter() {
+    }
+
+    // Zone for a Windows or IANA time zone name; unknown names are treated as UTC
+    public static ZoneId zoneFor(String timeZone) {
+        if (timeZone == null || timeZone.isEmpty()) {
+            return UTC;
+        }
+        ZoneId zone = WINDOWS_ZONES.get(timeZone);
+        return zone != null ? zone : OTHER_ZONES.computeIfAbsent(timeZone, DateTimeConverter::resolveOther);
+    }
+
+    // Graph's local "2024-01-15T10:00:00.0000000"; the fraction is dropped
+    public static LocalDateTime parseGraphDateTime(String text) {
+        if (text.length() >= 19 && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+                && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            int hour = digits(text, 11, 13);
+            int minute = digits(text, 14, 16);
+            int second = digits(text, 17, 19);
+            if ((year | month | day | hour | minute | second) >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second);
+            }
+        }
+        return LocalDateTime.parse(text.length() > 19 ? text.substring(0, 19) : text);
+    }
+
+    // ISO-8601 with offset, as Google takes it in start.dateTime and end.dateTime
+    public static String toIsoOffset(LocalDateTime local, ZoneId zone) {
+        return ISO_OFFSET.format(ZonedDateTime.of(local, zone));
+    }
+
+    // The OffsetDateTime.toString() shapes Graph values end up in are read directly; others go through the ISO parser
+    public static OffsetDateTime parseOffsetDateTime(String text) {
+        OffsetDateTime parsed = parseOffsetFast(text);
+        return parsed != null ? parsed : OffsetDateTime.parse(text);
+    }
+
+    // Same text DateTimeFormatter.RFC_1123_DATE_TIME produces, for MIME Date headers
+    public static String toRfc1123(OffsetDateTime time) {
+        StringBuilder out = new StringBuilder(31);
+        out.append(DAY_NAMES[time.getDayOfWeek().ordinal()]).append(", ")
+                .append(time.getDayOfMonth()).append(' ')
+                .append(MONTH_NAMES[time.getMonthValue() - 1]).append(' ');
+        int year = time.getYear();
+        if (year >= 0 && year < 1000) {
+            out.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        out.append(year).append(' ');
+        appendTwoDigits(out, time.getHour()).append(':');
+        appendTwoDigits(out, time.getMinute()).append(':');
+        appendTwoDigits(out, time.getSecond()).append(' ');
+
+        int offsetSeconds = time.getOffset().getTotalSeconds();
+        if (offsetSeconds == 0) {
+            out.append("GMT");
+        } else {
+            int absolute = Math.abs(offsetSeconds);
+            out.append(offsetSeconds < 0 ? '-' : '+');
+            appendTwoDigits(out, absolute / 3600);
+            appendTwoDigits(out, absolute / 60 % 60);
+        }
+        return out.toString();
+    }
+
+    // MIME Date header for an ISO timestamp; the current time when there is none or it cannot be read
+    public static String mimeDate(String isoTimestamp) {
+        if (isoTimestamp != null && !isoTimestamp.isBlank()) {
+            try {
+                return toRfc1123(parseOffsetDateTime(isoTimestamp));
+            } catch (DateTimeException e) {
+                // Falls through to the current time
+            }
+        }
+        return toRfc1123(OffsetDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static ZoneId resolveOther(String timeZone) {
+        // Exchange's own names: "tzone://Microsoft/Utc", and "Custom" zones whose rules Graph does not return
+        if (timeZone.startsWith("tzone://Microsoft/")) {
+            return UTC;
+        }
+        try {
+            return ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            System.err.println("⚠️ Unknown time zone '" + timeZone + "', using UTC");
+            return UTC;
+        }
+    }
+
+    // yyyy-MM-ddTHH:mm[:ss[.fraction]] followed by Z or ±HH:mm; null for any other shape
+    static OffsetDateTime parseOffsetFast(String text) {
+        int length = text.length();
+        if (length < 17 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        int second = 0;
+        int nano = 0;
+        int pos = 16;
+
+        if (pos < length && text.charAt(pos) == ':') {
+            if (length < 19) {
+                return null;
+            }
+            second = digits(text, 17, 19);
+            pos = 19;
+            if (pos < length && text.charAt(pos) == '.') {
+                int start = ++pos;
+                while (pos < length && Character.isDigit(text.charAt(pos))) {
+                    if (pos - start < 9) {
+                        nano = nano * 10 + (text.charAt(pos) - '0');
+                    }
+                    pos++;
+                }
+                int fractionDigits = Math.min(pos - start, 9);
+                if (fractionDigits == 0) {
+                    return null;
+                }
+                for (int i = fractionDigits; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+
+        ZoneOffset offset;
+        if (pos == length - 1 && text.charAt(pos) == 'Z') {
+            offset = ZoneOffset.UTC;
+        } else if (pos == length - 6 && (text.charAt(pos) == '+' || text.charAt(pos) == '-') && text.charAt(pos + 3) == ':') {
+            int offsetHours = digits(text, pos + 1, pos + 3);
+            int offsetMinutes = digits(text, pos + 4, pos + 6);
+            if ((offsetHours | offsetMinutes) < 0) {
+                return null;
+            }
+            int sign = text.charAt(pos) == '-' ? -1 : 1;
+            try {
+                offset = ZoneOffset.ofHoursMinutes(sign * offsetHours, sign * offsetMinutes);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.of(year, month, day, hour, minute, second, nano, offset);
+        } catch (DateTimeException e) {
+            // Out-of-range fields; the ISO parser reports them properly
+            return null;
+        }
+    }
+
+    // Value of the ASCII digits in [from, to), or -1 when any of them is not a digit
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+        if (value < 10) {
+            out.append('0');
+        }
+        return out.append(value);
+    }
+
+    private static Map<String, ZoneId> buildWindowsZones() {
+        Map<String, ZoneId> zones = new HashMap<>(WINDOWS_TO_IANA.length * 2);
+        for (String[] mapping : WINDOWS_TO_IANA) {
+            try {
+                zones.put(mapping[0], ZoneId.of(mapping[1]));
+            } catch (DateTimeException e) {
+                // A tz database older than the table; the name then resolves like any unknown one
+                System.err.println("⚠️ Time zone " + mapping[1] + " not available for '" + mapping[0] + "'");
+            }
+        }
+        return Collections.unmodifiableMap(zones);
+    }
+}
@@ -0,0 +1,171 @@
+package com.unwan.migration.calendar;
+
+import com.microsoft.graph.core.DateOnly;
+import com.microsoft.graph.models.DayOfWeek;
+import com.microsoft.graph.models.PatternedRecurrence;
+import com.microsoft.graph.models.RecurrencePattern;
+import com.microsoft.graph.models.RecurrencePatternType;
+import com.microsoft.graph.models.RecurrenceRange;
+import com.microsoft.graph.models.RecurrenceRangeType;
+import com.microsoft.graph.models.WeekIndex;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecurrenceTranslatorTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final LocalDate HORIZON = LocalDate.of(2030, 1, 1);
+
+    @Test
+    void weeklySeriesWithEndDate() throws ParseException {
+        PatternedRecurrence recurrence = recurrence(
+                pattern(RecurrencePatternType.WEEKLY, 2, DayOfWeek.FRIDAY, DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY),
+                endDate("2024-01-01", "2024-03-31"));
+
+        // The last day ends at 23:59:59 Berlin time, which is already summer time on 31 March
+        assertEquals("RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE,FR;WKST=SU;UNTIL=20240331T215959Z",
+                RecurrenceTranslator.toRRule(recurrence, BERLIN));
+    }
+
+    @Test
+    void weekStartFollowsOutlook() throws ParseException {
+        RecurrencePattern pattern = pattern(RecurrencePatternType.WEEKLY, 1, DayOfWeek.TUESDAY);
+        pattern.firstDayOfWeek = DayOfWeek.MONDAY;
+
+        assertEquals("RRULE:FREQ=WEEKLY;INTERVAL=1;BYDAY=TU;WKST=MO",
+                RecurrenceTranslator.toRRule(recurrence(pattern, noEnd("2024-01-02")), BERLIN));
+    }
+
+    @Test
+    void dailySeriesWithCount() throws ParseException {
+        assertEquals("RRULE:FREQ=DAILY;INTERVAL=1;COUNT=10",
+                RecurrenceTranslator.toRRule(recurrence(pattern(RecurrencePatternType.DAILY, 1), numbered("2024-01-01", 10)), BERLIN));
+    }
+
+    @Test
+    void monthlyAndYearlyPatterns() throws ParseException {
+        RecurrencePattern absoluteMonthly = pattern(RecurrencePatternType.ABSOLUTE_MONTHLY, 1);
+        absoluteMonthly.dayOfMonth = 31;
+        assertEquals("RRULE:FREQ=MONTHLY;INTERVAL=1;BYMONTHDAY=31",
+                RecurrenceTranslator.toRRule(recurrence(absoluteMonthly, noEnd("2024-01-31")), BERLIN));
+
+        RecurrencePattern relativeMonthly = pattern(RecurrencePatternType.RELATIVE_MONTHLY, 3, DayOfWeek.TUESDAY);
+        relativeMonthly.index = WeekIndex.SECOND;
+        assertEquals("RRULE:FREQ=MONTHLY;INTERVAL=3;BYDAY=TU;BYSETPOS=2",
+                RecurrenceTranslator.toRRule(recurrence(relativeMonthly, noEnd("2024-01-09")), BERLIN));
+
+        RecurrencePattern absoluteYearly = pattern(RecurrencePatternType.ABSOLUTE_YEARLY, 1);
+        absoluteYearly.month = 2;
+        absoluteYearly.dayOfMonth = 29;
+        assertEquals("RRULE:FREQ=YEARLY;INTERVAL=1;BYMONTH=2;BYMONTHDAY=29",
+                RecurrenceTranslator.toRRule(recurrence(absoluteYearly, noEnd("2024-02-29")), BERLIN));
+
+        RecurrencePattern relativeYearly = pattern(RecurrencePatternType.RELATIVE_YEARLY, 1, DayOfWeek.MONDAY);
+        relativeYearly.month = 5;
+        relativeYearly.index = WeekIndex.LAST;
+        assertEquals("RRULE:FREQ=YEARLY;INTERVAL=1;BYMONTH=5;BYDAY=MO;BYSETPOS=-1;COUNT=5",
+                RecurrenceTranslator.toRRule(recurrence(relativeYearly, numbered("2024-05-27", 5)), BERLIN));
+    }
+
+    @Test
+    void exDateListsRemovedOccurrencesInUtc() {
+        List<LocalDate> removed = List.of(LocalDate.of(2024, 7, 10), LocalDate.of(2024, 1, 15));
+
+        assertEquals("EXDATE:20240115T083000Z,20240710T073000Z",
+                RecurrenceTranslator.toExDate(removed, LocalTime.of(9, 30), BERLIN));
+        assertNull(RecurrenceTranslator.toExDate(List.of(), LocalTime.of(9, 30), BERLIN));
+    }
+
+    @Test
+    void expandsWeeklySeriesFromItsStartDate() throws ParseException {
+        // Starts on a Wednesday: the Monday of the first week is before the series and not an occurrence
+        PatternedRecurrence recurrence = recurrence(
+                pattern(RecurrencePatternType.WEEKLY, 2, DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY),
+                numbered("2024-01-03", 4));
+
+        assertEquals(List.of(LocalDate.of(2024, 1, 3), LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 17), LocalDate.of(2024, 1, 29)),
+                RecurrenceTranslator.expand(recurrence, HORIZON, 100));
+    }
+
+    @Test
+    void expansionSkipsMonthsWithoutTheDay() throws ParseException {
+        RecurrencePattern pattern = pattern(RecurrencePatternType.ABSOLUTE_MONTHLY, 1);
+        pattern.dayOfMonth = 31;
+
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 3, 31), LocalDate.of(2024, 5, 31)),
+                RecurrenceTranslator.expand(recurrence(pattern, endDate("2024-01-31", "2024-06-30")), HORIZON, 100));
+    }
+
+    @Test
+    void expandsRelativeMonthlySeries() throws ParseException {
+        RecurrencePattern pattern = pattern(RecurrencePatternType.RELATIVE_MONTHLY, 1, DayOfWeek.FRIDAY);
+        pattern.index = WeekIndex.LAST;
+
+        assertEquals(List.of(LocalDate.of(2024, 1, 26), LocalDate.of(2024, 2, 23), LocalDate.of(2024, 3, 29)),
+                RecurrenceTranslator.expand(recurrence(pattern, numbered("2024-01-01", 3)), HORIZON, 100));
+    }
+
+    @Test
+    void expansionStopsAtHorizonAndLimit() throws ParseException {
+        PatternedRecurrence daily = recurrence(pattern(RecurrencePatternType.DAILY, 1), noEnd("2024-01-01"));
+
+        assertEquals(10, RecurrenceTranslator.expand(daily, LocalDate.of(2024, 1, 10), 100).size());
+        assertEquals(5, RecurrenceTranslator.expand(daily, HORIZON, 5).size());
+    }
+
+    @Test
+    void unsupportedPatterns() throws ParseException {
+        assertFalse(RecurrenceTranslator.isSupported(null));
+        assertFalse(RecurrenceTranslator.isSupported(new PatternedRecurrence()));
+        assertFalse(RecurrenceTranslator.isSupported(
+                recurrence(pattern(RecurrencePatternType.UNEXPECTED_VALUE, 1), noEnd("2024-01-01"))));
+        assertTrue(RecurrenceTranslator.isSupported(
+                recurrence(pattern(RecurrencePatternType.DAILY, 1), noEnd("2024-01-01"))));
+    }
+
+    private static PatternedRecurrence recurrence(RecurrencePattern pattern, RecurrenceRange range) {
+        PatternedRecurrence recurrence = new PatternedRecurrence();
+        recurrence.pattern = pattern;
+        recurrence.range = range;
+        return recurrence;
+    }
+
+    private static RecurrencePattern pattern(RecurrencePatternType type, int interval, DayOfWeek... days) {
+        RecurrencePattern pattern = new RecurrencePattern();
+        pattern.type = type;
+        pattern.interval = interval;
+        pattern.daysOfWeek = List.of(days);
+        return pattern;
+    }
+
+    private static RecurrenceRange noEnd(String startDate) throws ParseException {
+        RecurrenceRange range = new RecurrenceRange();
+        range.type = RecurrenceRangeType.NO_END;
+        range.startDate = DateOnly.parse(startDate);
+        return range;
+    }
+
+    private static RecurrenceRange endDate(String startDate, String endDate) throws ParseException {
+        RecurrenceRange range = noEnd(startDate);
+        range.type = RecurrenceRangeType.END_DATE;
+        range.endDate = DateOnly.parse(endDate);
+        return range;
+    }
+
+    private static RecurrenceRange numbered(String startDate, int occurrences) throws ParseException {
+        RecurrenceRange range = noEnd(startDate);
+        range.type = RecurrenceRangeType.NUMBERED;
+        range.numberOfOccurrences = occurrences;
+        return range;
+    }
+}
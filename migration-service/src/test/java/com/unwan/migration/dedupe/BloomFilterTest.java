@@ -0,0 +1,85 @@
+package com.unwan.migration.dedupe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int CAPACITY = 50_000;
+    private static final double RATE = 0.01;
+    private static final int PROBES = 200_000;
+
+    @Test
+    void neverForgetsAKey() {
+        BloomFilter filter = new BloomFilter(CAPACITY, RATE);
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.put("<message-" + i + "@example.com>");
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(filter.mightContain("<message-" + i + "@example.com>"));
+        }
+    }
+
+    @Test
+    void falsePositiveRateHoldsAtCapacity() {
+        BloomFilter filter = new BloomFilter(CAPACITY, RATE);
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.put("<message-" + i + "@example.com>");
+        }
+        // Keys that were already false positives add no bits and are not counted
+        assertTrue(filter.getInsertions() > CAPACITY * (1 - RATE * 2), "insertions " + filter.getInsertions());
+
+        double rate = falsePositiveRate(filter::mightContain);
+        assertTrue(rate < RATE * 1.5, "false-positive rate " + rate);
+    }
+
+    @Test
+    void countsDistinctKeysOnly() {
+        BloomFilter filter = new BloomFilter(10, RATE);
+        for (int i = 0; i < 5; i++) {
+            filter.put("same-key");
+        }
+        assertEquals(1, filter.getInsertions());
+        assertFalse(filter.isFull());
+    }
+
+    @Test
+    void scalableFilterKeepsItsRateFarPastTheInitialCapacity() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(CAPACITY / 10, RATE);
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            filter.put("<message-" + i + "@example.com>");
+        }
+        assertTrue(filter.getFilterCount() > 1, "filter never grew");
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            assertTrue(filter.mightContain("<message-" + i + "@example.com>"));
+        }
+
+        double rate = falsePositiveRate(filter::mightContain);
+        assertTrue(rate < RATE * 1.5, "false-positive rate " + rate);
+    }
+
+    @Test
+    void plainFilterDegradesPastItsCapacity() {
+        BloomFilter filter = new BloomFilter(CAPACITY / 10, RATE);
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            filter.put("<message-" + i + "@example.com>");
+        }
+        assertTrue(falsePositiveRate(filter::mightContain) > 0.5);
+    }
+
+    // Share of keys never put that the filter still reports
+    private static double falsePositiveRate(Predicate<String> mightContain) {
+        int hits = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (mightContain.test("<other-" + i + "@example.org>")) {
+                hits++;
+            }
+        }
+        return (double) hits / PROBES;
+    }
+}
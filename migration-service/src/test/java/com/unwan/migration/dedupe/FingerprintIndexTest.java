@@ -0,0 +1,112 @@
+package com.unwan.migration.dedupe;
+
+import com.unwan.migration.model.MigrationFingerprint;
+import com.unwan.migration.repository.MigrationFingerprintRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FingerprintIndexTest {
+
+    private final FingerprintIndex index = new FingerprintIndex();
+    private final MigrationFingerprintRepository repository = mock(MigrationFingerprintRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(index, "fingerprintRepository", repository);
+        ReflectionTestUtils.setField(index, "mongoTemplate", mongoTemplate);
+        when(mongoTemplate.stream(any(Query.class), eq(MigrationFingerprint.class))).thenReturn(mock(CloseableIterator.class));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(MigrationFingerprint.class)))
+                .thenReturn(mock(BulkOperations.class));
+    }
+
+    @Test
+    void newItemNeverLeavesMemoryOnceTheFilterIsLoaded() {
+        assertFalse(index.isMigrated("user-1", FingerprintIndex.MAIL, "<a@example.com>"));
+        index.markMigrated("user-1", FingerprintIndex.MAIL, "job-1", List.of("<a@example.com>"));
+        when(repository.existsById(anyString())).thenReturn(true);
+
+        assertTrue(index.isMigrated("user-1", FingerprintIndex.MAIL, "<a@example.com>"));
+        assertFalse(index.isMigrated("user-1", FingerprintIndex.MAIL, "<b@example.com>"));
+        verify(repository, times(1)).existsById(anyString());
+        verify(repository, times(1)).countByUserIdAndWorkload("user-1", FingerprintIndex.MAIL);
+    }
+
+    @Test
+    void concurrentCallersWaitForOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.countByUserIdAndWorkload("user-1", FingerprintIndex.MAIL)).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return 0L;
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> checks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String key = "<" + i + "@example.com>";
+                checks.add(callers.submit(() -> index.isMigrated("user-1", FingerprintIndex.MAIL, key)));
+            }
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+            // Another user's filter loads while the first one is still streaming
+            assertFalse(callers.submit(() -> index.isMigrated("user-2", FingerprintIndex.MAIL, "<x@example.com>"))
+                    .get(10, TimeUnit.SECONDS));
+
+            release.countDown();
+            for (Future<Boolean> check : checks) {
+                assertFalse(check.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        verify(repository, times(1)).countByUserIdAndWorkload("user-1", FingerprintIndex.MAIL);
+    }
+
+    @Test
+    void failedLoadFallsBackToMongoUntilReleased() {
+        when(repository.countByUserIdAndWorkload("user-1", FingerprintIndex.CONTACTS))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(0L);
+        when(repository.existsById(MigrationFingerprint.idFor("user-1", FingerprintIndex.CONTACTS, "hash:1"))).thenReturn(true);
+
+        assertTrue(index.isMigrated("user-1", FingerprintIndex.CONTACTS, "hash:1"));
+        assertFalse(index.isMigrated("user-1", FingerprintIndex.CONTACTS, "hash:2"));
+        index.markMigrated("user-1", FingerprintIndex.CONTACTS, "job-1", List.of("hash:3"));
+        verify(repository, times(2)).existsById(anyString());
+        verify(repository, times(1)).countByUserIdAndWorkload("user-1", FingerprintIndex.CONTACTS);
+
+        // The next job loads the filter again
+        index.release("user-1");
+        assertFalse(index.isMigrated("user-1", FingerprintIndex.CONTACTS, "hash:4"));
+        verify(repository, times(2)).countByUserIdAndWorkload("user-1", FingerprintIndex.CONTACTS);
+        verify(repository, never()).existsById(MigrationFingerprint.idFor("user-1", FingerprintIndex.CONTACTS, "hash:4"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.unwan.migration.drive;
+
+import com.unwan.migration.model.DriveFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriveSpoolTest {
+
+    private static final int KIB = 1024;
+
+    @TempDir
+    Path dir;
+
+    // 1 MiB quota: two 400 KiB copies fit, a third does not
+    private final DriveSpool spool = new DriveSpool();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(spool, "spoolDir", dir.toString());
+        ReflectionTestUtils.setField(spool, "quotaMb", 1L);
+        spool.start();
+    }
+
+    @Test
+    void leastRecentlyUsedCopyMakesRoom() throws IOException {
+        DriveSpool.Entry a = spooled(file("a", 400 * KIB));
+        DriveSpool.Entry b = spooled(file("b", 400 * KIB));
+        // Reading a leaves b as the least recently used copy
+        spool.release(spool.acquire(file("a", 400 * KIB)), false);
+
+        assertNotNull(spool.reserve(file("c", 400 * KIB)));
+
+        assertNull(spool.acquire(file("b", 400 * KIB)));
+        assertFalse(Files.exists(b.getPath()));
+        assertSame(a, spool.acquire(file("a", 400 * KIB)));
+        assertEquals(1L, spool.stats().get("evictions"));
+        assertEquals(800L * KIB, spool.stats().get("usedBytes"));
+    }
+
+    @Test
+    void copiesBeingReadOrWrittenAreNeverEvicted() throws IOException {
+        spooled(file("a", 400 * KIB));
+        assertNotNull(spool.acquire(file("a", 400 * KIB)));
+        assertNotNull(spool.reserve(file("b", 400 * KIB)));
+
+        assertNull(spool.reserve(file("c", 400 * KIB)));
+
+        assertEquals(1L, spool.stats().get("rejected"));
+        assertEquals(0L, spool.stats().get("evictions"));
+    }
+
+    @Test
+    void rangedDownloadCountsAgainstTheQuotaUntilUploaded() throws IOException {
+        DriveFile large = file("large", 700 * KIB);
+        DriveSpool.Entry copy = spool.reserveForUpload(large);
+        assertNotNull(copy);
+        spool.fill(copy, new ByteArrayInputStream(new byte[700 * KIB]));
+        spool.complete(copy);
+
+        // Pinned by its upload, so it cannot be evicted for a file spooled ahead
+        assertNull(spool.reserve(file("next", 400 * KIB)));
+
+        spool.release(copy, true);
+        assertFalse(Files.exists(copy.getPath()));
+        assertEquals(0L, spool.stats().get("usedBytes"));
+        assertNotNull(spool.reserve(file("next", 400 * KIB)));
+    }
+
+    @Test
+    void failedUploadKeepsItsCopyForTheRetry() throws IOException {
+        DriveFile large = file("large", 700 * KIB);
+        DriveSpool.Entry copy = spool.reserveForUpload(large);
+        spool.fill(copy, new ByteArrayInputStream(new byte[700 * KIB]));
+        spool.complete(copy);
+        spool.release(copy, false);
+
+        assertSame(copy, spool.acquire(large));
+        assertTrue(Files.exists(copy.getPath()));
+        assertEquals(1L, spool.stats().get("hits"));
+    }
+
+    @Test
+    void fileThatCanNeverFitIsStreamed() {
+        assertNull(spool.reserveForUpload(file("huge", 2 * 1024 * KIB)));
+        assertEquals(0L, spool.stats().get("usedBytes"));
+    }
+
+    private DriveSpool.Entry spooled(DriveFile file) throws IOException {
+        DriveSpool.Entry entry = spool.reserve(file);
+        spool.fill(entry, new ByteArrayInputStream(new byte[(int) file.getSize()]));
+        spool.complete(entry);
+        return entry;
+    }
+
+    private static DriveFile file(String id, int size) {
+        DriveFile file = new DriveFile();
+        file.setId(id);
+        file.setName(id + ".bin");
+        file.setModifiedTime("2024-05-01T10:00:00Z");
+        file.setSize(size);
+        return file;
+    }
+}
@@ -0,0 +1,185 @@
+package com.unwan.migration.drive;
+
+import com.unwan.migration.graph.GraphClientFactory;
+import com.unwan.migration.model.DriveFile;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangedDownloaderTest {
+
+    private static final int MIB = 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private final RangedDownloader downloader = new RangedDownloader();
+    // Range header of every request Graph received
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private byte[] content;
+    private Handler handler;
+
+    @BeforeEach
+    void setUp() {
+        GraphClientFactory graphClients = new GraphClientFactory();
+        ReflectionTestUtils.setField(graphClients, "sharedHttpClient",
+                new OkHttpClient.Builder().addInterceptor(chain -> {
+                    Request request = chain.request();
+                    String range = request.header("Range");
+                    ranges.add(range);
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    return handler.handle(request, Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]), ranges.size());
+                }).build());
+        ReflectionTestUtils.setField(downloader, "graphClients", graphClients);
+        ReflectionTestUtils.setField(downloader, "downloadThreads", 4);
+        ReflectionTestUtils.setField(downloader, "maxSegments", 8);
+        ReflectionTestUtils.setField(downloader, "retryBackoffMillis", 1L);
+        downloader.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloader.stop();
+    }
+
+    @Test
+    void downloadsSegmentsInParallelAndVerifiesBothHashes() throws Exception {
+        DriveFile file = file(20 * MIB);
+        handler = (request, start, end, call) -> partial(request, start, end + 1);
+
+        Path target = dir.resolve("large.bin");
+        downloader.download(file, "token", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(List.of("bytes=0-10485759", "bytes=10485760-20971519"), sorted(ranges));
+    }
+
+    @Test
+    void shortBodyIsRequestedAgainFromWhereItStopped() throws Exception {
+        DriveFile file = file(MIB);
+        // The first response closes cleanly after 300000 bytes
+        handler = (request, start, end, call) -> partial(request, start, call == 1 ? 300_000 : end + 1);
+
+        Path target = dir.resolve("short.bin");
+        downloader.download(file, "token", target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(List.of("bytes=0-1048575", "bytes=300000-1048575"), ranges);
+    }
+
+    @Test
+    void endlessShortBodiesFailAfterMaxAttempts() {
+        DriveFile file = file(MIB);
+        handler = (request, start, end, call) -> partial(request, start, start);
+
+        IOException error = assertThrows(IOException.class, () -> downloader.download(file, "token", dir.resolve("empty.bin")));
+
+        assertTrue(error.getMessage().contains("short read"), error.getMessage());
+        assertEquals(3, ranges.size());
+    }
+
+    @Test
+    void responseThatIgnoresTheRangeFails() {
+        DriveFile file = file(MIB);
+        // 200 with the whole file: writing it at the segment offset would corrupt the copy
+        handler = (request, start, end, call) -> response(request, 200, content);
+
+        IOException error = assertThrows(IOException.class, () -> downloader.download(file, "token", dir.resolve("full.bin")));
+
+        assertTrue(error.getMessage().contains("returned 200"), error.getMessage());
+        assertEquals(3, ranges.size());
+    }
+
+    @Test
+    void contentThatDoesNotMatchGraphsHashIsRejected() {
+        DriveFile wrongSha1 = file(MIB);
+        wrongSha1.setSha1Hash("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+        DriveFile wrongQuickXor = file(MIB);
+        wrongQuickXor.setQuickXorHash("AAAAAAAAAAAAAAAAAAAAAAAAAAA=");
+        handler = (request, start, end, call) -> partial(request, start, end + 1);
+
+        IOException sha1 = assertThrows(IOException.class, () -> downloader.download(wrongSha1, "token", dir.resolve("a.bin")));
+        IOException quickXor = assertThrows(IOException.class, () -> downloader.download(wrongQuickXor, "token", dir.resolve("b.bin")));
+
+        assertTrue(sha1.getMessage().contains("sha1Hash mismatch"), sha1.getMessage());
+        assertTrue(quickXor.getMessage().contains("quickXorHash mismatch"), quickXor.getMessage());
+    }
+
+    private DriveFile file(int size) {
+        content = new byte[size];
+        new Random(size).nextBytes(content);
+        QuickXorHash quickXor = new QuickXorHash();
+        quickXor.update(content, 0, size);
+
+        DriveFile file = new DriveFile();
+        file.setName("video.mp4");
+        file.setDownloadUrl("item-1");
+        file.setSize(size);
+        file.setQuickXorHash(quickXor.digestBase64());
+        file.setSha1Hash(sha1Hex(content));
+        return file;
+    }
+
+    // 206 carrying content[from, to)
+    private Response partial(Request request, int from, int to) {
+        return response(request, 206, Arrays.copyOfRange(content, from, to));
+    }
+
+    private static Response response(Request request, int code, byte[] body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 206 ? "Partial Content" : "OK")
+                .body(ResponseBody.create(MediaType.parse("application/octet-stream"), body))
+                .build();
+    }
+
+    private static String sha1Hex(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        // call counts the requests so far, this one included
+        Response handle(Request request, int start, int end, int call) throws IOException;
+    }
+}
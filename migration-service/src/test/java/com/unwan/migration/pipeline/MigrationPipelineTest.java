@@ -0,0 +1,389 @@
+package com.unwan.migration.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationPipelineTest {
+
+    private final List<SourceCursor> commits = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> committedCounts = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void uploadsEveryItemExactlyOnceAcrossWorkers() throws InterruptedException {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        Set<String> uploadThreads = ConcurrentHashMap.newKeySet();
+
+        PipelineStats stats = MigrationPipeline.<String, String>builder("parallel")
+                .source(pages(5, 7))
+                .transform(String::toUpperCase, 2)
+                .upload(batch -> {
+                    uploadThreads.add(Thread.currentThread().getName());
+                    written.addAll(batch);
+                    return batch.size();
+                }, 3, 3)
+                .build()
+                .run();
+
+        assertEquals(35, stats.getFetched());
+        assertEquals(35, stats.getTransformed());
+        assertEquals(35, stats.getUploaded());
+        assertEquals(35, stats.getProcessed());
+        assertEquals(35, written.size());
+        assertEquals(35, Set.copyOf(written).size());
+        assertTrue(written.contains("P4-6"));
+    }
+
+    @Test
+    void slowUploadStopsTheSourceOnceQueuesAreFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger emitted = new AtomicInteger();
+
+        MigrationPipeline<String, String> pipeline = MigrationPipeline.<String, String>builder("backpressure")
+                .source(sink -> {
+                    for (int page = 0; page < 20; page++) {
+                        sink.emit(List.of("p" + page));
+                        emitted.incrementAndGet();
+                    }
+                })
+                .upload(batch -> {
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                    return batch.size();
+                }, 1, 1)
+                .queueCapacity(1)
+                .build();
+
+        Thread runner = new Thread(() -> {
+            try {
+                pipeline.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        runner.start();
+        Thread.sleep(300);
+
+        // One page uploading, one in each queue and one held by the transformer
+        assertTrue(emitted.get() <= 5, "source ran ahead by " + emitted.get() + " pages");
+        release.countDown();
+        runner.join(10_000);
+        assertEquals(20, pipeline.getStats().getUploaded());
+    }
+
+    @Test
+    void cancellationStopsTheSourceAndSkipsQueuedChunks() throws InterruptedException {
+        AtomicInteger uploads = new AtomicInteger();
+
+        PipelineStats stats = MigrationPipeline.<String, String>builder("cancel")
+                .source(pages(20, 2))
+                .upload(batch -> {
+                    uploads.incrementAndGet();
+                    return batch.size();
+                }, 2, 1)
+                .queueCapacity(1)
+                .cancelWhen(() -> uploads.get() >= 2)
+                .build()
+                .run();
+
+        assertTrue(stats.getFetched() < 40, "source kept going: " + stats);
+        assertEquals(2L * uploads.get(), stats.getUploaded());
+    }
+
+    @Test
+    void commitsPagesInSourceOrderWhenUploadsFinishOutOfOrder() throws InterruptedException {
+        // The first page's upload is held until every later page has been uploaded
+        CountDownLatch laterPagesUploaded = new CountDownLatch(4);
+        Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        List<String> earlyCommits = Collections.synchronizedList(new ArrayList<>());
+
+        PipelineStats stats = MigrationPipeline.<String, String>builder("ordered")
+                .source(pages(5, 2))
+                .upload(batch -> {
+                    if (batch.get(0).startsWith("p0-")) {
+                        assertTrue(laterPagesUploaded.await(10, TimeUnit.SECONDS));
+                    } else {
+                        laterPagesUploaded.countDown();
+                    }
+                    uploaded.addAll(batch);
+                    return batch.size();
+                }, 2, 4)
+                .onCheckpoint((cursor, committed) -> {
+                    if (!uploaded.contains("p0-1")) {
+                        earlyCommits.add(cursor.getLastItemId());
+                    }
+                    record(cursor, committed);
+                })
+                .build()
+                .run();
+
+        // Nothing is committed while the first page is still uploading
+        assertTrue(earlyCommits.isEmpty(), "committed before page 0: " + earlyCommits);
+        assertEquals(10, stats.getUploaded());
+        assertEquals("p4-1", last(commits).getLastItemId());
+        assertEquals(10L, (long) last(committedCounts));
+        assertInSourceOrder();
+    }
+
+    @Test
+    void pageSplitAcrossChunksCommitsOnceEveryChunkIsUploaded() throws InterruptedException {
+        MigrationPipeline.<String, String>builder("chunks")
+                .source(pages(2, 5))
+                .upload(List::size, 2, 3)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals("p1-4", last(commits).getLastItemId());
+        assertEquals(10L, (long) last(committedCounts));
+        assertInSourceOrder();
+    }
+
+    @Test
+    void slowCheckpointWriteDoesNotStallUploads() throws InterruptedException {
+        // The first checkpoint write hangs until every page has been uploaded
+        CountDownLatch allUploaded = new CountDownLatch(6);
+        AtomicInteger uploadedBeforeFirstCommitReturned = new AtomicInteger();
+
+        PipelineStats stats = MigrationPipeline.<String, String>builder("slow-checkpoint")
+                .source(pages(6, 1))
+                .upload(batch -> {
+                    allUploaded.countDown();
+                    return batch.size();
+                }, 1, 2)
+                .onCheckpoint((cursor, committed) -> {
+                    if (commits.isEmpty()) {
+                        try {
+                            allUploaded.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        uploadedBeforeFirstCommitReturned.set(6 - (int) allUploaded.getCount());
+                    }
+                    record(cursor, committed);
+                })
+                .build()
+                .run();
+
+        assertEquals(6, uploadedBeforeFirstCommitReturned.get());
+        assertEquals(6, stats.getUploaded());
+        assertEquals("p5-0", last(commits).getLastItemId());
+        assertEquals(6L, (long) last(committedCounts));
+        assertInSourceOrder();
+    }
+
+    @Test
+    void failedUploadsAreCounted() throws InterruptedException {
+        PipelineStats stats = MigrationPipeline.<String, String>builder("upload-failure")
+                .source(pages(4, 2))
+                .upload(batch -> {
+                    if (batch.get(0).startsWith("p0-")) {
+                        throw new IllegalStateException("quota");
+                    }
+                    // One item of the third page is rejected by the target
+                    return batch.get(0).startsWith("p2-") ? batch.size() - 1 : batch.size();
+                }, 2, 2)
+                .build()
+                .run();
+
+        assertEquals(3, stats.getFailed());
+        assertEquals(5, stats.getUploaded());
+        assertEquals(8, stats.getProcessed());
+    }
+
+    @Test
+    void failedUploadHoldsBackItsPageAndEveryLaterOne() throws InterruptedException {
+        PipelineStats stats = MigrationPipeline.<String, String>builder("upload-failure")
+                .source(pages(5, 2))
+                .upload(batch -> batch.get(0).startsWith("p2-") ? batch.size() - 1 : batch.size(), 2, 2)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals(1, stats.getFailed());
+        assertEquals(9, stats.getUploaded());
+        assertEquals("p1-1", last(commits).getLastItemId());
+        assertEquals(4L, (long) last(committedCounts));
+        assertInSourceOrder();
+    }
+
+    @Test
+    void throwingUploaderFailsTheWholeChunk() throws InterruptedException {
+        PipelineStats stats = MigrationPipeline.<String, String>builder("upload-exception")
+                .source(pages(3, 2))
+                .upload(batch -> {
+                    if (batch.get(0).startsWith("p0-")) {
+                        throw new IllegalStateException("quota");
+                    }
+                    return batch.size();
+                }, 2, 2)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals(2, stats.getFailed());
+        assertTrue(commits.isEmpty(), "committed past a failed first page: " + commits);
+    }
+
+    @Test
+    void transformFailureDropsOnlyThatItem() throws InterruptedException {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        PipelineStats stats = MigrationPipeline.<String, String>builder("transform-failure")
+                .source(pages(3, 2))
+                .transform(item -> {
+                    if (item.equals("p1-0")) {
+                        throw new IllegalArgumentException("unreadable");
+                    }
+                    return item.toUpperCase();
+                }, 2)
+                .upload(batch -> {
+                    written.addAll(batch);
+                    return batch.size();
+                }, 2, 2)
+                .build()
+                .run();
+
+        assertEquals(1, stats.getFailed());
+        assertEquals(5, stats.getUploaded());
+        assertEquals(List.of("P0-0", "P0-1", "P1-1", "P2-0", "P2-1"), sorted(written));
+    }
+
+    @Test
+    void transformFailureHoldsBackItsPage() throws InterruptedException {
+        PipelineStats stats = MigrationPipeline.<String, String>builder("transform-failure")
+                .source(pages(3, 2))
+                .transform(item -> {
+                    if (item.equals("p1-0")) {
+                        throw new IllegalArgumentException("unreadable");
+                    }
+                    return item.toUpperCase();
+                }, 2)
+                .upload(List::size, 2, 2)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals(1, stats.getFailed());
+        assertEquals(5, stats.getUploaded());
+        assertEquals("p0-1", last(commits).getLastItemId());
+        assertEquals(2L, (long) last(committedCounts));
+    }
+
+    @Test
+    void skippedItemsDoNotHoldBackTheCheckpoint() throws InterruptedException {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        PipelineStats stats = MigrationPipeline.<String, String>builder("skips")
+                .source(pages(3, 2))
+                // Every page's first item is already in the target
+                .transform(item -> item.endsWith("-0") ? null : item, 1)
+                .upload(batch -> {
+                    written.addAll(batch);
+                    return batch.size();
+                }, 2, 1)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals(3, stats.getSkipped());
+        assertEquals(3, stats.getUploaded());
+        assertEquals(6, stats.getProcessed());
+        assertEquals(List.of("p0-1", "p1-1", "p2-1"), sorted(written));
+        assertEquals("p2-1", last(commits).getLastItemId());
+        assertEquals(6L, (long) last(committedCounts));
+    }
+
+    @Test
+    void largeItemLaneUploadsEverything() throws InterruptedException {
+        Set<String> largeThreads = ConcurrentHashMap.newKeySet();
+        Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        PipelineStats stats = MigrationPipeline.<String, String>builder("lanes")
+                .source(pages(6, 4))
+                .upload(batch -> {
+                    if (batch.stream().anyMatch(item -> item.startsWith("p3-"))) {
+                        largeThreads.add(Thread.currentThread().getName());
+                    }
+                    uploaded.addAll(batch);
+                    return batch.size();
+                }, 4, 3)
+                .largeItemLane(item -> item.startsWith("p3-"), 1)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals(24, stats.getUploaded());
+        assertEquals(24, uploaded.size());
+        assertEquals(1, largeThreads.size(), "large chunks went to " + largeThreads);
+        assertEquals(24L, (long) last(committedCounts));
+    }
+
+    @Test
+    void sourceErrorIsReportedAndEmittedPagesStillCommit() throws InterruptedException {
+        PipelineStats stats = MigrationPipeline.<String, String>builder("source-error")
+                .source(sink -> {
+                    sink.emit(List.of("p0-0", "p0-1"), SourceCursor.page("inbox", "next-1", "p0-1"));
+                    throw new IllegalStateException("Graph unavailable");
+                })
+                .upload(List::size, 2, 1)
+                .onCheckpoint(this::record)
+                .build()
+                .run();
+
+        assertEquals("Graph unavailable", stats.getSourceError().getMessage());
+        assertEquals(2, stats.getUploaded());
+        assertEquals("next-1", last(commits).getPageLink());
+    }
+
+    // pageCount pages of pageSize items named "p<page>-<item>", each with the cursor of its last item
+    private static MigrationPipeline.Source<String> pages(int pageCount, int pageSize) {
+        return sink -> {
+            for (int page = 0; page < pageCount; page++) {
+                List<String> items = new ArrayList<>();
+                for (int item = 0; item < pageSize; item++) {
+                    items.add("p" + page + "-" + item);
+                }
+                String nextLink = page + 1 < pageCount ? "next-" + (page + 1) : null;
+                sink.emit(items, SourceCursor.page("inbox", nextLink, items.get(items.size() - 1)));
+            }
+        };
+    }
+
+    private void record(SourceCursor cursor, long committed) {
+        commits.add(cursor);
+        committedCounts.add(committed);
+    }
+
+    private void assertInSourceOrder() {
+        List<String> order = new ArrayList<>();
+        for (SourceCursor cursor : commits) {
+            order.add(cursor.getLastItemId());
+        }
+        assertEquals(sorted(order), order);
+        assertEquals(sortedLongs(committedCounts), committedCounts);
+    }
+
+    private static <T> T last(List<T> list) {
+        assertTrue(!list.isEmpty(), "nothing was committed");
+        return list.get(list.size() - 1);
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static List<Long> sortedLongs(List<Long> values) {
+        List<Long> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,187 @@
+package com.unwan.migration.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveRateLimiterTest {
+
+    // GMAIL starts at 10 calls/s with a window of 4 (half of its 8) and tops out at 50 calls/s
+    private final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("user", ApiQuota.GMAIL);
+
+    @Test
+    void successRaisesTheRateAdditively() throws InterruptedException {
+        complete(200);
+        assertEquals(10.1, limiter.getCurrentRate(), 1e-9);
+        complete(200);
+        assertEquals(10.1 + 1 / 10.1, limiter.getCurrentRate(), 1e-9);
+    }
+
+    @Test
+    void successesWidenTheConcurrencyWindowOneSlotAtATime() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            complete(200);
+        }
+        assertEquals(4, limiter.snapshot().get("concurrencyLimit"));
+        complete(200);
+        assertEquals(5, limiter.snapshot().get("concurrencyLimit"));
+    }
+
+    @Test
+    void throttleHalvesRateAndWindowAndBlocksCallers() throws InterruptedException {
+        limiter.acquire();
+        limiter.release(429, 60_000);
+
+        assertEquals(5.0, limiter.getCurrentRate(), 1e-9);
+        assertEquals(2, limiter.snapshot().get("concurrencyLimit"));
+        assertEquals(true, limiter.snapshot().get("blocked"));
+        assertEquals(1L, limiter.snapshot().get("throttles"));
+    }
+
+    @Test
+    void serverErrorsSlowDownLessThanThrottling() throws InterruptedException {
+        limiter.acquire();
+        limiter.release(500, 0);
+
+        assertEquals(7.5, limiter.getCurrentRate(), 1e-9);
+        assertEquals(4, limiter.snapshot().get("concurrencyLimit"));
+        assertEquals(1L, limiter.snapshot().get("errors"));
+    }
+
+    @Test
+    void clientErrorsDoNotChangeTheRate() throws InterruptedException {
+        complete(404);
+        assertEquals(10.0, limiter.getCurrentRate(), 1e-9);
+        assertEquals(false, limiter.snapshot().get("blocked"));
+    }
+
+    @Test
+    void rateStaysWithinItsBounds() throws InterruptedException {
+        AdaptiveRateLimiter throttled = new AdaptiveRateLimiter("user", ApiQuota.PEOPLE);
+        for (int i = 0; i < 20; i++) {
+            throttled.release(429, 1);
+        }
+        assertEquals(0.2, throttled.getCurrentRate(), 1e-9);
+        assertEquals(1, throttled.snapshot().get("concurrencyLimit"));
+
+        for (int i = 0; i < 5000; i++) {
+            limiter.release(200, 0);
+        }
+        assertEquals(ApiQuota.GMAIL.getMaxRate(), limiter.getCurrentRate(), 1e-9);
+        assertEquals(ApiQuota.GMAIL.getMaxConcurrency(), limiter.snapshot().get("concurrencyLimit"));
+    }
+
+    @Test
+    void acquireWaitsForRetryAfter() throws InterruptedException {
+        limiter.acquire();
+        limiter.release(429, 300);
+
+        long start = System.nanoTime();
+        limiter.acquire();
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        limiter.release(200, 0);
+
+        assertTrue(waitedMillis >= 250, "waited " + waitedMillis + " ms");
+    }
+
+    @Test
+    void acquireWaitsForAFreeSlot() throws InterruptedException {
+        AdaptiveRateLimiter single = new AdaptiveRateLimiter("user", ApiQuota.PEOPLE);
+        single.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                single.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS), "second caller got past a window of one");
+        single.release(200, 0);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    @Test
+    void callRetriesServerErrorsAndReturnsTheFirstSuccess() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        ResponseEntity<String> response = limiter.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return ResponseEntity.ok("done");
+        }, 3);
+
+        assertEquals("done", response.getBody());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void callTreatsRateLimitExceeded403AsThrottling() throws InterruptedException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Retry-After", "1");
+        byte[] body = "{\"error\":{\"errors\":[{\"reason\":\"userRateLimitExceeded\"}]}}".getBytes(StandardCharsets.UTF_8);
+
+        AtomicInteger attempts = new AtomicInteger();
+        limiter.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw HttpClientErrorException.create(HttpStatus.FORBIDDEN, "Forbidden", headers, body, StandardCharsets.UTF_8);
+            }
+            return ResponseEntity.ok("done");
+        }, 3);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1L, limiter.snapshot().get("throttles"));
+    }
+
+    @Test
+    void callDoesNotRetryClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(HttpClientErrorException.class, () -> limiter.call(() -> {
+            attempts.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }, 3));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void callGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ResourceAccessException.class, () -> limiter.call(() -> {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("connection reset");
+        }, 2));
+        assertEquals(2, attempts.get());
+        assertEquals(0, limiter.snapshot().get("inFlight"));
+    }
+
+    @Test
+    void retryAfterIsReadInSeconds() {
+        assertEquals(3000, AdaptiveRateLimiter.parseRetryAfterMillis("3"));
+        assertEquals(0, AdaptiveRateLimiter.parseRetryAfterMillis(null));
+        assertEquals(0, AdaptiveRateLimiter.parseRetryAfterMillis("Wed, 21 Oct 2026 07:28:00 GMT"));
+    }
+
+    private void complete(int status) throws InterruptedException {
+        limiter.acquire();
+        limiter.release(status, 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.MigrationRequest;
+import com.unwan.migration.pipeline.SourceCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CheckpointServiceTest {
+
+    private final CheckpointService checkpoints = new CheckpointService();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MigrationRequest request = new MigrationRequest("user@example.com", "user-1", "all",
+            "outlook-token", "gmail-token", "user-token");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(checkpoints, "mongoTemplate", mongoTemplate);
+    }
+
+    @Test
+    void resumeTokenIsWrittenOncePerWorkload() {
+        checkpoints.commit(request, "job-1", "mail", cursor("m1"), 100);
+        checkpoints.commit(request, "job-1", "mail", cursor("m2"), 200);
+        checkpoints.commit(request, "job-1", "contacts", cursor("c1"), 50);
+
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), any(Update.class), eq("migration_jobs"));
+    }
+
+    @Test
+    void completedWorkloadAndEndedJobAreForgotten() {
+        checkpoints.commit(request, "job-1", "mail", cursor("m1"), 100);
+        checkpoints.complete(request, "job-1", "mail", 100);
+        assertTrue(resumeTokens().isEmpty(), "completed workload still tracked: " + resumeTokens());
+
+        checkpoints.commit(request, "job-1", "contacts", cursor("c1"), 50);
+        checkpoints.commit(request, "job-2", "mail", cursor("m1"), 10);
+        checkpoints.release("job-1");
+
+        assertEquals(Map.of("job-2", "job-2:mail"), resumeTokens());
+    }
+
+    @Test
+    void finishedJobsDoNotAccumulate() {
+        for (int job = 0; job < 1000; job++) {
+            String jobId = "job-" + job;
+            checkpoints.commit(request, jobId, "drive", cursor("d1"), 1);
+            checkpoints.release(jobId);
+        }
+
+        assertTrue(resumeTokens().isEmpty(), resumeTokens().size() + " jobs still tracked");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> resumeTokens() {
+        return (Map<String, String>) ReflectionTestUtils.getField(checkpoints, "resumeTokens");
+    }
+
+    private static SourceCursor cursor(String lastItemId) {
+        return SourceCursor.page("inbox", "next-" + lastItemId, lastItemId);
+    }
+}
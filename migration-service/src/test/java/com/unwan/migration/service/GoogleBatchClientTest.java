@@ -0,0 +1,207 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class GoogleBatchClientTest {
+
+    private static final String BATCH_URL = "https://www.googleapis.com/batch/calendar/v3";
+    private static final String RESPONSE_BOUNDARY = "batch_response_abc";
+
+    private final GoogleBatchClient client = new GoogleBatchClient();
+    private MockRestServiceServer server;
+    private final List<String> requestBodies = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        ReflectionTestUtils.setField(client, "restTemplate", restTemplate);
+    }
+
+    @Test
+    void buildsOneApplicationHttpPartPerCall() {
+        expectBatch(multipart(part(0, 200, "{\"id\":\"a\"}", null), part(1, 204, "", null)));
+
+        List<GoogleBatchClient.BatchPart> parts = List.of(
+                GoogleBatchClient.BatchPart.post("/calendar/v3/calendars/primary/events/import", "{\"summary\":\"Standup\"}"),
+                new GoogleBatchClient.BatchPart("DELETE", "/calendar/v3/calendars/primary/events/abc", null));
+        client.execute(BATCH_URL, "token-1", parts);
+        server.verify();
+
+        String body = requestBodies.get(0).replace("\r\n", "\n");
+        String boundary = body.substring(2, body.indexOf('\n'));
+        assertTrue(boundary.startsWith("batch_"), boundary);
+        assertEquals("--" + boundary + "\n"
+                + "Content-Type: application/http\n"
+                + "Content-ID: <item-0>\n"
+                + "\n"
+                + "POST /calendar/v3/calendars/primary/events/import\n"
+                + "Content-Type: application/json; charset=UTF-8\n"
+                + "\n"
+                + "{\"summary\":\"Standup\"}\n"
+                + "--" + boundary + "\n"
+                + "Content-Type: application/http\n"
+                + "Content-ID: <item-1>\n"
+                + "\n"
+                + "DELETE /calendar/v3/calendars/primary/events/abc\n"
+                + "\n"
+                + "--" + boundary + "--\n", body);
+        assertTrue(requestBodies.get(0).contains("\r\n"), "parts must be CRLF-delimited");
+    }
+
+    @Test
+    void mapsResponsePartsBackByContentId() {
+        expectBatch(multipart(
+                part(2, 201, "{\"id\":\"c\"}", null),
+                part(0, 429, "{\"error\":{\"code\":429}}", "7"),
+                part(1, 200, "{\"id\":\"b\"}", null)));
+
+        List<GoogleBatchClient.BatchResult> results = client.execute(BATCH_URL, "token", posts(3));
+
+        assertEquals(429, results.get(0).getStatus());
+        assertTrue(results.get(0).isThrottled());
+        assertEquals(7000, results.get(0).getRetryAfterMillis());
+        assertEquals(200, results.get(1).getStatus());
+        assertEquals("{\"id\":\"b\"}", results.get(1).getBody());
+        assertEquals(201, results.get(2).getStatus());
+        assertEquals("{\"id\":\"c\"}", results.get(2).getBody());
+    }
+
+    @Test
+    void missingPartsFailWithARetryableStatus() {
+        expectBatch(multipart(part(0, 200, "{}", null)));
+
+        List<GoogleBatchClient.BatchResult> results = client.execute(BATCH_URL, "token", posts(2));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(0, results.get(1).getStatus());
+        assertTrue(results.get(1).isRetryable());
+    }
+
+    @Test
+    void rateLimitExceeded403IsThrottledButOther4xxAreFinal() {
+        expectBatch(multipart(
+                part(0, 403, "{\"error\":{\"errors\":[{\"reason\":\"rateLimitExceeded\"}]}}", null),
+                part(1, 403, "{\"error\":{\"errors\":[{\"reason\":\"forbidden\"}]}}", null),
+                part(2, 400, "{\"error\":{\"code\":400}}", null)));
+
+        List<GoogleBatchClient.BatchResult> results = client.execute(BATCH_URL, "token", posts(3));
+
+        assertTrue(results.get(0).isRetryable());
+        assertFalse(results.get(1).isRetryable());
+        assertFalse(results.get(2).isRetryable());
+    }
+
+    @Test
+    void rejectedBatchFailsEveryPart() {
+        server.expect(requestTo(BATCH_URL)).andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+
+        List<GoogleBatchClient.BatchResult> results = client.execute(BATCH_URL, "token", posts(3));
+
+        assertEquals(3, results.size());
+        for (GoogleBatchClient.BatchResult result : results) {
+            assertEquals(401, result.getStatus());
+        }
+    }
+
+    @Test
+    void refusesMoreCallsThanGoogleAccepts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> client.execute(BATCH_URL, "token", posts(GoogleBatchClient.MAX_BATCH_SIZE + 1)));
+    }
+
+    @Test
+    void retriesOnlyTheFailedParts() throws InterruptedException {
+        expectBatch(multipart(part(0, 200, "{\"id\":\"a\"}", null), part(1, 500, "oops", null), part(2, 200, "{\"id\":\"c\"}", null)));
+        expectBatch(multipart(part(0, 200, "{\"id\":\"b\"}", null)));
+
+        List<GoogleBatchClient.BatchPart> parts = posts(3);
+        List<GoogleBatchClient.BatchResult> results = client.executeWithRetry(
+                BATCH_URL, "token", parts, 3, new AdaptiveRateLimiter("user", ApiQuota.CALENDAR));
+        server.verify();
+
+        assertEquals(List.of("{\"id\":\"a\"}", "{\"id\":\"b\"}", "{\"id\":\"c\"}"),
+                List.of(results.get(0).getBody(), results.get(1).getBody(), results.get(2).getBody()));
+        // The second request carried only the failed call
+        assertTrue(requestBodies.get(1).contains(parts.get(1).getBody()));
+        assertFalse(requestBodies.get(1).contains(parts.get(0).getBody()));
+        assertFalse(requestBodies.get(1).contains(parts.get(2).getBody()));
+    }
+
+    @Test
+    void stopsRetryingAfterMaxAttempts() throws InterruptedException {
+        expectBatch(multipart(part(0, 500, "oops", null)));
+        expectBatch(multipart(part(0, 500, "oops again", null)));
+
+        List<GoogleBatchClient.BatchResult> results = client.executeWithRetry(
+                BATCH_URL, "token", posts(1), 2, new AdaptiveRateLimiter("user", ApiQuota.CALENDAR));
+        server.verify();
+
+        assertEquals(500, results.get(0).getStatus());
+        assertEquals("oops again", results.get(0).getBody());
+    }
+
+    private void expectBatch(String responseBody) {
+        server.expect(requestTo(BATCH_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header(HttpHeaders.AUTHORIZATION, startsWith("Bearer ")))
+                .andExpect(header(HttpHeaders.CONTENT_TYPE, allOf(startsWith("multipart/mixed"), containsString("boundary=batch_"))))
+                .andExpect(request -> requestBodies.add(((MockClientHttpRequest) request).getBodyAsString()))
+                .andRespond(withSuccess(responseBody,
+                        MediaType.parseMediaType("multipart/mixed; boundary=" + RESPONSE_BOUNDARY)));
+    }
+
+    private static List<GoogleBatchClient.BatchPart> posts(int count) {
+        List<GoogleBatchClient.BatchPart> parts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            parts.add(GoogleBatchClient.BatchPart.post("/calendar/v3/calendars/primary/events/import",
+                    "{\"summary\":\"Event " + i + "\"}"));
+        }
+        return Collections.unmodifiableList(parts);
+    }
+
+    // Google's batch response: one application/http part per call, answered with response-item-N
+    private static String part(int index, int status, String body, String retryAfter) {
+        return "--" + RESPONSE_BOUNDARY + "\r\n"
+                + "Content-Type: application/http\r\n"
+                + "Content-ID: <response-item-" + index + ">\r\n"
+                + "\r\n"
+                + "HTTP/1.1 " + status + " " + (status < 300 ? "OK" : "Error") + "\r\n"
+                + "Content-Type: application/json; charset=UTF-8\r\n"
+                + (retryAfter != null ? "Retry-After: " + retryAfter + "\r\n" : "")
+                + "\r\n"
+                + body + "\r\n";
+    }
+
+    private static String multipart(String... parts) {
+        return String.join("", parts) + "--" + RESPONSE_BOUNDARY + "--\r\n";
+    }
+}
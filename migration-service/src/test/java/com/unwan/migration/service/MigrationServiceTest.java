@@ -0,0 +1,103 @@
+package com.unwan.migration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unwan.migration.dedupe.FingerprintIndex;
+import com.unwan.migration.drive.OneDriveCrawler;
+import com.unwan.migration.drive.OneDriveDeltaReader;
+import com.unwan.migration.model.JobProgressUpdate;
+import com.unwan.migration.model.MigrationRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.client.ExpectedCount.manyTimes;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class MigrationServiceTest {
+
+    private final MigrationService service = new MigrationService();
+    // Every state status-service received, in order
+    private final List<JobProgressUpdate> received = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        // Flushes after every update, so nothing the publisher accepts is coalesced away
+        ProgressPublisher publisher = new ProgressPublisher() {
+            @Override
+            public void publish(JobProgressUpdate update) {
+                super.publish(update);
+                flush();
+            }
+        };
+        RestTemplate statusRest = new RestTemplate();
+        MockRestServiceServer.bindTo(statusRest).build()
+                .expect(manyTimes(), requestTo(ProgressPublisherTest.BULK_URL))
+                .andExpect(request -> received.addAll(List.of(new ObjectMapper().readValue(
+                        ((MockClientHttpRequest) request).getBodyAsString(), JobProgressUpdate[].class))))
+                .andRespond(withSuccess());
+        ReflectionTestUtils.setField(publisher, "restTemplate", statusRest);
+
+        // Every workload finds nothing to move
+        ReflectionTestUtils.setField(service, "progressPublisher", publisher);
+        ReflectionTestUtils.setField(service, "realMailMigrationService", mock(RealMailMigrationService.class));
+        ReflectionTestUtils.setField(service, "realContactMigrationService", mock(RealContactMigrationService.class));
+        ReflectionTestUtils.setField(service, "realCalendarMigrationService", mock(RealCalendarMigrationService.class));
+        ReflectionTestUtils.setField(service, "realDriveMigrationService", mock(RealDriveMigrationService.class));
+        ReflectionTestUtils.setField(service, "checkpointService", mock(CheckpointService.class));
+        ReflectionTestUtils.setField(service, "fingerprints", mock(FingerprintIndex.class));
+        ReflectionTestUtils.setField(service, "driveUploadSessions", mock(DriveUploadSessionService.class));
+        ReflectionTestUtils.setField(service, "oneDriveCrawler", mock(OneDriveCrawler.class));
+        ReflectionTestUtils.setField(service, "oneDriveDelta", mock(OneDriveDeltaReader.class));
+        ReflectionTestUtils.setField(service, "driveDeltas", mock(DriveDeltaService.class));
+    }
+
+    @Test
+    void allModeStaysInProgressUntilTheLastWorkloadFinishes() {
+        ReflectionTestUtils.invokeMethod(service, "migrateAllData", request("all"), "job-1");
+
+        JobProgressUpdate last = received.get(received.size() - 1);
+        assertEquals("completed", last.getStatus());
+        assertEquals(100, last.getProgress());
+        assertEquals("All migrations completed successfully", last.getMessage());
+        for (JobProgressUpdate update : received.subList(0, received.size() - 1)) {
+            assertEquals("in_progress", update.getStatus(), update.getMessage());
+        }
+
+        // The later workloads' steps still reach status-service after mail has finished
+        List<String> messages = new ArrayList<>();
+        for (JobProgressUpdate update : received) {
+            messages.add(update.getMessage());
+        }
+        int mailDone = messages.indexOf("Mail migration completed: 0/0 emails migrated");
+        assertTrue(mailDone >= 0, messages.toString());
+        assertTrue(messages.indexOf("Migrating contacts") > mailDone, messages.toString());
+        assertTrue(messages.contains("Contacts migration completed: 0/0 contacts migrated"), messages.toString());
+        assertTrue(messages.contains("Migrating calendar"), messages.toString());
+        assertTrue(messages.contains("Migrating drive"), messages.toString());
+        assertTrue(messages.contains("Drive migration completed: 0/0 files migrated"), messages.toString());
+    }
+
+    @Test
+    void singleWorkloadFinishesTheJob() {
+        ReflectionTestUtils.invokeMethod(service, "migrateContactData", request("contacts"), "job-2");
+
+        JobProgressUpdate last = received.get(received.size() - 1);
+        assertEquals("completed", last.getStatus());
+        assertEquals("Contacts migration completed: 0/0 contacts migrated", last.getMessage());
+    }
+
+    private static MigrationRequest request(String migrationType) {
+        return new MigrationRequest("user@example.com", "user-1", migrationType, "outlook-token", "gmail-token", "user-token");
+    }
+}
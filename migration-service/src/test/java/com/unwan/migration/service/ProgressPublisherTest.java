@@ -0,0 +1,141 @@
+package com.unwan.migration.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unwan.migration.model.JobProgressUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class ProgressPublisherTest {
+
+    static final String BULK_URL = "http://status-service:8083/api/status/jobs/bulk";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ProgressPublisher publisher = new ProgressPublisher();
+    private final List<List<JobProgressUpdate>> flushed = Collections.synchronizedList(new ArrayList<>());
+    private MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        ReflectionTestUtils.setField(publisher, "restTemplate", restTemplate);
+    }
+
+    @Test
+    void flushSendsOnlyTheLatestStatePerJobInOneCall() {
+        expectFlush(withSuccess());
+
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 10, "Fetching folders"));
+        publisher.publish(JobProgressUpdate.status("job-2", "in_progress", 5, "Crawling OneDrive"));
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 40, "Migrated 40 out of 100 emails"));
+        publisher.flush();
+        publisher.flush();
+        server.verify();
+
+        List<JobProgressUpdate> batch = byJob(flushed.get(0));
+        assertEquals(1, flushed.size());
+        assertEquals(2, batch.size());
+        assertEquals(40, batch.get(0).getProgress());
+        assertEquals("Migrated 40 out of 100 emails", batch.get(0).getMessage());
+        assertEquals("Crawling OneDrive", batch.get(1).getMessage());
+    }
+
+    @Test
+    void finishedJobIgnoresStragglingProgressUntilReopened() {
+        expectFlush(withSuccess());
+        expectFlush(withSuccess());
+        expectFlush(withSuccess());
+
+        publisher.publish(JobProgressUpdate.status("job-1", "completed", 100, "Mail migration completed"));
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 95, "Migrated 99 out of 100 emails"));
+        publisher.flush();
+
+        // A progress callback that ran after the flush is dropped as well
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 95, "Migrated 100 out of 100 emails"));
+        publisher.flush();
+
+        publisher.reopen("job-1");
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 0, "Resuming migration from checkpoint"));
+        publisher.flush();
+        publisher.publish(JobProgressUpdate.status("job-1", "failed", 0, "Mail migration failed"));
+        publisher.flush();
+        server.verify();
+
+        assertEquals(3, flushed.size());
+        assertEquals("completed", flushed.get(0).get(0).getStatus());
+        assertEquals("Resuming migration from checkpoint", flushed.get(1).get(0).getMessage());
+        assertEquals("failed", flushed.get(2).get(0).getStatus());
+    }
+
+    @Test
+    void statusOnlyUpdateKeepsTheItemCountsItReplaces() {
+        expectFlush(withSuccess());
+
+        publisher.publish(JobProgressUpdate.items("job-1", "in_progress", 50, "Migrated 40 out of 100 emails", 100, 40, 2));
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 20, "Processing folder: Archive"));
+        publisher.flush();
+
+        JobProgressUpdate update = flushed.get(0).get(0);
+        assertEquals("Processing folder: Archive", update.getMessage());
+        assertEquals(20, update.getProgress());
+        assertTrue(update.isWithItems());
+        assertFalse(update.isProgressFromItems());
+        assertEquals(100, update.getTotalItems());
+        assertEquals(40, update.getProcessedItems());
+        assertEquals(2, update.getSkippedItems());
+    }
+
+    @Test
+    void failedFlushRequeuesUpdatesThatNothingReplaced() {
+        expectFlush(withServerError());
+        expectFlush(withSuccess());
+
+        publisher.publish(JobProgressUpdate.status("job-1", "in_progress", 10, "Migrating mails"));
+        publisher.publish(JobProgressUpdate.status("job-2", "in_progress", 30, "Migrating contacts"));
+        publisher.flush();
+
+        publisher.publish(JobProgressUpdate.status("job-2", "completed", 100, "Contacts migration completed"));
+        publisher.flush();
+        server.verify();
+
+        List<JobProgressUpdate> retried = byJob(flushed.get(1));
+        assertEquals(2, retried.size());
+        assertEquals("Migrating mails", retried.get(0).getMessage());
+        assertEquals("completed", retried.get(1).getStatus());
+    }
+
+    private void expectFlush(ResponseCreator response) {
+        server.expect(once(), requestTo(BULK_URL))
+                .andExpect(method(HttpMethod.PUT))
+                .andExpect(request -> flushed.add(JSON.readValue(((MockClientHttpRequest) request).getBodyAsString(),
+                        new TypeReference<List<JobProgressUpdate>>() {})))
+                .andRespond(response);
+    }
+
+    private static List<JobProgressUpdate> byJob(List<JobProgressUpdate> batch) {
+        List<JobProgressUpdate> sorted = new ArrayList<>(batch);
+        sorted.sort(Comparator.comparing(JobProgressUpdate::getJobId));
+        return sorted;
+    }
+}
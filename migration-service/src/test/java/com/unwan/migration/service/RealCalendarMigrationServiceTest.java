@@ -0,0 +1,165 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.model.CalendarEvent;
+import com.unwan.migration.pipeline.MigrationPipeline;
+import com.unwan.migration.pipeline.PipelineStats;
+import com.unwan.migration.pipeline.SourceCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealCalendarMigrationServiceTest {
+
+    // Window k holds the events starting in [BOUNDS[k], BOUNDS[k + 1]); a null bound is open
+    private static final OffsetDateTime[] BOUNDS = {
+            null,
+            OffsetDateTime.parse("2024-01-01T00:00Z"),
+            OffsetDateTime.parse("2025-01-01T00:00Z"),
+            OffsetDateTime.parse("2026-01-01T00:00Z"),
+            null
+    };
+    private static final int PAGES_PER_WINDOW = 2;
+    private static final int EVENTS_PER_PAGE = 2;
+
+    private final RealCalendarMigrationService service = new RealCalendarMigrationService();
+    private final List<RealCalendarMigrationService.EventWindow> windows = new ArrayList<>();
+    private final List<Integer> finishedWindows = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "fetchParallelism", 3);
+        ReflectionTestUtils.setField(service, "fetchThreads", 4);
+        service.start();
+        for (int k = 0; k < BOUNDS.length - 1; k++) {
+            windows.add(new RealCalendarMigrationService.EventWindow(BOUNDS[k], BOUNDS[k + 1]));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void resumeMarkerNeverPassesAnEventThatIsNotUploaded() throws Exception {
+        // The first window stalls after its first page until the next two windows have finished
+        CountDownLatch laterWindowsDone = new CountDownLatch(2);
+        Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        List<String> markers = Collections.synchronizedList(new ArrayList<>());
+        List<String> skippedOnResume = Collections.synchronizedList(new ArrayList<>());
+
+        PipelineStats stats = MigrationPipeline.<CalendarEvent, CalendarEvent>builder("calendar-windows")
+                .source(sink -> service.fetchWindows(windows, (window, pages) -> {
+                    int k = windows.indexOf(window);
+                    for (int page = 0; page < PAGES_PER_WINDOW; page++) {
+                        if (k == 0 && page == 1) {
+                            assertTrue(laterWindowsDone.await(10, TimeUnit.SECONDS));
+                        }
+                        pages.emit(page(k, page));
+                    }
+                    finishedWindows.add(k);
+                    if (k == 1 || k == 2) {
+                        laterWindowsDone.countDown();
+                    }
+                }, sink))
+                .upload(batch -> {
+                    batch.forEach(event -> uploaded.add(event.getId()));
+                    return batch.size();
+                }, 3, 2)
+                .onCheckpoint((cursor, committed) -> {
+                    markers.add(cursor.getPageLink());
+                    // A job resumed from here refetches windows from the marker on; everything before must be in Google
+                    skippedOnResume.addAll(notUploadedBefore(cursor, uploaded));
+                })
+                .build()
+                .run();
+
+        assertEquals(16, stats.getUploaded());
+        assertTrue(finishedWindows.indexOf(0) > finishedWindows.indexOf(1), "windows finished " + finishedWindows);
+        assertTrue(finishedWindows.indexOf(0) > finishedWindows.indexOf(2), "windows finished " + finishedWindows);
+        assertTrue(skippedOnResume.isEmpty(), "a resume would skip " + skippedOnResume);
+        // Pages of later windows committed while the first was running still point at its start
+        assertNull(markers.get(0));
+    }
+
+    @Test
+    void failingWindowCancelsTheOthers() {
+        CountDownLatch firstWindowRunning = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> service.fetchWindows(windows,
+                (window, pages) -> {
+                    if (windows.indexOf(window) == 1) {
+                        assertTrue(firstWindowRunning.await(10, TimeUnit.SECONDS));
+                        throw new IllegalStateException("Graph unavailable");
+                    }
+                    if (windows.indexOf(window) == 0) {
+                        firstWindowRunning.countDown();
+                    }
+                    try {
+                        new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                }, (page, cursor) -> { }));
+
+        assertEquals("Graph unavailable", error.getMessage());
+        assertAwait(interrupted);
+    }
+
+    // Events of windows that end at or before the marker and have not been uploaded
+    private List<String> notUploadedBefore(SourceCursor cursor, Set<String> uploaded) {
+        List<String> missing = new ArrayList<>();
+        if (cursor.getPageLink() == null) {
+            return missing;
+        }
+        OffsetDateTime resumeFrom = OffsetDateTime.parse(cursor.getPageLink().substring("window:".length()));
+        for (int k = 0; k < windows.size(); k++) {
+            if (BOUNDS[k + 1] == null || BOUNDS[k + 1].isAfter(resumeFrom)) {
+                continue;
+            }
+            for (int page = 0; page < PAGES_PER_WINDOW; page++) {
+                for (CalendarEvent event : page(k, page)) {
+                    if (!uploaded.contains(event.getId())) {
+                        missing.add(event.getId());
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static List<CalendarEvent> page(int window, int page) {
+        List<CalendarEvent> events = new ArrayList<>();
+        for (int i = 0; i < EVENTS_PER_PAGE; i++) {
+            CalendarEvent event = new CalendarEvent();
+            event.setId("w" + window + "-p" + page + "-e" + i);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static void assertAwait(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "window was not cancelled");
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
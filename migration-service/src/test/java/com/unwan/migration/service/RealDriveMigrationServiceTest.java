@@ -0,0 +1,261 @@
+package com.unwan.migration.service;
+
+import com.unwan.migration.drive.ContentSource;
+import com.unwan.migration.model.DriveFile;
+import com.unwan.migration.ratelimit.AdaptiveRateLimiter;
+import com.unwan.migration.ratelimit.ApiQuota;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+
+class RealDriveMigrationServiceTest {
+
+    private static final String UPLOAD_URL = "https://www.googleapis.com/upload/drive/v3/files?uploadType=resumable&upload_id=abc";
+    private static final int CHUNK = 256 * 1024;
+    // Two full chunks and a short last one
+    private static final int TOTAL = 2 * CHUNK + 90_112;
+
+    private final RealDriveMigrationService service = new RealDriveMigrationService();
+    private final byte[] content = new byte[TOTAL];
+    private final List<Long> sourceOpens = new ArrayList<>();
+    private final List<Long> progress = new ArrayList<>();
+    private final Map<String, String> savedSessions = new HashMap<>();
+    private FakeGoogle google;
+    private MockRestServiceServer statusQueries;
+    private DriveFile file;
+
+    @BeforeEach
+    void setUp() {
+        new Random(42).nextBytes(content);
+        google = new FakeGoogle(TOTAL);
+
+        RestTemplate restTemplate = new RestTemplate();
+        statusQueries = MockRestServiceServer.bindTo(restTemplate).build();
+        ReflectionTestUtils.setField(service, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(service, "googleHttp", new OkHttpClient.Builder().addInterceptor(google).build());
+        ReflectionTestUtils.setField(service, "uploadChunkSizeKib", CHUNK / 1024);
+
+        file = new DriveFile();
+        file.setId("item-1");
+        file.setName("video.mp4");
+        file.setSize(TOTAL);
+        savedSessions.put(file.getId(), UPLOAD_URL);
+    }
+
+    @Test
+    void uploadsChunkByChunkWithContentRange() throws InterruptedException {
+        assertTrue(upload(0));
+
+        assertEquals(List.of(
+                "bytes 0-262143/" + TOTAL,
+                "bytes 262144-524287/" + TOTAL,
+                "bytes 524288-" + (TOTAL - 1) + "/" + TOTAL), google.contentRanges);
+        assertArrayEquals(content, google.stored());
+        assertEquals(List.of(0L), sourceOpens);
+        assertEquals(List.of((long) CHUNK, 2L * CHUNK), progress);
+    }
+
+    @Test
+    void resumesFromTheOffsetOfASavedSession() throws InterruptedException {
+        google.preload(content, CHUNK);
+
+        assertTrue(upload(CHUNK));
+
+        assertEquals("bytes 262144-524287/" + TOTAL, google.contentRanges.get(0));
+        assertEquals(List.of((long) CHUNK), sourceOpens);
+        assertArrayEquals(content, google.stored());
+    }
+
+    @Test
+    void partialCommitResendsTheRestOfTheBuffer() throws InterruptedException {
+        // Google keeps only the first 100000 bytes of the first chunk: Range: bytes=0-99999
+        google.keepOnly.put(0, 100_000);
+
+        assertTrue(upload(0));
+
+        assertEquals("bytes 100000-362143/" + TOTAL, google.contentRanges.get(1));
+        assertArrayEquals(content, google.stored());
+        // The rest of the chunk was still in the buffer, so the source was never re-opened
+        assertEquals(List.of(0L), sourceOpens);
+    }
+
+    @Test
+    void committedOffsetBehindTheBufferReopensTheSource() throws InterruptedException {
+        // After the second chunk Google reports fewer bytes than it had already acknowledged
+        google.rewindTo.put(1, 200_000);
+
+        assertTrue(upload(0));
+
+        assertEquals("bytes 200000-462143/" + TOTAL, google.contentRanges.get(2));
+        assertEquals(List.of(0L, 200_000L), sourceOpens);
+        assertArrayEquals(content, google.stored());
+    }
+
+    @Test
+    void droppedConnectionAsksGoogleWhereItStands() throws InterruptedException {
+        // Part of the second chunk lands before the connection drops
+        google.keepOnly.put(1, 100_000);
+        google.dropConnection.add(1);
+        statusQueries.expect(requestTo(UPLOAD_URL))
+                .andExpect(method(HttpMethod.PUT))
+                .andExpect(header("Content-Range", "bytes */" + TOTAL))
+                .andRespond(withStatus(HttpStatus.PERMANENT_REDIRECT).header("Range", "bytes=0-362143"));
+
+        assertTrue(upload(0));
+        statusQueries.verify();
+
+        assertEquals("bytes 362144-" + (TOTAL - 1) + "/" + TOTAL, google.contentRanges.get(2));
+        assertEquals(List.of(0L), sourceOpens);
+        assertArrayEquals(content, google.stored());
+    }
+
+    @Test
+    void expiredSessionIsDropped() throws InterruptedException {
+        google.failWith.put(0, 404);
+
+        assertFalse(upload(0));
+
+        assertNull(savedSessions.get(file.getId()));
+        assertEquals(1, google.contentRanges.size());
+    }
+
+    @Test
+    void rangeHeaderIsTheLastByteGoogleHolds() {
+        assertEquals(0, RealDriveMigrationService.committedFromRange(null));
+        assertEquals(1, RealDriveMigrationService.committedFromRange("bytes=0-0"));
+        assertEquals(524288, RealDriveMigrationService.committedFromRange("bytes=0-524287"));
+    }
+
+    private boolean upload(long offset) throws InterruptedException {
+        ContentSource source = from -> {
+            sourceOpens.add(from);
+            InputStream in = new ByteArrayInputStream(content);
+            in.skip(from);
+            return in;
+        };
+        RealDriveMigrationService.UploadSessionStore sessions = new RealDriveMigrationService.UploadSessionStore() {
+            @Override
+            public String find(String itemId) {
+                return savedSessions.get(itemId);
+            }
+
+            @Override
+            public void save(String itemId, String sessionUri) {
+                savedSessions.put(itemId, sessionUri);
+            }
+
+            @Override
+            public void progress(String itemId, long committedBytes) {
+                progress.add(committedBytes);
+            }
+        };
+        return service.uploadInChunks(UPLOAD_URL, file, source, "token", offset,
+                new AdaptiveRateLimiter("user", ApiQuota.DRIVE), sessions);
+    }
+
+    // Google's side of a resumable session: keeps what each PUT delivers and answers 308 with its Range
+    private static final class FakeGoogle implements Interceptor {
+        private final byte[] stored;
+        private int storedLength;
+        private final List<String> contentRanges = Collections.synchronizedList(new ArrayList<>());
+        // By PUT index: bytes of that PUT Google keeps, the offset it falls back to, or a status it fails with
+        private final Map<Integer, Integer> keepOnly = new HashMap<>();
+        private final Map<Integer, Integer> rewindTo = new HashMap<>();
+        private final Map<Integer, Integer> failWith = new HashMap<>();
+        private final Set<Integer> dropConnection = new HashSet<>();
+
+        FakeGoogle(int total) {
+            this.stored = new byte[total];
+        }
+
+        void preload(byte[] content, int length) {
+            System.arraycopy(content, 0, stored, 0, length);
+            storedLength = length;
+        }
+
+        byte[] stored() {
+            return Arrays.copyOf(stored, storedLength);
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            int index = contentRanges.size();
+            String contentRange = request.header("Content-Range");
+            contentRanges.add(contentRange);
+
+            if (failWith.containsKey(index)) {
+                return respond(request, failWith.get(index), null);
+            }
+
+            long start = Long.parseLong(contentRange.substring("bytes ".length(), contentRange.indexOf('-')));
+            assertEquals(storedLength, start, "chunk does not continue where the session stands");
+            Buffer body = new Buffer();
+            request.body().writeTo(body);
+            byte[] bytes = body.readByteArray();
+
+            int kept = keepOnly.getOrDefault(index, bytes.length);
+            System.arraycopy(bytes, 0, stored, storedLength, kept);
+            storedLength += kept;
+            if (rewindTo.containsKey(index)) {
+                storedLength = rewindTo.get(index);
+            }
+
+            if (dropConnection.contains(index)) {
+                throw new IOException("connection reset");
+            }
+            if (storedLength == stored.length) {
+                return respond(request, 200, null);
+            }
+            return respond(request, 308, storedLength > 0 ? "bytes=0-" + (storedLength - 1) : null);
+        }
+
+        private static Response respond(Request request, int code, String range) {
+            Response.Builder response = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message(code == 308 ? "Resume Incomplete" : "Status " + code)
+                    .body(ResponseBody.create(MediaType.parse("application/json"), code == 200 ? "{\"id\":\"drive-file\"}" : ""));
+            if (range != null) {
+                response.header("Range", range);
+            }
+            return response.build();
+        }
+    }
+}
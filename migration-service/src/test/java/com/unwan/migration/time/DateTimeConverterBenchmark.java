@@ -0,0 +1,78 @@
+package com.unwan.migration.time;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item cost of the date handling on the calendar and mail paths, next to the plain
+ * java.time calls it replaced. Run with {@code mvn -P benchmark verify}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeConverterBenchmark {
+
+    // Graph's start/end of an event: local time plus a Windows zone name
+    @Param({"2024-01-15T10:00:00.0000000"})
+    public String eventDateTime;
+
+    @Param({"W. Europe Standard Time", "Pacific Standard Time", "Europe/Berlin"})
+    public String eventTimeZone;
+
+    // A message's receivedDateTime
+    @Param({"2024-01-15T10:00:00Z", "2024-01-15T10:00:00.1234567+05:30"})
+    public String receivedDateTime;
+
+    @Benchmark
+    public String calendarEventTime() {
+        LocalDateTime local = DateTimeConverter.parseGraphDateTime(eventDateTime);
+        return DateTimeConverter.toIsoOffset(local, DateTimeConverter.zoneFor(eventTimeZone));
+    }
+
+    // The earlier per-event path: a fresh ZoneId lookup and the ISO formatter for every value
+    @Benchmark
+    public String calendarEventTimeJavaTime() {
+        LocalDateTime local = LocalDateTime.parse(eventDateTime.substring(0, 19));
+        ZoneId zone;
+        switch (eventTimeZone) {
+            case "W. Europe Standard Time":
+                zone = ZoneId.of("Europe/Berlin");
+                break;
+            case "Pacific Standard Time":
+                zone = ZoneId.of("America/Los_Angeles");
+                break;
+            default:
+                zone = ZoneId.of(eventTimeZone);
+                break;
+        }
+        return ZonedDateTime.of(local, zone).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    @Benchmark
+    public String mailDateHeader() {
+        return DateTimeConverter.mimeDate(receivedDateTime);
+    }
+
+    @Benchmark
+    public String mailDateHeaderJavaTime() {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(OffsetDateTime.parse(receivedDateTime));
+    }
+}
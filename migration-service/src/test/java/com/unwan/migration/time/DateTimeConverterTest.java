@@ -0,0 +1,141 @@
+package com.unwan.migration.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DateTimeConverterTest {
+
+    // Shapes Graph returns, and OffsetDateTime.toString() produces, for receivedDateTime and event times
+    private static final String[] GRAPH_TIMESTAMPS = {
+            "2024-01-15T10:00:00Z",
+            "2024-01-15T10:00Z",
+            "2024-01-05T09:07:03.5Z",
+            "2024-01-15T10:00:00.1234567Z",
+            "2024-01-15T10:00:00.123456789Z",
+            "2024-01-15T10:00:00+05:30",
+            "2024-02-29T23:59:59.000-08:00",
+            "1999-12-31T00:00:00+14:00",
+            "0999-03-01T12:00:00-12:00",
+            "2024-07-04T18:30:00.12+01:00",
+    };
+
+    @Test
+    void fastParserMatchesOffsetDateTimeParse() {
+        for (String text : GRAPH_TIMESTAMPS) {
+            OffsetDateTime fast = DateTimeConverter.parseOffsetFast(text);
+            assertNotNull(fast, text);
+            assertEquals(OffsetDateTime.parse(text), fast, text);
+        }
+    }
+
+    @Test
+    void fastParserLeavesOtherShapesToTheIsoParser() {
+        String[] others = {
+                "2024-01-15T10:00:00",
+                "2024-01-15 10:00:00Z",
+                "2024-01-15T10:00:00+0530",
+                "2024-01-15T10:00:00+05:30:15",
+                "2024-01-15T10:00:00.Z",
+                "2024-13-01T00:00:00Z",
+                "2024-01-15",
+        };
+        for (String text : others) {
+            assertNull(DateTimeConverter.parseOffsetFast(text), text);
+        }
+
+        assertEquals(OffsetDateTime.parse("2024-01-15T10:00:00+05:30:15"),
+                DateTimeConverter.parseOffsetDateTime("2024-01-15T10:00:00+05:30:15"));
+        assertThrows(DateTimeParseException.class, () -> DateTimeConverter.parseOffsetDateTime("2024-13-01T00:00:00Z"));
+    }
+
+    @Test
+    void mimeDateMatchesRfc1123Formatter() {
+        for (String text : GRAPH_TIMESTAMPS) {
+            assertEquals(DateTimeFormatter.RFC_1123_DATE_TIME.format(OffsetDateTime.parse(text)),
+                    DateTimeConverter.mimeDate(text), text);
+        }
+    }
+
+    @Test
+    void rfc1123MatchesFormatterAcrossDaysAndOffsets() {
+        ZoneOffset[] offsets = {
+                ZoneOffset.UTC, ZoneOffset.ofHours(-8), ZoneOffset.ofHoursMinutes(5, 30),
+                ZoneOffset.ofHoursMinutes(-3, -30), ZoneOffset.ofHours(14), ZoneOffset.ofHoursMinutes(12, 45),
+        };
+        LocalDateTime time = LocalDateTime.of(2023, 12, 25, 0, 0, 0);
+        for (int i = 0; i < 800; i++) {
+            for (ZoneOffset offset : offsets) {
+                OffsetDateTime value = time.atOffset(offset);
+                assertEquals(DateTimeFormatter.RFC_1123_DATE_TIME.format(value), DateTimeConverter.toRfc1123(value));
+            }
+            time = time.plusDays(1).plusHours(7).plusMinutes(13).plusSeconds(29);
+        }
+    }
+
+    @Test
+    void mimeDateFallsBackToNowForMissingOrUnreadableTimestamps() {
+        for (String text : new String[] {null, "", "   ", "yesterday"}) {
+            OffsetDateTime header = OffsetDateTime.parse(DateTimeConverter.mimeDate(text), DateTimeFormatter.RFC_1123_DATE_TIME);
+            assertTrue(Math.abs(header.toEpochSecond() - OffsetDateTime.now().toEpochSecond()) < 60, String.valueOf(text));
+        }
+    }
+
+    @Test
+    void everyWindowsNameResolvesToItsIanaZone() {
+        Set<String> names = new HashSet<>();
+        for (String[] mapping : DateTimeConverter.WINDOWS_TO_IANA) {
+            assertTrue(names.add(mapping[0]), "duplicate entry " + mapping[0]);
+            ZoneId expected;
+            try {
+                expected = ZoneId.of(mapping[1]);
+            } catch (DateTimeException e) {
+                // The JDK's tz database predates the zone; zoneFor then falls back to UTC
+                continue;
+            }
+            assertEquals(expected, DateTimeConverter.zoneFor(mapping[0]), mapping[0]);
+        }
+        assertTrue(names.size() > 130, "table has " + names.size() + " entries");
+    }
+
+    @Test
+    void commonOutlookZones() {
+        assertEquals(ZoneId.of("Europe/Berlin"), DateTimeConverter.zoneFor("W. Europe Standard Time"));
+        assertEquals(ZoneId.of("America/New_York"), DateTimeConverter.zoneFor("Eastern Standard Time"));
+        assertEquals(ZoneId.of("Asia/Kolkata"), DateTimeConverter.zoneFor("India Standard Time"));
+        assertEquals(ZoneId.of("UTC"), DateTimeConverter.zoneFor("UTC"));
+    }
+
+    @Test
+    void ianaNamesPassThroughAndUnknownNamesAreUtc() {
+        assertEquals(ZoneId.of("Europe/London"), DateTimeConverter.zoneFor("Europe/London"));
+        assertEquals(ZoneId.of("Asia/Kolkata"), DateTimeConverter.zoneFor("Asia/Kolkata"));
+        assertEquals(DateTimeConverter.UTC, DateTimeConverter.zoneFor("tzone://Microsoft/Utc"));
+        assertEquals(DateTimeConverter.UTC, DateTimeConverter.zoneFor("Customized Time Zone"));
+        assertEquals(DateTimeConverter.UTC, DateTimeConverter.zoneFor(null));
+        assertEquals(DateTimeConverter.UTC, DateTimeConverter.zoneFor(""));
+    }
+
+    @Test
+    void graphLocalTimesDropTheFraction() {
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 0, 0), DateTimeConverter.parseGraphDateTime("2024-01-15T10:00:00.0000000"));
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 0, 0), DateTimeConverter.parseGraphDateTime("2024-01-15T10:00:00"));
+        assertEquals("2024-07-01T09:30:00+02:00",
+                DateTimeConverter.toIsoOffset(DateTimeConverter.parseGraphDateTime("2024-07-01T09:30:00.0000000"),
+                        DateTimeConverter.zoneFor("W. Europe Standard Time")));
+    }
+}
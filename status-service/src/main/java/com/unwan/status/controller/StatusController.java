@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 import com.unwan.status.config.RestTemplateConfig;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -69,7 +70,8 @@ public class StatusController {
                 request.getProgress(),
                 request.getMessage(),
                 request.getTotalItems(),
-                request.getProcessedItems()
+                request.getProcessedItems(),
+                request.getSkippedItems()
         );
 
         if (job != null) {
@@ -79,6 +81,29 @@ public class StatusController {
         }
     }
 
+    // ✅ NEW: Coalesced progress from migration-service, many jobs per call
+    @PutMapping("/jobs/bulk")
+    public ResponseEntity<List<JobStatus>> updateJobsBulk(@RequestBody List<BulkJobUpdateRequest> requests) {
+        List<JobStatus> updated = new ArrayList<>();
+        for (BulkJobUpdateRequest request : requests) {
+            MigrationJob job = statusService.applyProgress(
+                    request.getJobId(),
+                    request.getStatus(),
+                    request.getProgress(),
+                    request.getMessage(),
+                    request.isWithItems(),
+                    request.isProgressFromItems(),
+                    request.getTotalItems(),
+                    request.getProcessedItems(),
+                    request.getSkippedItems()
+            );
+            if (job != null) {
+                updated.add(new JobStatus(job));
+            }
+        }
+        return ResponseEntity.ok(updated);
+    }
+
     // ✅ NEW: Pause job
     @PostMapping("/job/{jobId}/pause")
     public ResponseEntity<JobStatus> pauseJob(@PathVariable String jobId) {
@@ -175,5 +200,22 @@ class UpdateJobItemsRequest {
     private String message;
     private int totalItems;
     private int processedItems;
+    private int skippedItems;
+
+}
 
-}
\ No newline at end of file
+// ✅ NEW: One job's latest state inside a bulk update
+@Setter
+@Getter
+class BulkJobUpdateRequest {
+    private String jobId;
+    private String status;
+    private int progress;
+    private String message;
+    private boolean withItems;
+    private boolean progressFromItems;
+    private int totalItems;
+    private int processedItems;
+    private int skippedItems;
+
+}
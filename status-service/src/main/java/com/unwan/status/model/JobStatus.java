@@ -12,6 +12,7 @@ public class JobStatus {
     private String migrationType;
     private int totalItems = 0;
     private int processedItems =0 ;
+    private int skippedItems = 0;
     private String startedAt;
     private String updatedAt;
     private String userId;
@@ -29,6 +30,7 @@ public class JobStatus {
         this.migrationType = job.getMigrationType();
         this.totalItems = job.getTotalItems();
         this.processedItems = job.getProcessedItems();
+        this.skippedItems = job.getSkippedItems();
         this.startedAt = job.getStartedAt() != null ? job.getStartedAt().toString() : "";
         this.updatedAt = job.getUpdatedAt() != null ? job.getUpdatedAt().toString() : "";
         this.userId = job.getUserId();
@@ -47,6 +49,7 @@ public class JobStatus {
                 ", migrationType='" + migrationType + '\'' +
                 ", totalItems=" + totalItems +
                 ", processedItems=" + processedItems +
+                ", skippedItems=" + skippedItems +
                 ", startedAt='" + startedAt + '\'' +
                 ", updatedAt='" + updatedAt + '\'' +
                 '}';
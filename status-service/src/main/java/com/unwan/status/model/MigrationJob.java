@@ -19,6 +19,7 @@ public class MigrationJob {
     private String message;
     private int totalItems;
     private int processedItems;
+    private int skippedItems;  // already migrated by an earlier run
     private String resumeToken;
     private Date startedAt;
     private Date updatedAt;
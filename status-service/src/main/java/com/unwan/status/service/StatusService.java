@@ -170,7 +170,7 @@ public class StatusService {
     }
 
     public MigrationJob updateJobWithItems(String jobId, String status, int progress, String message,
-                                           int totalItems, int processedItems) {
+                                           int totalItems, int processedItems, int skippedItems) {
         Optional<MigrationJob> jobOpt = repository.findByJobId(jobId);
         if (jobOpt.isEmpty()) return null;
 
@@ -179,6 +179,7 @@ public class StatusService {
         job.setMessage(message);
         job.setTotalItems(totalItems);
         job.setProcessedItems(processedItems);
+        job.setSkippedItems(skippedItems);
         job.calculateProgress();
         job.setUpdatedAt(new Date());
 
@@ -187,6 +188,33 @@ public class StatusService {
         return saved;
     }
 
+    // Applies one entry of a bulk update; item counts only when the publisher sent them
+    public MigrationJob applyProgress(String jobId, String status, int progress, String message,
+                                      boolean withItems, boolean progressFromItems,
+                                      int totalItems, int processedItems, int skippedItems) {
+        Optional<MigrationJob> jobOpt = repository.findByJobId(jobId);
+        if (jobOpt.isEmpty()) return null;
+
+        MigrationJob job = jobOpt.get();
+        job.setStatus(status);
+        job.setMessage(message);
+        if (withItems) {
+            job.setTotalItems(totalItems);
+            job.setProcessedItems(processedItems);
+            job.setSkippedItems(skippedItems);
+        }
+        if (withItems && progressFromItems) {
+            job.calculateProgress();
+        } else {
+            job.setProgress(progress);
+        }
+        job.setUpdatedAt(new Date());
+
+        MigrationJob saved = repository.save(job);
+        webSocketController.sendProgressUpdate(job.getUserId(), new JobStatus(saved));
+        return saved;
+    }
+
     public MigrationJob pauseJob(String jobId) {
         Optional<MigrationJob> jobOpt = repository.findByJobId(jobId);
         if (jobOpt.isEmpty()) return null;